@@ -0,0 +1,229 @@
+package net.tmullin.ipather;
+
+/**
+ * Static methods for tick ranges packed into a single <code>long</code>,
+ * so that ranges can be kept in plain <code>long[]</code>s and
+ * {@link java.util.stream.LongStream}s without creating any objects.
+ * <p>
+ * The start tick is held in the high 32 bits and the length in the low
+ * 32 bits, so a packed range can only hold a start tick of up to
+ * {@link Integer#MAX_VALUE} and a length of up to 2<sup>32</sup> - 1.
+ * Because the start is never negative, packed ranges compare as signed
+ * longs in the same order as
+ * {@link TickRange#compareTo(TickRangeProvider)}, first by start tick and
+ * then by end tick. Use {@link #fits(long, long)} to check whether a
+ * range can be packed and fall back to a {@link TickRange} if it cannot.
+ * <p>
+ * The operations mirror the ones on TickRange and follow the same
+ * half-open [start, end) convention. They must only be passed values
+ * returned by {@link #pack(long, long)} or by another operation here,
+ * and never {@link #NONE}.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class CompactTickRange {
+	
+	/**
+	 * The value returned instead of a range when there is none, such as
+	 * the intersection of disjoint ranges. It is negative, so it is never
+	 * a valid packed range.
+	 */
+	public static final long NONE = -1L;
+	
+	/**
+	 * The highest start tick that can be packed
+	 */
+	public static final long MAX_START = Integer.MAX_VALUE;
+	
+	/**
+	 * The highest length that can be packed
+	 */
+	public static final long MAX_LENGTH = 0xFFFFFFFFL;
+	
+	private CompactTickRange() {
+	}
+	
+	/**
+	 * Determines if a range can be packed into a long.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return Whether the range is valid and its start and length are
+	 * 		small enough to pack
+	 */
+	public static boolean fits(long start, long end) {
+		return
+			0 <= start && start <= MAX_START &&
+			start < end && end - start <= MAX_LENGTH;
+	}
+	
+	/**
+	 * Packs a range into a long.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return The packed range
+	 * @throws IllegalArgumentException If the range is not valid, the
+	 * 		same as the {@link TickRange} constructor
+	 * @throws ArithmeticException If the range is valid but too large to
+	 * 		pack
+	 */
+	public static long pack(long start, long end) {
+		if (start < 0) {
+			throw new IllegalArgumentException("start must be >= 0");
+		}
+		
+		if (end <= start) {
+			throw new IllegalArgumentException("length must be > 0");
+		}
+		
+		if (MAX_START < start || MAX_LENGTH < end - start) {
+			throw new ArithmeticException(
+				String.format("[%s, %s) is too large to pack", start, end));
+		}
+		
+		return start << 32 | (end - start);
+	}
+	
+	/**
+	 * Packs a range into a long.
+	 * 
+	 * @param trp The range to pack
+	 * @return The packed range
+	 * @see #pack(long, long)
+	 */
+	public static long pack(TickRangeProvider trp) {
+		return pack(trp.getTick(), trp.getEndTick());
+	}
+	
+	/**
+	 * 
+	 * @param r A packed range
+	 * @return The start tick of the range
+	 */
+	public static long start(long r) {
+		return r >>> 32;
+	}
+	
+	/**
+	 * 
+	 * @param r A packed range
+	 * @return The length of the range
+	 */
+	public static long length(long r) {
+		return r & MAX_LENGTH;
+	}
+	
+	/**
+	 * 
+	 * @param r A packed range
+	 * @return The end tick of the range
+	 */
+	public static long end(long r) {
+		return (r >>> 32) + (r & MAX_LENGTH);
+	}
+	
+	/**
+	 * 
+	 * @param r A packed range
+	 * @return A new TickRange equal to the packed range
+	 */
+	public static TickRange toTickRange(long r) {
+		return new TickRange(start(r), length(r));
+	}
+	
+	/**
+	 * Compares two packed ranges the same way as
+	 * {@link TickRange#compareTo(TickRangeProvider)}.
+	 * 
+	 * @param r1 A packed range
+	 * @param r2 Another packed range
+	 * @return A negative number, zero, or a positive number if r1 is less
+	 * 		than, equal to, or greater than r2
+	 */
+	public static int compareTo(long r1, long r2) {
+		return Long.compare(r1, r2);
+	}
+	
+	/**
+	 * Determines if one packed range contains another, the same as
+	 * {@link TickRange#contains(TickRangeProvider, TickRangeProvider)}.
+	 * 
+	 * @param r1 A packed range
+	 * @param r2 Another packed range
+	 * @return Whether r1 contains r2
+	 */
+	public static boolean contains(long r1, long r2) {
+		return start(r1) <= start(r2) && end(r2) <= end(r1);
+	}
+	
+	/**
+	 * Determines if two packed ranges intersect, the same as
+	 * {@link TickRange#intersects(TickRangeProvider)}.
+	 * 
+	 * @param r1 A packed range
+	 * @param r2 Another packed range
+	 * @return Whether r1 and r2 intersect
+	 */
+	public static boolean intersects(long r1, long r2) {
+		long start1 = start(r1);
+		long start2 = start(r2);
+		return (start1 <= start2) ? start2 < end(r1) : start1 < end(r2);
+	}
+	
+	/**
+	 * Finds the intersection of two packed ranges, the same as
+	 * {@link TickRange#intersect(TickRangeProvider)}. The intersection is
+	 * never larger than either range, so it can always be packed.
+	 * 
+	 * @param r1 A packed range
+	 * @param r2 Another packed range
+	 * @return The packed intersection or {@link #NONE} if the ranges do
+	 * 		not intersect
+	 */
+	public static long intersect(long r1, long r2) {
+		long start = Math.max(start(r1), start(r2));
+		long end = Math.min(end(r1), end(r2));
+		return (start < end) ? start << 32 | (end - start) : NONE;
+	}
+	
+	/**
+	 * Finds the union of two packed ranges, the same as
+	 * {@link TickRange#union(TickRangeProvider)}. The union of two ranges
+	 * that intersect can be too long to pack, in which case an exception
+	 * is thrown and <code>toTickRange(r1).union(toTickRange(r2))</code>
+	 * can be used instead.
+	 * 
+	 * @param r1 A packed range
+	 * @param r2 Another packed range
+	 * @return The packed union or {@link #NONE} if the ranges do not
+	 * 		intersect
+	 * @throws ArithmeticException If the union is too long to pack
+	 */
+	public static long union(long r1, long r2) {
+		if (!intersects(r1, r2)) {
+			return NONE;
+		}
+		
+		long start = Math.min(start(r1), start(r2));
+		long length = Math.max(end(r1), end(r2)) - start;
+		
+		if (MAX_LENGTH < length) {
+			throw new ArithmeticException(String.format(
+				"union of %s and %s is too long to pack",
+				toString(r1), toString(r2)));
+		}
+		
+		return start << 32 | length;
+	}
+	
+	/**
+	 * 
+	 * @param r A packed range
+	 * @return The range in the same form as {@link TickRange#toString()}
+	 */
+	public static String toString(long r) {
+		return String.format("[%s, %s)", start(r), end(r));
+	}
+}
@@ -0,0 +1,138 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompactTickRangeTest {
+	/**
+	 * Helper that checks every operation on two packed ranges against the
+	 * same operation on TickRanges, in both orders.
+	 * 
+	 * @param start1 The start tick of the first range
+	 * @param end1 The end tick of the first range
+	 * @param start2 The start tick of the second range
+	 * @param end2 The end tick of the second range
+	 */
+	private void check(long start1, long end1, long start2, long end2) {
+		check(new TickRange(start1, end1, true), new TickRange(start2, end2, true));
+		check(new TickRange(start2, end2, true), new TickRange(start1, end1, true));
+	}
+	
+	private void check(TickRange r1, TickRange r2) {
+		long p1 = CompactTickRange.pack(r1);
+		long p2 = CompactTickRange.pack(r2);
+		
+		assertEquals(r1, CompactTickRange.toTickRange(p1));
+		assertEquals(r1.toString(), CompactTickRange.toString(p1));
+		assertEquals(
+			Integer.signum(r1.compareTo(r2)),
+			Integer.signum(CompactTickRange.compareTo(p1, p2)));
+		assertEquals(r1.contains(r2), CompactTickRange.contains(p1, p2));
+		assertEquals(r1.intersects(r2), CompactTickRange.intersects(p1, p2));
+		assertEquals(r1.intersect(r2), unpack(CompactTickRange.intersect(p1, p2)));
+		assertEquals(r1.union(r2), unpack(CompactTickRange.union(p1, p2)));
+	}
+	
+	private static TickRange unpack(long r) {
+		return (CompactTickRange.NONE == r) ? null : CompactTickRange.toTickRange(r);
+	}
+	
+	@Test public void permutation1() {
+		check(123, 456, 150, 400);
+	}
+	
+	@Test public void permutation2() {
+		check(123, 456, 150, 456);
+	}
+	
+	@Test public void permutation4() {
+		check(123, 456, 123, 400);
+	}
+	
+	@Test public void permutation6() {
+		check(123, 456, 150, 500);
+	}
+	
+	@Test public void permutation7() {
+		check(123, 456, 123, 456);
+	}
+	
+	@Test public void permutation8() {
+		check(123, 456, 500, 600);
+	}
+	
+	@Test public void touching() {
+		check(123, 456, 456, 600);
+	}
+	
+	@Test public void matchesTickRange() {
+		Random random = new Random(1);
+		
+		for (int i = 0; i < 10000; i++) {
+			long start1 = random.nextInt(60);
+			long start2 = random.nextInt(60);
+			check(
+				start1, start1 + 1 + random.nextInt(30),
+				start2, start2 + 1 + random.nextInt(30));
+		}
+	}
+	
+	@Test public void limits() {
+		long max = CompactTickRange.MAX_START;
+		long length = CompactTickRange.MAX_LENGTH;
+		check(max, max + length, max, max + 1);
+		check(0, length, 1, 2);
+		assertTrue(CompactTickRange.fits(max, max + length));
+		assertFalse(CompactTickRange.fits(max + 1, max + 2));
+		assertFalse(CompactTickRange.fits(0, length + 1));
+		assertFalse(CompactTickRange.fits(5, 5));
+		assertFalse(CompactTickRange.fits(-1, 5));
+	}
+	
+	@Test public void sortsLikeTickRange() {
+		Random random = new Random(2);
+		TickRange[] ranges = new TickRange[1000];
+		long[] packed = new long[ranges.length];
+		
+		for (int i = 0; i < ranges.length; i++) {
+			ranges[i] = new TickRange(
+				random.nextInt(Integer.MAX_VALUE),
+				1 + (random.nextLong() & 0x7FFFFFFFL));
+			packed[i] = CompactTickRange.pack(ranges[i]);
+		}
+		
+		Arrays.sort(ranges);
+		Arrays.sort(packed);
+		
+		for (int i = 0; i < ranges.length; i++) {
+			assertEquals(ranges[i], CompactTickRange.toTickRange(packed[i]));
+		}
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void packStartOverflow() {
+		long start = CompactTickRange.MAX_START + 1;
+		CompactTickRange.pack(start, start + 1);
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void packLengthOverflow() {
+		CompactTickRange.pack(0, CompactTickRange.MAX_LENGTH + 1);
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void unionOverflow() {
+		long length = CompactTickRange.MAX_LENGTH;
+		CompactTickRange.union(
+			CompactTickRange.pack(0, length),
+			CompactTickRange.pack(1000, length + 1));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void packEmpty() {
+		CompactTickRange.pack(5, 5);
+	}
+}
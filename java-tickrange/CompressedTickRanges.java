@@ -0,0 +1,403 @@
+package net.tmullin.ipather;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed sequence of tick ranges sorted by start tick
+ * then end tick, for keeping whole arrangements in memory or sending
+ * them between processes in far less than the 16 bytes per range a pair
+ * of longs takes.
+ * <p>
+ * The ranges are split into blocks of {@link #BLOCK_SIZE}. The first
+ * start tick of each block is stored as an unsigned varint, each
+ * following start tick as an unsigned varint delta from the one before
+ * it, and every tick length as a zig-zag varint. Since start ticks in a
+ * sequence are close together and note lengths are short, most ranges
+ * take two to four bytes. An index of the byte offset and first start
+ * tick of each block allows seeking to a range by index or by tick
+ * while only decoding part of one block.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class CompressedTickRanges {
+	
+	/**
+	 * The number of ranges in each block
+	 */
+	public static final int BLOCK_SIZE = 128;
+	
+	/**
+	 * The magic number at the start of the serialized form, "TRCZ"
+	 */
+	private static final int MAGIC = 0x5452435A;
+	
+	/**
+	 * Compresses a collection of ranges. The ranges are sorted first, so
+	 * they may be in any order.
+	 * 
+	 * @param ranges The ranges to compress
+	 * @return The compressed ranges
+	 */
+	public static CompressedTickRanges encode(
+			Iterable<? extends TickRangeProvider> ranges) {
+		PackedTickRangeList list = new PackedTickRangeList(ranges);
+		list.sort();
+		
+		long[] starts = list.startArray();
+		long[] ends   = list.endArray();
+		int size      = list.size();
+		int blocks    = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		
+		int[] blockOffsets = new int[blocks];
+		long[] blockStarts = new long[blocks];
+		byte[] data = new byte[Math.max(16, size * 3)];
+		int pos = 0;
+		long prev = 0;
+		
+		for (int i = 0; i < size; i++) {
+			if (0 == i % BLOCK_SIZE) {
+				blockOffsets[i / BLOCK_SIZE] = pos;
+				blockStarts[i / BLOCK_SIZE]  = starts[i];
+				prev = 0;
+			}
+			
+			// two varints take at most 20 bytes
+			if (data.length - pos < 20) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			
+			pos = putVarLong(data, pos, starts[i] - prev);
+			pos = putVarLong(data, pos, zigZag(ends[i] - starts[i]));
+			prev = starts[i];
+		}
+		
+		return new CompressedTickRanges(
+			size, blockOffsets, blockStarts, Arrays.copyOf(data, pos));
+	}
+	
+	/**
+	 * Recreates compressed ranges from the bytes produced by
+	 * {@link #toByteArray()}.
+	 * 
+	 * @param bytes The serialized ranges
+	 * @return The compressed ranges
+	 * @throws IllegalArgumentException If the bytes are not serialized
+	 * 		compressed ranges
+	 */
+	public static CompressedTickRanges fromByteArray(byte[] bytes) {
+		try {
+			ByteBuffer in = ByteBuffer.wrap(bytes);
+			
+			if (in.getInt() != MAGIC || in.getInt() != BLOCK_SIZE) {
+				throw new IllegalArgumentException("not compressed tick ranges");
+			}
+			
+			int size = in.getInt();
+			int dataLength = in.getInt();
+			
+			if (size < 0 || dataLength < 0) {
+				throw new IllegalArgumentException("corrupt compressed tick ranges");
+			}
+			
+			int blocks = (int) ((size + (long) BLOCK_SIZE - 1) / BLOCK_SIZE);
+			int[] blockOffsets = new int[blocks];
+			long[] blockStarts = new long[blocks];
+			
+			for (int i = 0; i < blocks; i++) {
+				blockOffsets[i] = in.getInt();
+				blockStarts[i]  = in.getLong();
+				
+				if (blockOffsets[i] < (0 == i ? 0 : blockOffsets[i - 1] + 1) ||
+						blockOffsets[i] >= dataLength) {
+					throw new IllegalArgumentException("corrupt compressed tick ranges");
+				}
+			}
+			
+			byte[] data = new byte[dataLength];
+			in.get(data);
+			
+			if (in.hasRemaining()) {
+				throw new IllegalArgumentException("corrupt compressed tick ranges");
+			}
+			
+			return new CompressedTickRanges(size, blockOffsets, blockStarts, data);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("truncated compressed tick ranges", e);
+		}
+	}
+	
+	/**
+	 * Encodes a value so that small negative and positive values both
+	 * become small unsigned values.
+	 */
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+	
+	/**
+	 * Reverses {@link #zigZag(long)}.
+	 */
+	static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Writes an unsigned varint, seven bits per byte with the high bit
+	 * set on every byte but the last.
+	 * 
+	 * @return The position after the varint
+	 */
+	static int putVarLong(byte[] data, int pos, long value) {
+		while (0 != (value & ~0x7FL)) {
+			data[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		
+		data[pos++] = (byte) value;
+		return pos;
+	}
+	
+	/**
+	 * The number of ranges
+	 */
+	private final int size;
+	
+	/**
+	 * The offset in the data of the first byte of each block
+	 */
+	private final int[] blockOffsets;
+	
+	/**
+	 * The start tick of the first range in each block
+	 */
+	private final long[] blockStarts;
+	
+	/**
+	 * The encoded ranges
+	 */
+	private final byte[] data;
+	
+	private CompressedTickRanges(
+			int size, int[] blockOffsets, long[] blockStarts, byte[] data) {
+		this.size         = size;
+		this.blockOffsets = blockOffsets;
+		this.blockStarts  = blockStarts;
+		this.data         = data;
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * 
+	 * @return The number of bytes of encoded ranges, not counting the
+	 * 		block index
+	 */
+	public int encodedSize() {
+		return data.length;
+	}
+	
+	/**
+	 * Serializes the ranges, including the block index so that they can
+	 * be searched as soon as they are read back.
+	 * 
+	 * @return The serialized ranges
+	 * @see #fromByteArray(byte[])
+	 */
+	public byte[] toByteArray() {
+		ByteBuffer out = ByteBuffer.allocate(
+			16 + 12 * blockOffsets.length + data.length);
+		out.putInt(MAGIC).putInt(BLOCK_SIZE).putInt(size).putInt(data.length);
+		
+		for (int i = 0; i < blockOffsets.length; i++) {
+			out.putInt(blockOffsets[i]).putLong(blockStarts[i]);
+		}
+		
+		out.put(data);
+		return out.array();
+	}
+	
+	/**
+	 * Decodes the range at the specified index, which takes time
+	 * proportional to its position within its block.
+	 * 
+	 * @param index The index of a range
+	 * @return A TickRange for the range
+	 */
+	public TickRange get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + size);
+		}
+		
+		Cursor cursor = cursor(index);
+		cursor.next();
+		return new TickRange(cursor.getTick(), cursor.getEndTick(), true);
+	}
+	
+	/**
+	 * Creates a cursor positioned before the first range.
+	 * 
+	 * @return A new cursor
+	 */
+	public Cursor cursor() {
+		return new Cursor(0);
+	}
+	
+	/**
+	 * Creates a cursor positioned before the range at the specified index.
+	 * 
+	 * @param index The index of the first range the cursor will move to
+	 * @return A new cursor
+	 */
+	public Cursor cursor(int index) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + size);
+		}
+		
+		Cursor cursor = new Cursor(index - index % BLOCK_SIZE);
+		
+		while (cursor.index + 1 < index) {
+			cursor.next();
+		}
+		
+		return cursor;
+	}
+	
+	/**
+	 * Creates a cursor positioned before the first range that starts at
+	 * or after the specified tick.
+	 * 
+	 * @param tick The tick to seek to
+	 * @return A new cursor
+	 */
+	public Cursor seek(long tick) {
+		// find the last block starting before the tick, since the range
+		// being looked for may be anywhere in it
+		int lo = 0;
+		int hi = blockStarts.length - 1;
+		
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			
+			if (blockStarts[mid] < tick) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		
+		Cursor cursor = new Cursor(Math.max(0, hi) * BLOCK_SIZE);
+		
+		while (true) {
+			int index = cursor.index;
+			int pos = cursor.pos;
+			long start = cursor.start;
+			
+			if (!cursor.next()) {
+				break;
+			}
+			
+			if (cursor.start >= tick) {
+				// step back so the cursor is before this range
+				cursor.index = index;
+				cursor.pos   = pos;
+				cursor.start = start;
+				break;
+			}
+		}
+		
+		return cursor;
+	}
+	
+	/**
+	 * A cursor that decodes the ranges in order. The cursor is itself a
+	 * TickRangeProvider for the range it is on, so sequential scans need
+	 * no other objects.
+	 */
+	public final class Cursor implements TickRangeProvider {
+		private int index;
+		private int pos;
+		private long start;
+		private long end;
+		
+		/**
+		 * Creates a cursor positioned before a range at the start of a
+		 * block.
+		 */
+		private Cursor(int blockIndex) {
+			this.index = blockIndex - 1;
+			this.pos = blockIndex < size ? blockOffsets[blockIndex / BLOCK_SIZE] : data.length;
+		}
+		
+		/**
+		 * Moves to the next range.
+		 * 
+		 * @return Whether there was another range to move to
+		 */
+		public boolean next() {
+			if (index + 1 >= size) {
+				index = size;
+				return false;
+			}
+			
+			index++;
+			
+			long delta = readVarLong();
+			start = (0 == index % BLOCK_SIZE) ? delta : start + delta;
+			end = start + unZigZag(readVarLong());
+			return true;
+		}
+		
+		private long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			
+			do {
+				b = data[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			
+			return value;
+		}
+		
+		/**
+		 * 
+		 * @return The index of the range the cursor is on
+		 */
+		public int index() {
+			return index;
+		}
+		
+		@Override
+		public long getTick() {
+			return start;
+		}
+		
+		@Override
+		public long getEndTick() {
+			return end;
+		}
+		
+		@Override
+		public long getTickLength() {
+			return end - start;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("[%s, %s)", start, end);
+		}
+	}
+}
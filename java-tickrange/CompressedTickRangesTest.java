@@ -0,0 +1,142 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompressedTickRangesTest {
+	/**
+	 * Helper that creates a list of note-like ranges, with start ticks
+	 * near a grid and short lengths.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to create
+	 * @return The list of ranges in sorted order
+	 */
+	private static List<TickRange> notes(long seed, int count) {
+		Random random = new Random(seed);
+		List<TickRange> ret = new ArrayList<TickRange>();
+		long tick = 0;
+		
+		for (int i = 0; i < count; i++) {
+			tick += 120 * random.nextInt(3);
+			long start = Math.max(0, tick + random.nextInt(11) - 5);
+			ret.add(new TickRange(start, 60 + 60 * random.nextInt(16)));
+		}
+		
+		Collections.sort(ret);
+		return ret;
+	}
+	
+	/**
+	 * Helper that decodes every range with a cursor.
+	 * 
+	 * @param ranges The compressed ranges
+	 * @return The decoded ranges
+	 */
+	private static List<TickRange> decode(CompressedTickRanges ranges) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		CompressedTickRanges.Cursor cursor = ranges.cursor();
+		
+		while (cursor.next()) {
+			ret.add(new TickRange(cursor.getTick(), cursor.getEndTick(), true));
+		}
+		
+		return ret;
+	}
+	
+	@Test public void zigZag() {
+		long[] values = {0, -1, 1, -2, 2, Long.MAX_VALUE, Long.MIN_VALUE};
+		long[] encoded = {0, 1, 2, 3, 4, -2, -1};
+		
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(encoded[i], CompressedTickRanges.zigZag(values[i]));
+			assertEquals(values[i], CompressedTickRanges.unZigZag(encoded[i]));
+		}
+	}
+	
+	@Test public void roundTrip() {
+		List<TickRange> notes = notes(1, 10000);
+		CompressedTickRanges compressed = CompressedTickRanges.encode(notes);
+		assertEquals(notes.size(), compressed.size());
+		assertEquals(notes, decode(compressed));
+		assertEquals(notes, decode(
+			CompressedTickRanges.fromByteArray(compressed.toByteArray())));
+	}
+	
+	@Test public void sortsInput() {
+		List<TickRange> notes = notes(2, 1000);
+		List<TickRange> shuffled = new ArrayList<TickRange>(notes);
+		Collections.shuffle(shuffled, new Random(3));
+		assertEquals(notes, decode(CompressedTickRanges.encode(shuffled)));
+	}
+	
+	@Test public void largeValues() {
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		ranges.add(new TickRange(0, 1));
+		ranges.add(new TickRange(Long.MAX_VALUE / 2, Long.MAX_VALUE / 2));
+		assertEquals(ranges, decode(CompressedTickRanges.encode(ranges)));
+	}
+	
+	@Test public void compresses() {
+		CompressedTickRanges compressed = CompressedTickRanges.encode(notes(4, 10000));
+		assertTrue(compressed.encodedSize() < 4 * 10000);
+		assertTrue(compressed.toByteArray().length < 4 * 10000);
+	}
+	
+	@Test public void get() {
+		List<TickRange> notes = notes(5, 1000);
+		CompressedTickRanges compressed = CompressedTickRanges.encode(notes);
+		
+		for (int i = 0; i < notes.size(); i += 37) {
+			assertEquals(notes.get(i), compressed.get(i));
+		}
+		
+		assertEquals(notes.get(999), compressed.get(999));
+	}
+	
+	@Test public void seek() {
+		List<TickRange> notes = notes(6, 1000);
+		CompressedTickRanges compressed = CompressedTickRanges.encode(notes);
+		long last = notes.get(notes.size() - 1).start;
+		
+		for (long tick = 0; tick <= last + 1; tick += 17) {
+			int expected = 0;
+			
+			while (expected < notes.size() && notes.get(expected).start < tick) {
+				expected++;
+			}
+			
+			CompressedTickRanges.Cursor cursor = compressed.seek(tick);
+			
+			if (expected < notes.size()) {
+				assertTrue(cursor.next());
+				assertEquals(expected, cursor.index());
+				assertEquals(notes.get(expected), TickRange.fromProvider(cursor));
+			} else {
+				assertFalse(cursor.next());
+			}
+		}
+	}
+	
+	@Test public void empty() {
+		CompressedTickRanges compressed =
+			CompressedTickRanges.encode(new ArrayList<TickRange>());
+		assertEquals(0, compressed.size());
+		assertFalse(compressed.cursor().next());
+		assertFalse(compressed.seek(100).next());
+		assertEquals(0, CompressedTickRanges.fromByteArray(compressed.toByteArray()).size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTruncated() {
+		byte[] bytes = CompressedTickRanges.encode(notes(7, 300)).toByteArray();
+		byte[] truncated = new byte[bytes.length - 1];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		CompressedTickRanges.fromByteArray(truncated);
+	}
+}
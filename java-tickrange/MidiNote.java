@@ -0,0 +1,116 @@
+package net.tmullin.ipather;
+
+/**
+ * A note read from a MIDI sequence, made from a matching pair of note on
+ * and note off events.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class MidiNote implements TickRangeProvider {
+	
+	/**
+	 * The index of the track the note was read from
+	 */
+	private final int track;
+	
+	/**
+	 * The channel of the note, from 0 to 15
+	 */
+	private final int channel;
+	
+	/**
+	 * The key number of the note, from 0 to 127
+	 */
+	private final int key;
+	
+	/**
+	 * The velocity of the note on event, from 1 to 127
+	 */
+	private final int velocity;
+	
+	/**
+	 * The tick of the note on event
+	 */
+	private final long tick;
+	
+	/**
+	 * The tick of the note off event
+	 */
+	private final long endTick;
+	
+	/**
+	 * Creates a new note.
+	 * 
+	 * @param track The index of the track the note is in
+	 * @param channel The channel of the note
+	 * @param key The key number of the note
+	 * @param velocity The velocity of the note on event
+	 * @param tick The tick of the note on event
+	 * @param endTick The tick of the note off event
+	 */
+	public MidiNote(
+			int track, int channel, int key, int velocity,
+			long tick, long endTick) {
+		this.track    = track;
+		this.channel  = channel;
+		this.key      = key;
+		this.velocity = velocity;
+		this.tick     = tick;
+		this.endTick  = endTick;
+	}
+	
+	/**
+	 * 
+	 * @return The index of the track the note was read from
+	 */
+	public int getTrack() {
+		return track;
+	}
+	
+	/**
+	 * 
+	 * @return The channel of the note, from 0 to 15
+	 */
+	public int getChannel() {
+		return channel;
+	}
+	
+	/**
+	 * 
+	 * @return The key number of the note, from 0 to 127
+	 */
+	public int getKey() {
+		return key;
+	}
+	
+	/**
+	 * 
+	 * @return The velocity of the note on event, from 1 to 127
+	 */
+	public int getVelocity() {
+		return velocity;
+	}
+	
+	@Override
+	public long getTick() {
+		return tick;
+	}
+	
+	@Override
+	public long getEndTick() {
+		return endTick;
+	}
+	
+	@Override
+	public long getTickLength() {
+		return endTick - tick;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+			"[%s, %s) track %s channel %s key %s velocity %s",
+			tick, endTick, track, channel, key, velocity);
+	}
+}
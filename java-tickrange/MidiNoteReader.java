@@ -0,0 +1,473 @@
+package net.tmullin.ipather;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Reads the notes from a Standard MIDI File as a stream instead of
+ * loading the whole sequence into memory first, as
+ * {@link javax.sound.midi.MidiSystem#getSequence(java.io.InputStream)}
+ * does. Track chunks are parsed through a fixed-size buffer, and note on
+ * and note off events are paired into {@link MidiNote}s as they are
+ * read, so the memory used depends on the number of notes sounding at
+ * once rather than on the size of the file.
+ * <p>
+ * Running status is supported, including across meta and system
+ * exclusive events for files that rely on that. A note on event with a
+ * velocity of zero is treated as a note off. When several notes of the
+ * same key on the same channel overlap, each note off ends the earliest
+ * note still sounding. Notes that are still sounding at the end of a
+ * track end there, and notes that would have a length of zero are
+ * skipped since they cannot be represented as a {@link TickRange}.
+ * <p>
+ * Notes are returned in the order they end, one track after another.
+ * Tick values are relative to the start of each track, in the units
+ * given by {@link #getDivision()}.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class MidiNoteReader implements Closeable {
+	
+	/**
+	 * The size of the buffer used to read from the channel
+	 */
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * The number of distinct channel and key combinations
+	 */
+	private static final int SLOTS = 16 * 128;
+	
+	/**
+	 * The channel the file is read from
+	 */
+	private final ReadableByteChannel channel;
+	
+	/**
+	 * The buffer holding bytes read from the channel but not yet parsed
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	
+	/**
+	 * The format from the header chunk
+	 */
+	private final int format;
+	
+	/**
+	 * The number of tracks from the header chunk
+	 */
+	private final int trackCount;
+	
+	/**
+	 * The division from the header chunk
+	 */
+	private final int division;
+	
+	/**
+	 * Notes that have ended but have not been returned yet
+	 */
+	private final ArrayDeque<MidiNote> pending = new ArrayDeque<MidiNote>();
+	
+	/**
+	 * For each channel and key, a queue of the note on ticks and
+	 * velocities of the notes that are sounding, packed into longs
+	 */
+	private final long[][] openNotes = new long[SLOTS][];
+	
+	/**
+	 * For each channel and key, the index of the earliest sounding note
+	 * in its queue
+	 */
+	private final int[] openHeads = new int[SLOTS];
+	
+	/**
+	 * For each channel and key, the number of sounding notes
+	 */
+	private final int[] openCounts = new int[SLOTS];
+	
+	/**
+	 * The index of the track being read, or -1 before the first track
+	 */
+	private int track = -1;
+	
+	/**
+	 * Whether a track chunk is being read
+	 */
+	private boolean inTrack;
+	
+	/**
+	 * The number of bytes left in the current chunk
+	 */
+	private long chunkRemaining;
+	
+	/**
+	 * The absolute tick of the last event read in the current track
+	 */
+	private long tick;
+	
+	/**
+	 * The status byte of the last channel message, for running status
+	 */
+	private int runningStatus;
+	
+	/**
+	 * Creates a new reader and reads the header chunk from the channel.
+	 * The channel should be a blocking one.
+	 * 
+	 * @param channel The channel to read the file from
+	 * @throws IOException If the header cannot be read or the data is
+	 * 		not a Standard MIDI File
+	 */
+	public MidiNoteReader(ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer.limit(0);
+		
+		if (!fill(8) || buffer.getInt() != 0x4D546864) { // MThd
+			throw new IOException("not a standard MIDI file");
+		}
+		
+		long headerLength = buffer.getInt() & 0xFFFFFFFFL;
+		
+		if (headerLength < 6) {
+			throw new IOException("header chunk too short: " + headerLength);
+		}
+		
+		require(6);
+		format     = buffer.getShort() & 0xFFFF;
+		trackCount = buffer.getShort() & 0xFFFF;
+		division   = buffer.getShort();
+		skip(headerLength - 6);
+	}
+	
+	/**
+	 * 
+	 * @return The format of the file, 0, 1 or 2
+	 */
+	public int getFormat() {
+		return format;
+	}
+	
+	/**
+	 * 
+	 * @return The number of tracks in the header chunk
+	 */
+	public int getTrackCount() {
+		return trackCount;
+	}
+	
+	/**
+	 * 
+	 * @return The division from the header chunk, which is the number of
+	 * 		ticks per quarter note if positive or an SMPTE format and
+	 * 		resolution if negative
+	 */
+	public int getDivision() {
+		return division;
+	}
+	
+	/**
+	 * Reads the next note from the file.
+	 * 
+	 * @return The next note or null if there are no more notes
+	 * @throws IOException If the file cannot be read or is malformed
+	 */
+	public MidiNote next() throws IOException {
+		while (pending.isEmpty()) {
+			if (!inTrack && !nextTrack()) {
+				return null;
+			}
+			
+			readEvent();
+		}
+		
+		return pending.poll();
+	}
+	
+	/**
+	 * Reads every remaining note from the file.
+	 * 
+	 * @param action Called with each note in the order they are read
+	 * @throws IOException If the file cannot be read or is malformed
+	 */
+	public void read(Consumer<? super MidiNote> action) throws IOException {
+		for (MidiNote note = next(); null != note; note = next()) {
+			action.accept(note);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Skips to the start of the next track chunk, ignoring any chunks of
+	 * other types.
+	 * 
+	 * @return Whether there is another track
+	 * @throws IOException If the file cannot be read or is malformed
+	 */
+	private boolean nextTrack() throws IOException {
+		while (fill(8)) {
+			int type = buffer.getInt();
+			long length = buffer.getInt() & 0xFFFFFFFFL;
+			
+			if (type == 0x4D54726B) { // MTrk
+				track++;
+				inTrack = true;
+				chunkRemaining = length;
+				tick = 0;
+				runningStatus = 0;
+				return true;
+			}
+			
+			skip(length);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Reads one event from the current track, ending the track if its
+	 * chunk runs out or the event is an end of track meta event.
+	 * 
+	 * @throws IOException If the file cannot be read or is malformed
+	 */
+	private void readEvent() throws IOException {
+		if (0 == chunkRemaining) {
+			endTrack();
+			return;
+		}
+		
+		tick += readVarLen();
+		int b = readByte();
+		
+		if (0xFF == b) { // meta event
+			int type = readByte();
+			long length = readVarLen();
+			skipInChunk(length);
+			
+			if (0x2F == type) { // end of track
+				skip(chunkRemaining);
+				chunkRemaining = 0;
+				endTrack();
+			}
+			
+			return;
+		}
+		
+		if (0xF0 == b || 0xF7 == b) { // system exclusive
+			skipInChunk(readVarLen());
+			return;
+		}
+		
+		int status;
+		int data1;
+		
+		if (0 != (b & 0x80)) {
+			status = b;
+			data1 = readByte();
+		} else if (0 != runningStatus) {
+			status = runningStatus;
+			data1 = b;
+		} else {
+			throw new IOException("data byte without running status in track " + track);
+		}
+		
+		if (status >= 0xF0) {
+			throw new IOException(String.format(
+				"unexpected status byte 0x%X in track %s", status, track));
+		}
+		
+		runningStatus = status;
+		int command = status & 0xF0;
+		
+		if (0xC0 == command || 0xD0 == command) { // one data byte
+			return;
+		}
+		
+		int data2 = readByte();
+		
+		if (0x90 == command && 0 != data2) {
+			noteOn(status & 0x0F, data1, data2);
+		} else if (0x80 == command || 0x90 == command) {
+			noteOff(status & 0x0F, data1);
+		}
+	}
+	
+	/**
+	 * Records the start of a note.
+	 */
+	private void noteOn(int ch, int key, int velocity) {
+		int slot = (ch << 7) | (key & 0x7F);
+		long[] queue = openNotes[slot];
+		int count = openCounts[slot];
+		
+		if (null == queue) {
+			queue = openNotes[slot] = new long[2];
+		} else if (count == queue.length) {
+			// unwrap the ring into a bigger array
+			long[] grown = new long[count * 2];
+			int head = openHeads[slot];
+			System.arraycopy(queue, head, grown, 0, count - head);
+			System.arraycopy(queue, 0, grown, count - head, head);
+			queue = openNotes[slot] = grown;
+			openHeads[slot] = 0;
+		}
+		
+		queue[(openHeads[slot] + count) % queue.length] =
+			(tick << 7) | (velocity & 0x7F);
+		openCounts[slot] = count + 1;
+	}
+	
+	/**
+	 * Ends the earliest sounding note with the same channel and key, if
+	 * there is one.
+	 */
+	private void noteOff(int ch, int key) {
+		int slot = (ch << 7) | (key & 0x7F);
+		
+		if (0 == openCounts[slot]) {
+			return;
+		}
+		
+		long[] queue = openNotes[slot];
+		int head = openHeads[slot];
+		long open = queue[head];
+		openHeads[slot] = (head + 1) % queue.length;
+		openCounts[slot]--;
+		addNote(ch, key, open);
+	}
+	
+	/**
+	 * Queues a finished note to be returned, unless it has no length.
+	 */
+	private void addNote(int ch, int key, long open) {
+		long start = open >>> 7;
+		
+		if (start < tick) {
+			pending.add(new MidiNote(
+				track, ch, key & 0x7F, (int) (open & 0x7F), start, tick));
+		}
+	}
+	
+	/**
+	 * Ends every note still sounding at the end of the current track.
+	 */
+	private void endTrack() {
+		for (int slot = 0; slot < SLOTS; slot++) {
+			while (openCounts[slot] > 0) {
+				noteOff(slot >>> 7, slot & 0x7F);
+			}
+			
+			openHeads[slot] = 0;
+		}
+		
+		inTrack = false;
+	}
+	
+	/**
+	 * Reads a byte from the current chunk.
+	 */
+	private int readByte() throws IOException {
+		if (chunkRemaining <= 0) {
+			throw new IOException("event runs past the end of track " + track);
+		}
+		
+		require(1);
+		chunkRemaining--;
+		return buffer.get() & 0xFF;
+	}
+	
+	/**
+	 * Reads a variable-length quantity from the current chunk.
+	 */
+	private long readVarLen() throws IOException {
+		long value = 0;
+		
+		for (int i = 0; i < 4; i++) {
+			int b = readByte();
+			value = (value << 7) | (b & 0x7F);
+			
+			if (0 == (b & 0x80)) {
+				return value;
+			}
+		}
+		
+		throw new IOException("variable-length quantity too long in track " + track);
+	}
+	
+	/**
+	 * Skips bytes within the current chunk.
+	 */
+	private void skipInChunk(long count) throws IOException {
+		if (count > chunkRemaining) {
+			throw new IOException("event runs past the end of track " + track);
+		}
+		
+		skip(count);
+		chunkRemaining -= count;
+	}
+	
+	/**
+	 * Skips bytes in the file.
+	 */
+	private void skip(long count) throws IOException {
+		while (count > 0) {
+			require(1);
+			int n = (int) Math.min(count, buffer.remaining());
+			buffer.position(buffer.position() + n);
+			count -= n;
+		}
+	}
+	
+	/**
+	 * Makes sure the buffer has at least the specified number of bytes,
+	 * failing if the file ends first.
+	 */
+	private void require(int count) throws IOException {
+		if (!fill(count)) {
+			throw new EOFException("unexpected end of MIDI file");
+		}
+	}
+	
+	/**
+	 * Reads from the channel until the buffer has at least the specified
+	 * number of bytes.
+	 * 
+	 * @param count The number of bytes needed
+	 * @return True if the bytes are available or false if the file ended
+	 * 		cleanly before any of them were read
+	 * @throws EOFException If the file ended partway through
+	 */
+	private boolean fill(int count) throws IOException {
+		if (buffer.remaining() >= count) {
+			return true;
+		}
+		
+		boolean empty = !buffer.hasRemaining();
+		buffer.compact();
+		
+		try {
+			while (buffer.position() < count) {
+				if (channel.read(buffer) < 0) {
+					if (empty && 0 == buffer.position()) {
+						return false;
+					}
+					
+					throw new EOFException("unexpected end of MIDI file");
+				}
+			}
+		} finally {
+			buffer.flip();
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,199 @@
+package net.tmullin.ipather;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MidiNoteReaderTest {
+	/**
+	 * Helper that creates a Standard MIDI File from the bytes of its
+	 * tracks.
+	 * 
+	 * @param tracks The event bytes of each track, not including the
+	 * 		chunk header
+	 * @return The bytes of the file
+	 */
+	private static byte[] file(int[]... tracks) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuffer header = ByteBuffer.allocate(14);
+		header.putInt(0x4D546864).putInt(6);
+		header.putShort((short) 1).putShort((short) tracks.length).putShort((short) 480);
+		out.write(header.array(), 0, 14);
+		
+		for (int[] track : tracks) {
+			ByteBuffer chunk = ByteBuffer.allocate(8);
+			chunk.putInt(0x4D54726B).putInt(track.length);
+			out.write(chunk.array(), 0, 8);
+			
+			for (int b : track) {
+				out.write(b);
+			}
+		}
+		
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Helper that reads every note from a file, one byte at a time so
+	 * that every read refills the buffer.
+	 * 
+	 * @param bytes The bytes of the file
+	 * @return The notes formatted as strings
+	 */
+	private static List<String> read(byte[] bytes) throws IOException {
+		final ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+		ReadableByteChannel channel = new ReadableByteChannel() {
+			@Override
+			public int read(ByteBuffer dst) {
+				int b = in.read();
+				
+				if (b < 0) {
+					return -1;
+				}
+				
+				dst.put((byte) b);
+				return 1;
+			}
+			
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+		
+		List<String> ret = new ArrayList<String>();
+		MidiNoteReader reader = new MidiNoteReader(channel);
+		
+		for (MidiNote note = reader.next(); null != note; note = reader.next()) {
+			ret.add(note.toString());
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that formats a note the same way as {@link MidiNote#toString()}.
+	 */
+	private static String note(
+			long start, long end, int track, int channel, int key, int velocity) {
+		return new MidiNote(track, channel, key, velocity, start, end).toString();
+	}
+	
+	@Test public void header() throws IOException {
+		MidiNoteReader reader = new MidiNoteReader(Channels.newChannel(
+			new ByteArrayInputStream(file(new int[0], new int[0]))));
+		assertEquals(1, reader.getFormat());
+		assertEquals(2, reader.getTrackCount());
+		assertEquals(480, reader.getDivision());
+		assertNull(reader.next());
+	}
+	
+	@Test(expected = IOException.class)
+	public void notMidi() throws IOException {
+		read(new byte[] {'R', 'I', 'F', 'F', 0, 0, 0, 0});
+	}
+	
+	@Test public void noteOnNoteOff() throws IOException {
+		assertEquals(
+			List.of(note(0, 96, 0, 0, 60, 100)),
+			read(file(new int[] {
+				0x00, 0x90, 60, 100,
+				0x60, 0x80, 60, 64,
+				0x00, 0xFF, 0x2F, 0x00})));
+	}
+	
+	@Test public void runningStatusAndZeroVelocity() throws IOException {
+		assertEquals(
+			List.of(note(0, 10, 0, 1, 60, 100), note(10, 20, 0, 1, 62, 90)),
+			read(file(new int[] {
+				0x00, 0x91, 60, 100,
+				0x0A, 60, 0,
+				0x00, 62, 90,
+				0x00, 0xFF, 0x01, 0x02, 'h', 'i', // text meta event
+				0x0A, 62, 0,
+				0x00, 0xFF, 0x2F, 0x00})));
+	}
+	
+	@Test public void overlappingSameKey() throws IOException {
+		assertEquals(
+			List.of(note(0, 20, 0, 0, 60, 100), note(10, 30, 0, 0, 60, 80)),
+			read(file(new int[] {
+				0x00, 0x90, 60, 100,
+				0x0A, 60, 80,
+				0x0A, 0x80, 60, 0,
+				0x0A, 60, 0,
+				0x00, 0xFF, 0x2F, 0x00})));
+	}
+	
+	@Test public void openNotesEndWithTrack() throws IOException {
+		assertEquals(
+			List.of(note(5, 40, 0, 0, 60, 100), note(50, 60, 1, 9, 36, 127)),
+			read(file(
+				new int[] {
+					0x05, 0x90, 60, 100,
+					0x23, 0xFF, 0x2F, 0x00},
+				new int[] {
+					0x32, 0x99, 36, 127,
+					0x0A, 0xC0, 5, // program change, one data byte
+					0x00, 0xF0, 0x01, 0xF7}))); // no end of track event
+	}
+	
+	@Test public void zeroLengthSkipped() throws IOException {
+		assertTrue(read(file(new int[] {
+			0x00, 0x90, 60, 100,
+			0x00, 0x80, 60, 0,
+			0x00, 0xFF, 0x2F, 0x00})).isEmpty());
+	}
+	
+	@Test(expected = EOFException.class)
+	public void truncated() throws IOException {
+		byte[] bytes = file(new int[] {0x00, 0x90, 60, 100});
+		byte[] truncated = new byte[bytes.length - 2];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		read(truncated);
+	}
+	
+	@Test public void matchesMidiSystem() throws Exception {
+		Sequence sequence = new Sequence(Sequence.PPQ, 480);
+		Track track = sequence.createTrack();
+		List<String> expected = new ArrayList<String>();
+		
+		for (int i = 0; i < 200; i++) {
+			int key = 40 + (i * 7) % 40;
+			long start = i * 60L;
+			long end = start + 30 + (i * 13) % 200;
+			track.add(new MidiEvent(
+				new ShortMessage(ShortMessage.NOTE_ON, 2, key, 100), start));
+			track.add(new MidiEvent(
+				new ShortMessage(ShortMessage.NOTE_OFF, 2, key, 0), end));
+			expected.add(note(start, end, 0, 2, key, 100));
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MidiSystem.write(sequence, 1, out);
+		List<String> actual = read(out.toByteArray());
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,576 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of tick ranges stored as parallel arrays of start and
+ * end ticks rather than as individual {@link TickRange} objects. Bulk
+ * operations work directly on the primitive arrays, and a range is only
+ * exposed as a {@link TickRangeProvider} when one is asked for through
+ * {@link #view(int)} or {@link #get(int)}.
+ * <p>
+ * Ranges added to the list are validated the same way as by the
+ * {@link TickRange} constructor. The list is not thread safe.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class PackedTickRangeList {
+	
+	/**
+	 * The capacity used when the first range is added to an empty list
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	/**
+	 * Partitions at or below this size are sorted by insertion sort
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 32;
+	
+	/**
+	 * The start ticks of the ranges in the list
+	 */
+	private long[] starts;
+	
+	/**
+	 * The end ticks of the ranges in the list
+	 */
+	private long[] ends;
+	
+	/**
+	 * The number of ranges in the list
+	 */
+	private int size;
+	
+	/**
+	 * Creates a new empty list.
+	 */
+	public PackedTickRangeList() {
+		this(0);
+	}
+	
+	/**
+	 * Creates a new empty list with room for the specified number of
+	 * ranges before it needs to grow.
+	 * 
+	 * @param capacity The initial capacity
+	 */
+	public PackedTickRangeList(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must be >= 0");
+		}
+		
+		starts = new long[capacity];
+		ends   = new long[capacity];
+	}
+	
+	/**
+	 * Creates a new list containing the supplied ranges in iteration
+	 * order.
+	 * 
+	 * @param ranges The ranges to add
+	 */
+	public PackedTickRangeList(Iterable<? extends TickRangeProvider> ranges) {
+		this(0);
+		addAll(ranges);
+	}
+	
+	/**
+	 * Checks that a start and end tick make a valid range, using the same
+	 * rules as the {@link TickRange} constructor.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 */
+	private static void validate(long start, long end) {
+		if (start < 0) {
+			throw new IllegalArgumentException("start must be >= 0");
+		}
+		
+		if (end <= start) {
+			throw new IllegalArgumentException("length must be > 0");
+		}
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges in the list
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * 
+	 * @return Whether the list has no ranges
+	 */
+	public boolean isEmpty() {
+		return 0 == size;
+	}
+	
+	/**
+	 * Makes sure the list can hold at least the specified number of
+	 * ranges without growing again.
+	 * 
+	 * @param capacity The minimum capacity
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > starts.length) {
+			int newCapacity = Math.max(
+				capacity,
+				Math.max(DEFAULT_CAPACITY, starts.length + (starts.length >> 1)));
+			starts = Arrays.copyOf(starts, newCapacity);
+			ends   = Arrays.copyOf(ends, newCapacity);
+		}
+	}
+	
+	/**
+	 * Shrinks the backing arrays to the number of ranges in the list.
+	 */
+	public void trimToSize() {
+		if (size < starts.length) {
+			starts = Arrays.copyOf(starts, size);
+			ends   = Arrays.copyOf(ends, size);
+		}
+	}
+	
+	/**
+	 * Removes all of the ranges from the list.
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Removes the ranges at and after the specified index, for classes in
+	 * the package that compact the backing arrays in place.
+	 * 
+	 * @param newSize The number of ranges to keep
+	 */
+	void truncate(int newSize) {
+		if (newSize < 0 || newSize > size) {
+			throw new IndexOutOfBoundsException(
+				"newSize: " + newSize + ", size: " + size);
+		}
+		
+		size = newSize;
+	}
+	
+	/**
+	 * Appends a range to the end of the list.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 */
+	public void add(long start, long end) {
+		validate(start, end);
+		ensureCapacity(size + 1);
+		starts[size] = start;
+		ends[size]   = end;
+		size++;
+	}
+	
+	/**
+	 * Appends a range to the end of the list.
+	 * 
+	 * @param r The range to append
+	 */
+	public void add(TickRangeProvider r) {
+		add(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * Appends all of the supplied ranges to the end of the list in
+	 * iteration order.
+	 * 
+	 * @param ranges The ranges to append
+	 */
+	public void addAll(Iterable<? extends TickRangeProvider> ranges) {
+		for (TickRangeProvider r : ranges) {
+			add(r);
+		}
+	}
+	
+	/**
+	 * Replaces the range at the specified index.
+	 * 
+	 * @param index The index of the range to replace
+	 * @param start The new start tick
+	 * @param end The new end tick
+	 */
+	public void set(int index, long start, long end) {
+		checkIndex(index);
+		validate(start, end);
+		starts[index] = start;
+		ends[index]   = end;
+	}
+	
+	/**
+	 * Checks that an index refers to a range in the list.
+	 * 
+	 * @param index The index to check
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + size);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in the list
+	 * @return The start tick of the range
+	 */
+	public long getTick(int index) {
+		checkIndex(index);
+		return starts[index];
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in the list
+	 * @return The end tick of the range
+	 */
+	public long getEndTick(int index) {
+		checkIndex(index);
+		return ends[index];
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in the list
+	 * @return The length of the range in ticks
+	 */
+	public long getTickLength(int index) {
+		checkIndex(index);
+		return ends[index] - starts[index];
+	}
+	
+	/**
+	 * Creates a new TickRange equal to the range at the specified index.
+	 * 
+	 * @param index The index of a range in the list
+	 * @return A TickRange for the range
+	 */
+	public TickRange get(int index) {
+		checkIndex(index);
+		return new TickRange(starts[index], ends[index], true);
+	}
+	
+	/**
+	 * Creates a lightweight view of the range at the specified index. The
+	 * view reads through to the list, so it reflects any later change to
+	 * that index, including the reordering done by {@link #sort()}.
+	 * 
+	 * @param index The index of a range in the list
+	 * @return A TickRangeProvider backed by the list
+	 */
+	public TickRangeProvider view(final int index) {
+		checkIndex(index);
+		return new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return PackedTickRangeList.this.getTick(index);
+			}
+			
+			@Override
+			public long getEndTick() {
+				return PackedTickRangeList.this.getEndTick(index);
+			}
+			
+			@Override
+			public long getTickLength() {
+				return PackedTickRangeList.this.getTickLength(index);
+			}
+			
+			@Override
+			public String toString() {
+				return String.format("[%s, %s)", getTick(), getEndTick());
+			}
+		};
+	}
+	
+	/**
+	 * Creates a TickRange for every range in the list.
+	 * 
+	 * @return An array of TickRanges in list order
+	 */
+	public TickRange[] toArray() {
+		TickRange[] ret = new TickRange[size];
+		
+		for (int i = 0; i < size; i++) {
+			ret[i] = new TickRange(starts[i], ends[i], true);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Exposes the backing array of start ticks to other classes in the
+	 * package for bulk scans. Only the first {@link #size()} values are
+	 * meaningful and the array is replaced whenever the list grows.
+	 * 
+	 * @return The backing array of start ticks
+	 */
+	long[] startArray() {
+		return starts;
+	}
+	
+	/**
+	 * Exposes the backing array of end ticks to other classes in the
+	 * package for bulk scans. Only the first {@link #size()} values are
+	 * meaningful and the array is replaced whenever the list grows.
+	 * 
+	 * @return The backing array of end ticks
+	 */
+	long[] endArray() {
+		return ends;
+	}
+	
+	/**
+	 * Sorts the list the same way as
+	 * {@link TickRange#compareTo(TickRangeProvider)}, first by start tick
+	 * then by end tick if the start ticks are equal.
+	 */
+	public void sort() {
+		sort(starts, ends, 0, size);
+	}
+	
+	/**
+	 * 
+	 * @return Whether the list is in the order produced by {@link #sort()}
+	 */
+	public boolean isSorted() {
+		for (int i = 1; i < size; i++) {
+			if (compare(starts, ends, i - 1, i) > 0) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Searches a sorted list for the specified range. The result is
+	 * undefined if the list is not sorted.
+	 * 
+	 * @param start The start tick to search for
+	 * @param end The end tick to search for
+	 * @return The index of the range if it is in the list, otherwise
+	 * 		<code>(-(insertion point) - 1)</code> as with
+	 * 		{@link Arrays#binarySearch(long[], long)}
+	 */
+	public int binarySearch(long start, long end) {
+		int lo = 0;
+		int hi = size - 1;
+		
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long midStart = starts[mid];
+			long midEnd   = ends[mid];
+			
+			if (midStart < start || (midStart == start && midEnd < end)) {
+				lo = mid + 1;
+			} else if (midStart == start && midEnd == end) {
+				return mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		
+		return -(lo + 1);
+	}
+	
+	/**
+	 * Searches a sorted list for the specified range.
+	 * 
+	 * @param r The range to search for
+	 * @return The index of the range if it is in the list, otherwise
+	 * 		<code>(-(insertion point) - 1)</code>
+	 * @see #binarySearch(long, long)
+	 */
+	public int binarySearch(TickRangeProvider r) {
+		return binarySearch(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * Finds the first range in a sorted list that starts at or after the
+	 * specified tick. The result is undefined if the list is not sorted.
+	 * 
+	 * @param tick The tick to search for
+	 * @return The index of the first range starting at or after the tick,
+	 * 		or {@link #size()} if there is none
+	 */
+	public int lowerBound(long tick) {
+		int lo = 0;
+		int hi = size;
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			
+			if (starts[mid] < tick) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		
+		return lo;
+	}
+	
+	/**
+	 * Counts the ranges in the list that contain the specified tick.
+	 * 
+	 * @param tick The tick to check
+	 * @return The number of ranges that start at or before the tick and
+	 * 		end after it
+	 */
+	public int countContaining(long tick) {
+		int count = 0;
+		
+		for (int i = 0; i < size; i++) {
+			if (starts[i] <= tick && tick < ends[i]) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Counts the ranges in the list that intersect the supplied range, as
+	 * determined by {@link TickRange#intersects(TickRangeProvider)}.
+	 * 
+	 * @param r The range to check
+	 * @return The number of intersecting ranges
+	 */
+	public int countIntersecting(TickRangeProvider r) {
+		long start = r.getTick();
+		long end   = r.getEndTick();
+		int count = 0;
+		
+		for (int i = 0; i < size; i++) {
+			if (starts[i] < end && start < ends[i]) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			
+			sb.append('[').append(starts[i]).append(", ").append(ends[i]).append(')');
+		}
+		
+		return sb.append(']').toString();
+	}
+	
+	/**
+	 * Compares the pairs at two indices of a pair of parallel arrays,
+	 * first by the primary array then by the secondary array.
+	 * 
+	 * @param a The primary array
+	 * @param b The secondary array
+	 * @param i The first index
+	 * @param j The second index
+	 * @return A negative number, zero or a positive number if the first
+	 * 		pair is less than, equal to or greater than the second
+	 */
+	private static int compare(long[] a, long[] b, int i, int j) {
+		if (a[i] != a[j]) {
+			return a[i] < a[j] ? -1 : 1;
+		}
+		
+		return (b[i] < b[j] ? -1 : (b[i] == b[j] ? 0 : 1));
+	}
+	
+	/**
+	 * Sorts the pairs in [from, to) of a pair of parallel arrays, first
+	 * by the primary array then by the secondary array. The sort is a
+	 * merge sort that allocates one scratch copy of the range being
+	 * sorted and no per-element objects.
+	 * 
+	 * @param a The primary array
+	 * @param b The secondary array
+	 * @param from The first index to sort
+	 * @param to One past the last index to sort
+	 */
+	static void sort(long[] a, long[] b, int from, int to) {
+		if (to - from <= INSERTION_SORT_THRESHOLD) {
+			insertionSort(a, b, from, to);
+			return;
+		}
+		
+		long[] auxA = Arrays.copyOfRange(a, from, to);
+		long[] auxB = Arrays.copyOfRange(b, from, to);
+		
+		// the scratch copy holds the same values, so sort it into the
+		// destination while alternating between the two at each level
+		mergeSort(auxA, auxB, a, b, from, to, -from);
+	}
+	
+	/**
+	 * Sorts the pairs in [from, to) with an insertion sort.
+	 */
+	private static void insertionSort(long[] a, long[] b, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			long keyA = a[i];
+			long keyB = b[i];
+			int j = i - 1;
+			
+			while (j >= from && (a[j] > keyA || (a[j] == keyA && b[j] > keyB))) {
+				a[j + 1] = a[j];
+				b[j + 1] = b[j];
+				j--;
+			}
+			
+			a[j + 1] = keyA;
+			b[j + 1] = keyB;
+		}
+	}
+	
+	/**
+	 * Merge sorts [from, to) of the source arrays into the same indices of
+	 * the destination arrays. Both hold the same values on entry, and
+	 * <code>srcOff</code> is the amount to add to a destination index to
+	 * get the matching source index.
+	 */
+	private static void mergeSort(
+			long[] srcA, long[] srcB, long[] dstA, long[] dstB,
+			int from, int to, int srcOff) {
+		if (to - from <= INSERTION_SORT_THRESHOLD) {
+			insertionSort(dstA, dstB, from, to);
+			return;
+		}
+		
+		int mid = (from + to) >>> 1;
+		
+		// sort both halves of the source using the destination as scratch
+		mergeSort(dstA, dstB, srcA, srcB, from + srcOff, mid + srcOff, -srcOff);
+		mergeSort(dstA, dstB, srcA, srcB, mid + srcOff, to + srcOff, -srcOff);
+		
+		int i = from + srcOff;
+		int iEnd = mid + srcOff;
+		int j = iEnd;
+		int jEnd = to + srcOff;
+		
+		for (int k = from; k < to; k++) {
+			if (j >= jEnd || (i < iEnd && compare(srcA, srcB, i, j) <= 0)) {
+				dstA[k] = srcA[i];
+				dstB[k] = srcB[i++];
+			} else {
+				dstA[k] = srcA[j];
+				dstB[k] = srcB[j++];
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PackedTickRangeListTest {
+	/**
+	 * Helper that creates a list from pairs of start and end ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The list of ranges
+	 */
+	private static PackedTickRangeList list(long... ticks) {
+		PackedTickRangeList ret = new PackedTickRangeList();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.add(ticks[i], ticks[i + 1]);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper for sort tests. Sorts random ranges both as a packed list
+	 * and as TickRange objects and checks that the results match.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to sort
+	 */
+	private void sort(long seed, int count) {
+		Random random = new Random(seed);
+		List<TickRange> expected = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			expected.add(new TickRange(random.nextInt(100), 1 + random.nextInt(10)));
+		}
+		
+		PackedTickRangeList list = new PackedTickRangeList(expected);
+		list.sort();
+		Collections.sort(expected);
+		
+		assertTrue(list.isSorted());
+		assertEquals(expected, Arrays.asList(list.toArray()));
+	}
+	
+	@Test public void sortSmall() {
+		sort(1, 10);
+	}
+	
+	@Test public void sortLarge() {
+		sort(2, 5000);
+	}
+	
+	@Test public void sortEmpty() {
+		sort(3, 0);
+	}
+	
+	@Test public void grows() {
+		PackedTickRangeList list = new PackedTickRangeList(1);
+		
+		for (int i = 0; i < 100; i++) {
+			list.add(i, i + 1);
+		}
+		
+		assertEquals(100, list.size());
+		assertEquals(new TickRange(99, 100, true), list.get(99));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void addNegativeStart() {
+		list(-1, 5);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void addEmpty() {
+		list(5, 5);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void getPastSize() {
+		list(1, 5).get(1);
+	}
+	
+	@Test public void binarySearch() {
+		PackedTickRangeList list = list(123, 150, 123, 456, 150, 400, 400, 456);
+		assertEquals(1, list.binarySearch(123, 456));
+		assertEquals(3, list.binarySearch(new TickRange(400, 456, true)));
+		assertEquals(-3, list.binarySearch(123, 500));
+		assertEquals(-1, list.binarySearch(100, 500));
+		assertEquals(-5, list.binarySearch(500, 600));
+	}
+	
+	@Test public void lowerBound() {
+		PackedTickRangeList list = list(123, 150, 123, 456, 150, 400, 400, 456);
+		assertEquals(0, list.lowerBound(123));
+		assertEquals(2, list.lowerBound(124));
+		assertEquals(3, list.lowerBound(400));
+		assertEquals(4, list.lowerBound(401));
+	}
+	
+	@Test public void viewReadsThrough() {
+		PackedTickRangeList list = list(400, 456, 123, 150);
+		TickRangeProvider view = list.view(0);
+		assertEquals(new TickRange(400, 456, true), view);
+		
+		list.sort();
+		assertEquals(123, view.getTick());
+		assertEquals(150, view.getEndTick());
+		assertEquals(27, view.getTickLength());
+	}
+	
+	@Test public void counts() {
+		PackedTickRangeList list = list(123, 150, 123, 456, 150, 400, 400, 456);
+		assertEquals(2, list.countContaining(150));
+		assertEquals(0, list.countContaining(456));
+		assertEquals(3, list.countIntersecting(new TickRange(140, 160, true)));
+		assertEquals(0, list.countIntersecting(new TickRange(456, 500, true)));
+	}
+}
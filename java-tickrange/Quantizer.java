@@ -0,0 +1,321 @@
+package net.tmullin.ipather;
+
+/**
+ * Snaps the start and end ticks of ranges to a grid, such as when
+ * quantizing recorded notes to sixteenths, working directly on packed
+ * arrays of ticks instead of creating a {@link TickRange} for each one.
+ * <p>
+ * Each tick is moved towards the nearest grid point by the strength,
+ * from 0 (not at all) to 1 (all the way). With swing, every odd grid
+ * point is delayed by that fraction of the grid size. The start ticks
+ * are moved in a way that never changes their order, so a sorted list
+ * only needs ranges that end up starting on the same tick to be
+ * reordered by end tick, which is done as part of quantizing instead of
+ * sorting the whole list again.
+ * <p>
+ * When the end ticks are also quantized, a short range can end up with
+ * its end at or before its start, which would not be a valid range. What
+ * happens then is decided by the {@link EmptyRangePolicy}, so that a
+ * batch never fails part way through.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class Quantizer {
+	
+	/**
+	 * What to do with a range whose end would no longer be after its
+	 * start once it is quantized.
+	 */
+	public enum EmptyRangePolicy {
+		/**
+		 * Removes the range
+		 */
+		DROP,
+		
+		/**
+		 * Keeps the range's original length from its new start tick
+		 */
+		KEEP_LENGTH,
+		
+		/**
+		 * Ends the range at the next grid point after its new start tick
+		 */
+		EXTEND_TO_GRID
+	}
+	
+	/**
+	 * The number of ticks between grid points
+	 */
+	private final long grid;
+	
+	/**
+	 * How far to move each tick towards the grid, from 0 to 1
+	 */
+	private final double strength;
+	
+	/**
+	 * The number of ticks every odd grid point is delayed by
+	 */
+	private final long swingTicks;
+	
+	/**
+	 * Whether the end ticks are quantized or the lengths are kept
+	 */
+	private final boolean quantizeEnds;
+	
+	/**
+	 * What to do with ranges that would become empty
+	 */
+	private final EmptyRangePolicy policy;
+	
+	/**
+	 * Creates a quantizer that moves both ends of each range all the way
+	 * to an even grid, extending any range that would become empty to the
+	 * next grid point.
+	 * 
+	 * @param grid The number of ticks between grid points
+	 */
+	public Quantizer(long grid) {
+		this(grid, 1.0, 0.0, true, EmptyRangePolicy.EXTEND_TO_GRID);
+	}
+	
+	/**
+	 * Creates a quantizer.
+	 * 
+	 * @param grid The number of ticks between grid points
+	 * @param strength How far to move each tick towards the nearest grid
+	 * 		point, from 0 to 1
+	 * @param swing The fraction of the grid size to delay every odd grid
+	 * 		point by, at least 0 and less than 1
+	 * @param quantizeEnds True to quantize the end ticks as well as the
+	 * 		start ticks or false to keep the length of each range
+	 * @param policy What to do with ranges that would become empty
+	 */
+	public Quantizer(
+			long grid, double strength, double swing, boolean quantizeEnds,
+			EmptyRangePolicy policy) {
+		if (grid <= 0) {
+			throw new IllegalArgumentException("grid must be > 0");
+		}
+		
+		if (!(0 <= strength && strength <= 1)) {
+			throw new IllegalArgumentException("strength must be from 0 to 1");
+		}
+		
+		if (!(0 <= swing && swing < 1)) {
+			throw new IllegalArgumentException("swing must be >= 0 and < 1");
+		}
+		
+		if (null == policy) {
+			throw new IllegalArgumentException("policy must not be null");
+		}
+		
+		this.grid         = grid;
+		this.strength     = strength;
+		this.swingTicks   = Math.round(swing * grid);
+		this.quantizeEnds = quantizeEnds;
+		this.policy       = policy;
+	}
+	
+	/**
+	 * 
+	 * @param k The number of the grid point, counting from zero
+	 * @return The tick of the grid point, including any swing
+	 */
+	public long gridPoint(long k) {
+		return k * grid + ((0 != (k & 1)) ? swingTicks : 0);
+	}
+	
+	/**
+	 * Finds the grid point nearest to a tick. If the tick is exactly
+	 * half way between two grid points, the earlier one is used.
+	 * 
+	 * @param tick The tick to snap
+	 * @return The tick of the nearest grid point
+	 */
+	public long nearestGridPoint(long tick) {
+		long k = tick / grid;
+		long ret = gridPoint(k);
+		
+		// swing can move this point past the tick, closer to or past the next
+		if (k > 0 && tick < ret && tick - gridPoint(k - 1) <= ret - tick) {
+			return gridPoint(k - 1);
+		}
+		
+		long next = gridPoint(k + 1);
+		return (next - tick < Math.abs(tick - ret)) ? next : ret;
+	}
+	
+	/**
+	 * Finds the first grid point after a tick.
+	 * 
+	 * @param tick The tick to search from
+	 * @return The tick of the first grid point that is greater than tick
+	 */
+	public long nextGridPoint(long tick) {
+		long k = tick / grid;
+		long ret = gridPoint(k);
+		return (tick < ret) ? ret : gridPoint(k + 1);
+	}
+	
+	/**
+	 * Moves a tick towards the nearest grid point by the strength. Larger
+	 * ticks are never moved before smaller ones.
+	 * 
+	 * @param tick The tick to quantize
+	 * @return The quantized tick
+	 */
+	public long quantize(long tick) {
+		long delta = nearestGridPoint(tick) - tick;
+		return tick + Math.round(delta * strength);
+	}
+	
+	/**
+	 * Quantizes every range in a list in place. Ranges that the
+	 * {@link EmptyRangePolicy} drops are removed, and the rest stay in
+	 * the same order, except that if the list was sorted by
+	 * {@link TickRange#COMPARATOR}, ranges that now start on the same tick
+	 * are reordered by end tick so that the list is still sorted. A list
+	 * that was not sorted keeps its order exactly.
+	 * 
+	 * @param list The list to quantize
+	 * @return The number of ranges that were dropped
+	 */
+	public int quantize(PackedTickRangeList list) {
+		int size = list.size();
+		int kept = quantize(list.startArray(), list.endArray(), 0, size);
+		list.truncate(kept);
+		return size - kept;
+	}
+	
+	/**
+	 * Quantizes the ranges in [from, to) of a pair of parallel arrays of
+	 * start and end ticks in place, the same as
+	 * {@link #quantize(PackedTickRangeList)}. Ranges that are dropped are
+	 * removed by moving the later ones down, so only [from, returned
+	 * index) holds ranges afterwards.
+	 * 
+	 * @param starts The start ticks
+	 * @param ends The end ticks
+	 * @param from The first index to quantize
+	 * @param to One past the last index to quantize
+	 * @return One past the index of the last range that was kept
+	 * @throws IllegalArgumentException If any of the ranges is not valid,
+	 * 		in which case none of them are changed
+	 * @see #quantize(long[], long[], int, int, int[])
+	 */
+	public int quantize(long[] starts, long[] ends, int from, int to) {
+		return quantize(starts, ends, from, to, null);
+	}
+	
+	/**
+	 * Quantizes the ranges in [from, to) of a pair of parallel arrays in
+	 * place, as {@link #quantize(long[], long[], int, int)} does, and
+	 * records where each range that was kept came from. Since dropped
+	 * ranges close up the gap and a sorted input may have runs reordered,
+	 * this is what lets other data kept alongside the ranges, such as
+	 * pitches or velocities, be matched up with the result.
+	 * 
+	 * @param starts The start ticks
+	 * @param ends The end ticks
+	 * @param from The first index to quantize
+	 * @param to One past the last index to quantize
+	 * @param sourceOut If not null, sourceOut[k] is set to the index in
+	 * 		the input of the range at index k for every k in
+	 * 		[from, returned index), so it must be as long as the arrays
+	 * @return One past the index of the last range that was kept
+	 * @throws IllegalArgumentException If any of the ranges is not valid,
+	 * 		in which case none of them are changed
+	 */
+	public int quantize(long[] starts, long[] ends, int from, int to, int[] sourceOut) {
+		boolean sorted = true;
+		
+		// check everything first so that a bad range can't leave a batch half done
+		for (int i = from; i < to; i++) {
+			if (starts[i] < 0) {
+				throw new IllegalArgumentException("start must be >= 0");
+			}
+			
+			if (ends[i] <= starts[i]) {
+				throw new IllegalArgumentException("length must be > 0");
+			}
+			
+			// the same order as TickRange.COMPARATOR
+			if (i > from && (starts[i - 1] > starts[i]
+					|| (starts[i - 1] == starts[i] && ends[i - 1] > ends[i]))) {
+				sorted = false;
+			}
+		}
+		
+		int out = from;
+		
+		for (int i = from; i < to; i++) {
+			long start = quantize(starts[i]);
+			long end = quantizeEnds
+				? quantize(ends[i])
+				: start + (ends[i] - starts[i]);
+			
+			if (end <= start) {
+				switch (policy) {
+					case DROP:
+						continue;
+					
+					case KEEP_LENGTH:
+						end = start + (ends[i] - starts[i]);
+						break;
+					
+					case EXTEND_TO_GRID:
+						end = nextGridPoint(start);
+						break;
+				}
+			}
+			
+			if (null != sourceOut) {
+				sourceOut[out] = i;
+			}
+			
+			starts[out] = start;
+			ends[out++] = end;
+		}
+		
+		// quantizing never moves a later start before an earlier one, so
+		// only ranges that now share a start can be out of order
+		if (sorted) {
+			sortRuns(starts, ends, sourceOut, from, out);
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * Sorts each run of ranges with the same start tick by end tick,
+	 * moving the source indices along with them if there are any. The
+	 * runs are normally short, so an insertion sort is used, which also
+	 * keeps ranges with equal ends in their original order.
+	 */
+	private static void sortRuns(long[] starts, long[] ends, int[] sources, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			long start = starts[i];
+			long end = ends[i];
+			int source = (null == sources) ? 0 : sources[i];
+			int j = i - 1;
+			
+			while (j >= from && starts[j] == start && ends[j] > end) {
+				ends[j + 1] = ends[j];
+				
+				if (null != sources) {
+					sources[j + 1] = sources[j];
+				}
+				
+				j--;
+			}
+			
+			ends[j + 1] = end;
+			
+			if (null != sources) {
+				sources[j + 1] = source;
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class QuantizerTest {
+	/**
+	 * Helper that creates a list from pairs of start and end ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The list of ranges
+	 */
+	private static PackedTickRangeList list(long... ticks) {
+		PackedTickRangeList ret = new PackedTickRangeList();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.add(ticks[i], ticks[i + 1]);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that quantizes a list and checks the result.
+	 * 
+	 * @param q The quantizer to use
+	 * @param list The list to quantize
+	 * @param expected The list expected afterwards
+	 */
+	private static void quantize(
+			Quantizer q, PackedTickRangeList list, PackedTickRangeList expected) {
+		int size = list.size();
+		assertEquals(size - expected.size(), q.quantize(list));
+		assertEquals(expected.toString(), list.toString());
+	}
+	
+	@Test public void nearestGridPoint() {
+		Quantizer q = new Quantizer(120);
+		assertEquals(0, q.nearestGridPoint(0));
+		assertEquals(0, q.nearestGridPoint(59));
+		assertEquals(0, q.nearestGridPoint(60));
+		assertEquals(120, q.nearestGridPoint(61));
+		assertEquals(240, q.nearestGridPoint(239));
+		assertEquals(240, q.nearestGridPoint(241));
+	}
+	
+	@Test public void swing() {
+		Quantizer q = new Quantizer(
+			120, 1.0, 0.5, true, Quantizer.EmptyRangePolicy.DROP);
+		assertEquals(180, q.gridPoint(1));
+		assertEquals(240, q.gridPoint(2));
+		assertEquals(0, q.nearestGridPoint(90));
+		assertEquals(180, q.nearestGridPoint(91));
+		assertEquals(180, q.nearestGridPoint(210));
+		assertEquals(240, q.nearestGridPoint(211));
+		assertEquals(180, q.nextGridPoint(120));
+		assertEquals(240, q.nextGridPoint(180));
+	}
+	
+	@Test public void strength() {
+		Quantizer q = new Quantizer(
+			120, 0.5, 0.0, true, Quantizer.EmptyRangePolicy.DROP);
+		assertEquals(110, q.quantize(100));
+		assertEquals(130, q.quantize(140));
+		assertEquals(120, q.quantize(120));
+	}
+	
+	@Test public void keepsLength() {
+		Quantizer q = new Quantizer(
+			120, 1.0, 0.0, false, Quantizer.EmptyRangePolicy.DROP);
+		quantize(q, list(10, 15, 110, 300), list(0, 5, 120, 310));
+	}
+	
+	@Test public void dropEmpty() {
+		Quantizer q = new Quantizer(
+			120, 1.0, 0.0, true, Quantizer.EmptyRangePolicy.DROP);
+		quantize(
+			q,
+			list(10, 15, 100, 130, 100, 190, 230, 500),
+			list(120, 240, 240, 480));
+	}
+	
+	@Test public void keepLengthOfEmpty() {
+		Quantizer q = new Quantizer(
+			120, 1.0, 0.0, true, Quantizer.EmptyRangePolicy.KEEP_LENGTH);
+		quantize(q, list(10, 15, 100, 130), list(0, 5, 120, 150));
+	}
+	
+	@Test public void extendEmpty() {
+		quantize(
+			new Quantizer(120),
+			list(10, 15, 100, 130),
+			list(0, 120, 120, 240));
+	}
+	
+	@Test public void repairsOrder() {
+		// both start on 0 once quantized, in the wrong order by end
+		quantize(
+			new Quantizer(120),
+			list(10, 400, 20, 200, 30, 250),
+			list(0, 240, 0, 240, 0, 360));
+	}
+	
+	@Test public void unsortedKeepsOrder() {
+		// the first two both start on 0 once quantized, but the input is
+		// not sorted so they must not swap, and the empty third is dropped
+		Quantizer q = new Quantizer(
+			120, 1.0, 0.0, true, Quantizer.EmptyRangePolicy.DROP);
+		long[] starts = {500, 10, 20, 100, 230};
+		long[] ends   = {700, 400, 200, 130, 470};
+		int[] sources = new int[starts.length];
+		
+		assertEquals(4, q.quantize(starts, ends, 0, 5, sources));
+		assertArrayEquals(new long[] {480, 0, 0, 240}, Arrays.copyOf(starts, 4));
+		assertArrayEquals(new long[] {720, 360, 240, 480}, Arrays.copyOf(ends, 4));
+		assertArrayEquals(new int[] {0, 1, 2, 4}, Arrays.copyOf(sources, 4));
+	}
+	
+	@Test public void sortedSourcesFollowRuns() {
+		Quantizer q = new Quantizer(
+			120, 1.0, 0.0, true, Quantizer.EmptyRangePolicy.DROP);
+		long[] starts = {10, 20, 100, 130, 230};
+		long[] ends   = {400, 200, 130, 250, 470};
+		int[] sources = new int[starts.length];
+		
+		assertEquals(4, q.quantize(starts, ends, 0, 5, sources));
+		assertArrayEquals(new long[] {0, 0, 120, 240}, Arrays.copyOf(starts, 4));
+		assertArrayEquals(new long[] {240, 360, 240, 480}, Arrays.copyOf(ends, 4));
+		assertArrayEquals(new int[] {1, 0, 3, 4}, Arrays.copyOf(sources, 4));
+	}
+	
+	@Test public void staysSorted() {
+		Random random = new Random(1);
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < 10000; i++) {
+			ranges.add(new TickRange(random.nextInt(100000), 1 + random.nextInt(500)));
+		}
+		
+		Collections.sort(ranges);
+		
+		for (Quantizer.EmptyRangePolicy policy : Quantizer.EmptyRangePolicy.values()) {
+			for (double swing : new double[] {0.0, 0.33, 0.66}) {
+				Quantizer q = new Quantizer(120, 0.75, swing, true, policy);
+				PackedTickRangeList list = new PackedTickRangeList(ranges);
+				int dropped = q.quantize(list);
+				assertTrue(list.isSorted());
+				
+				if (Quantizer.EmptyRangePolicy.DROP != policy) {
+					assertEquals(0, dropped);
+				}
+				
+				for (int i = 0; i < list.size(); i++) {
+					assertTrue(list.getTick(i) < list.getEndTick(i));
+				}
+			}
+		}
+	}
+	
+	@Test public void badRangeChangesNothing() {
+		long[] starts = {10, 20, 30};
+		long[] ends = {15, 20, 35};
+		
+		try {
+			new Quantizer(120).quantize(starts, ends, 0, 3);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertArrayEquals(new long[] {10, 20, 30}, starts);
+			assertArrayEquals(new long[] {15, 20, 35}, ends);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void badSwing() {
+		new Quantizer(120, 1.0, 1.0, true, Quantizer.EmptyRangePolicy.DROP);
+	}
+}
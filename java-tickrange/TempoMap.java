@@ -0,0 +1,371 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+
+/**
+ * A map of tempo changes in a MIDI-style sequence, used to convert ticks
+ * into microseconds from the start of the sequence.
+ * <p>
+ * The tempo changes are stored in tick order along with a table of the
+ * time at which each one takes effect, so converting a tick only takes a
+ * binary search to find the tempo in effect and a multiplication. Times
+ * are kept in microseconds scaled by the resolution, which is exact, and
+ * only divided down when they are returned, so converted times are
+ * rounded down to the microsecond but errors never build up.
+ * <p>
+ * Changing the tempo at a tick only affects the times of the tempo
+ * changes after it. Those entries of the table are marked as invalid
+ * and are recomputed the next time a conversion needs them, so a burst
+ * of edits near the end of a long tempo map is cheap.
+ * <p>
+ * Like the tempo in a Standard MIDI File, the tempo is 500,000
+ * microseconds per quarter note (120 BPM) until it is first changed.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TempoMap {
+	
+	/**
+	 * The tempo used before any tempo change, in microseconds per quarter
+	 * note
+	 */
+	public static final int DEFAULT_TEMPO = 500000;
+	
+	/**
+	 * The number of ticks per quarter note
+	 */
+	private final int resolution;
+	
+	/**
+	 * The ticks at which the tempo changes, in ascending order. The first
+	 * is always zero.
+	 */
+	private long[] ticks;
+	
+	/**
+	 * The tempo from each tick until the next change, in microseconds
+	 * per quarter note
+	 */
+	private int[] tempos;
+	
+	/**
+	 * The time at which each tempo change takes effect, in microseconds
+	 * multiplied by the resolution
+	 */
+	private long[] scaledMicros;
+	
+	/**
+	 * The number of tempo changes
+	 */
+	private int size;
+	
+	/**
+	 * The number of entries at the start of {@link #scaledMicros} that
+	 * are up to date
+	 */
+	private int valid;
+	
+	/**
+	 * Creates a tempo map at the default tempo.
+	 * 
+	 * @param resolution The number of ticks per quarter note
+	 */
+	public TempoMap(int resolution) {
+		if (resolution <= 0) {
+			throw new IllegalArgumentException("resolution must be > 0");
+		}
+		
+		this.resolution   = resolution;
+		this.ticks        = new long[8];
+		this.tempos       = new int[8];
+		this.scaledMicros = new long[8];
+		this.tempos[0]    = DEFAULT_TEMPO;
+		this.size         = 1;
+		this.valid        = 1;
+	}
+	
+	/**
+	 * 
+	 * @return The number of ticks per quarter note
+	 */
+	public int getResolution() {
+		return resolution;
+	}
+	
+	/**
+	 * 
+	 * @return The number of tempo changes, including the initial tempo
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Sets the tempo from a tick until the next tempo change, replacing
+	 * any change already at that tick.
+	 * 
+	 * @param tick The tick the tempo takes effect at
+	 * @param microsPerQuarter The tempo in microseconds per quarter note
+	 */
+	public void setTempo(long tick, int microsPerQuarter) {
+		if (tick < 0) {
+			throw new IllegalArgumentException("tick must be >= 0");
+		}
+		
+		if (microsPerQuarter <= 0) {
+			throw new IllegalArgumentException("microsPerQuarter must be > 0");
+		}
+		
+		int i = Arrays.binarySearch(ticks, 0, size, tick);
+		
+		if (i >= 0) {
+			tempos[i] = microsPerQuarter;
+			
+			// only the changes after this one take effect at a new time
+			valid = Math.min(valid, i + 1);
+			return;
+		}
+		
+		i = -(i + 1);
+		
+		if (size == ticks.length) {
+			int capacity = 2 * size;
+			ticks        = Arrays.copyOf(ticks, capacity);
+			tempos       = Arrays.copyOf(tempos, capacity);
+			scaledMicros = Arrays.copyOf(scaledMicros, capacity);
+		}
+		
+		System.arraycopy(ticks, i, ticks, i + 1, size - i);
+		System.arraycopy(tempos, i, tempos, i + 1, size - i);
+		System.arraycopy(scaledMicros, i, scaledMicros, i + 1, size - i);
+		ticks[i]  = tick;
+		tempos[i] = microsPerQuarter;
+		size++;
+		valid = Math.min(valid, i);
+	}
+	
+	/**
+	 * Removes the tempo change at a tick, so the tempo before it
+	 * continues until the next change. Removing the change at tick zero
+	 * restores the {@link #DEFAULT_TEMPO}.
+	 * 
+	 * @param tick The tick of the tempo change
+	 * @return Whether there was a tempo change at the tick
+	 */
+	public boolean removeTempo(long tick) {
+		int i = Arrays.binarySearch(ticks, 0, size, tick);
+		
+		if (i < 0) {
+			return false;
+		}
+		
+		if (0 == i) {
+			setTempo(0, DEFAULT_TEMPO);
+			return true;
+		}
+		
+		System.arraycopy(ticks, i + 1, ticks, i, size - i - 1);
+		System.arraycopy(tempos, i + 1, tempos, i, size - i - 1);
+		System.arraycopy(scaledMicros, i + 1, scaledMicros, i, size - i - 1);
+		size--;
+		valid = Math.min(valid, i);
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @param tick The tick to look up
+	 * @return The tempo in effect at the tick, in microseconds per
+	 * 		quarter note
+	 */
+	public int getTempo(long tick) {
+		return tempos[indexOf(tick)];
+	}
+	
+	/**
+	 * 
+	 * @param tick The tick to look up, which must not be negative
+	 * @return The index of the tempo change in effect at the tick
+	 */
+	private int indexOf(long tick) {
+		if (tick < 0) {
+			throw new IllegalArgumentException("tick must be >= 0");
+		}
+		
+		int i = Arrays.binarySearch(ticks, 0, size, tick);
+		return (i < 0) ? -(i + 1) - 1 : i;
+	}
+	
+	/**
+	 * Brings the table of times up to date through the supplied index.
+	 * 
+	 * @param index The index of the tempo change that is needed
+	 */
+	private void validate(int index) {
+		for (; valid <= index; valid++) {
+			int prev = valid - 1;
+			scaledMicros[valid] = Math.addExact(
+				scaledMicros[prev],
+				Math.multiplyExact(ticks[valid] - ticks[prev], (long) tempos[prev]));
+		}
+	}
+	
+	/**
+	 * Converts a tick using the tempo change at the supplied index, which
+	 * must be the one in effect at the tick and must be valid.
+	 * 
+	 * @return The time of the tick in microseconds
+	 */
+	private long toMicros(int index, long tick) {
+		long scaled = Math.addExact(
+			scaledMicros[index],
+			Math.multiplyExact(tick - ticks[index], (long) tempos[index]));
+		return scaled / resolution;
+	}
+	
+	/**
+	 * Converts a tick into a time.
+	 * 
+	 * @param tick The tick to convert
+	 * @return The time of the tick in microseconds from the start of the
+	 * 		sequence, rounded down
+	 * @throws ArithmeticException If the time is too large for a long
+	 */
+	public long toMicros(long tick) {
+		int i = indexOf(tick);
+		validate(i);
+		return toMicros(i, tick);
+	}
+	
+	/**
+	 * Converts a range of ticks into the times it starts and ends.
+	 * 
+	 * @param r The range to convert
+	 * @param out The buffer to write the start and end times to
+	 * @param offset The index in the buffer to write the start time at,
+	 * 		with the end time written after it
+	 * @throws ArithmeticException If a time is too large for a long
+	 */
+	public void toMicros(TickRangeProvider r, long[] out, int offset) {
+		int i = indexOf(r.getTick());
+		int j = indexOf(r.getEndTick());
+		validate(j);
+		out[offset]     = toMicros(i, r.getTick());
+		out[offset + 1] = toMicros(j, r.getEndTick());
+	}
+	
+	/**
+	 * Converts ranges that are sorted by start tick into the times they
+	 * start and end. Instead of searching for every tick, the tempo map
+	 * is walked forward from one range to the next, so converting a whole
+	 * sequence takes time proportional to the number of ranges plus the
+	 * number of tempo changes they cross.
+	 * 
+	 * @param sorted The ranges to convert, in ascending order of start
+	 * 		tick
+	 * @param out The buffer to write pairs of start and end times to, in
+	 * 		the same order as the ranges
+	 * @param offset The index in the buffer to write the first start time
+	 * 		at
+	 * @return The number of ranges converted
+	 * @throws IllegalArgumentException If the ranges are not sorted by
+	 * 		start tick
+	 * @throws ArithmeticException If a time is too large for a long
+	 */
+	public int toMicrosSorted(
+			Iterable<? extends TickRangeProvider> sorted, long[] out, int offset) {
+		validate(size - 1);
+		int i = 0;
+		int count = 0;
+		long last = 0;
+		
+		for (TickRangeProvider r : sorted) {
+			long start = r.getTick();
+			long end = r.getEndTick();
+			
+			if (start < last) {
+				throw new IllegalArgumentException("ranges must be sorted by start tick");
+			}
+			
+			i = advance(i, start);
+			out[offset++] = toMicros(i, start);
+			out[offset++] = toMicros(advance(i, end), end);
+			last = start;
+			count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Converts ranges that are sorted by start tick into the times they
+	 * start and end, the same as
+	 * {@link #toMicrosSorted(Iterable, long[], int)}.
+	 * 
+	 * @param sorted The ranges to convert, in ascending order of start
+	 * 		tick
+	 * @param out The buffer to write pairs of start and end times to, in
+	 * 		the same order as the ranges
+	 * @param offset The index in the buffer to write the first start time
+	 * 		at
+	 * @return The number of ranges converted
+	 * @throws IllegalArgumentException If the ranges are not sorted by
+	 * 		start tick
+	 * @throws ArithmeticException If a time is too large for a long
+	 */
+	public int toMicrosSorted(PackedTickRangeList sorted, long[] out, int offset) {
+		validate(size - 1);
+		int i = 0;
+		long last = 0;
+		
+		for (int k = 0; k < sorted.size(); k++) {
+			long start = sorted.getTick(k);
+			long end = sorted.getEndTick(k);
+			
+			if (start < last) {
+				throw new IllegalArgumentException("ranges must be sorted by start tick");
+			}
+			
+			i = advance(i, start);
+			out[offset++] = toMicros(i, start);
+			out[offset++] = toMicros(advance(i, end), end);
+			last = start;
+		}
+		
+		return sorted.size();
+	}
+	
+	/**
+	 * Walks forward from a tempo change to the one in effect at a tick.
+	 * 
+	 * @param i The index to start from, which must be in effect at or
+	 * 		before the tick
+	 * @param tick The tick to find
+	 * @return The index of the tempo change in effect at the tick
+	 */
+	private int advance(int i, long tick) {
+		while (i + 1 < size && ticks[i + 1] <= tick) {
+			i++;
+		}
+		
+		return i;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			
+			sb.append(ticks[i]).append('=').append(tempos[i]);
+		}
+		
+		return sb.append('}').toString();
+	}
+}
@@ -0,0 +1,165 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TempoMapTest {
+	/**
+	 * Helper that converts a tick into microseconds by walking every
+	 * tempo change before it.
+	 * 
+	 * @param tempos The tempo changes by tick, which must include tick 0
+	 * @param resolution The number of ticks per quarter note
+	 * @param tick The tick to convert
+	 * @return The time of the tick in microseconds, rounded down
+	 */
+	private static long linear(
+			TreeMap<Long, Integer> tempos, int resolution, long tick) {
+		long scaled = 0;
+		long prevTick = 0;
+		int prevTempo = tempos.get(0L);
+		
+		for (long changeTick : tempos.keySet()) {
+			if (tick < changeTick) {
+				break;
+			}
+			
+			scaled += (changeTick - prevTick) * prevTempo;
+			prevTick = changeTick;
+			prevTempo = tempos.get(changeTick);
+		}
+		
+		scaled += (tick - prevTick) * prevTempo;
+		return scaled / resolution;
+	}
+	
+	@Test public void defaultTempo() {
+		TempoMap map = new TempoMap(480);
+		assertEquals(0, map.toMicros(0));
+		assertEquals(500000, map.toMicros(480));
+		assertEquals(1041, map.toMicros(1));
+		assertEquals(TempoMap.DEFAULT_TEMPO, map.getTempo(1000000));
+		assertEquals(1, map.size());
+	}
+	
+	@Test public void tempoChange() {
+		TempoMap map = new TempoMap(96);
+		map.setTempo(192, 250000);
+		assertEquals(1000000, map.toMicros(192));
+		assertEquals(1250000, map.toMicros(288));
+		assertEquals(500000, map.getTempo(191));
+		assertEquals(250000, map.getTempo(192));
+		
+		long[] out = new long[3];
+		map.toMicros(new TickRange(96, 288, true), out, 1);
+		assertEquals(500000, out[1]);
+		assertEquals(1250000, out[2]);
+	}
+	
+	@Test public void removeTempo() {
+		TempoMap map = new TempoMap(96);
+		map.setTempo(0, 1000000);
+		map.setTempo(96, 250000);
+		assertEquals(1250000, map.toMicros(192));
+		assertTrue(map.removeTempo(96));
+		assertFalse(map.removeTempo(96));
+		assertEquals(2000000, map.toMicros(192));
+		assertTrue(map.removeTempo(0));
+		assertEquals(1000000, map.toMicros(192));
+		assertEquals(1, map.size());
+	}
+	
+	@Test public void editsMatchLinear() {
+		Random random = new Random(1);
+		TreeMap<Long, Integer> tempos = new TreeMap<Long, Integer>();
+		TempoMap map = new TempoMap(480);
+		tempos.put(0L, TempoMap.DEFAULT_TEMPO);
+		
+		for (int i = 0; i < 2000; i++) {
+			long tick = random.nextInt(100) * 120L;
+			
+			if (0 == random.nextInt(4)) {
+				assertEquals(tempos.containsKey(tick), map.removeTempo(tick));
+				
+				if (0 == tick) {
+					tempos.put(0L, TempoMap.DEFAULT_TEMPO);
+				} else {
+					tempos.remove(tick);
+				}
+			} else {
+				int tempo = 200000 + random.nextInt(800000);
+				map.setTempo(tick, tempo);
+				tempos.put(tick, tempo);
+			}
+			
+			assertEquals(tempos.size(), map.size());
+			
+			for (int j = 0; j < 5; j++) {
+				long query = random.nextInt(13000);
+				assertEquals(linear(tempos, 480, query), map.toMicros(query));
+			}
+		}
+	}
+	
+	@Test public void sortedMatchesSingle() {
+		Random random = new Random(2);
+		TempoMap map = new TempoMap(480);
+		
+		for (int i = 0; i < 50; i++) {
+			map.setTempo(random.nextInt(100000), 200000 + random.nextInt(800000));
+		}
+		
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < 1000; i++) {
+			ranges.add(new TickRange(random.nextInt(100000), 1 + random.nextInt(5000)));
+		}
+		
+		Collections.sort(ranges);
+		long[] expected = new long[2 * ranges.size()];
+		
+		for (int i = 0; i < ranges.size(); i++) {
+			map.toMicros(ranges.get(i), expected, 2 * i);
+		}
+		
+		long[] out = new long[expected.length + 1];
+		assertEquals(ranges.size(), map.toMicrosSorted(ranges, out, 1));
+		assertArrayEquals(expected, Arrays.copyOfRange(out, 1, out.length));
+		
+		out = new long[expected.length];
+		assertEquals(
+			ranges.size(),
+			map.toMicrosSorted(new PackedTickRangeList(ranges), out, 0));
+		assertArrayEquals(expected, out);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void sortedRejectsUnsorted() {
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		ranges.add(new TickRange(100, 10));
+		ranges.add(new TickRange(50, 10));
+		new TempoMap(480).toMicrosSorted(ranges, new long[4], 0);
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void overflow() {
+		new TempoMap(1).toMicros(Long.MAX_VALUE / 1000);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void badResolution() {
+		new TempoMap(0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void badTempo() {
+		new TempoMap(480).setTempo(0, 0);
+	}
+}
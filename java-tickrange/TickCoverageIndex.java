@@ -0,0 +1,313 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * An index of how many ranges cover each tick, for questions like how
+ * many notes are sounding at a tick or the most that sound at once in a
+ * window, without checking every range.
+ * <p>
+ * The index holds the sorted ticks where the coverage changes and the
+ * running count of covering ranges from each of those ticks to the next,
+ * which is the prefix sum of +1 for every start and -1 for every end.
+ * The coverage of a single tick is found with a binary search in
+ * O(log n) time. The counts are also held in the leaves of a max
+ * segment tree so that the highest coverage anywhere in a window can
+ * be found in O(log n) time as well.
+ * <p>
+ * Ranges can be appended after the index is created. Only the
+ * boundaries at or after the earliest appended start tick are rebuilt,
+ * so appending ranges in tick order, such as while recording, only
+ * costs time proportional to the ranges still sounding.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickCoverageIndex {
+	
+	/**
+	 * The ticks where the coverage changes, in ascending order
+	 */
+	private long[] boundaries;
+	
+	/**
+	 * The number of ranges covering each boundary up to the next one
+	 */
+	private int[] counts;
+	
+	/**
+	 * The number of boundaries in use
+	 */
+	private int size;
+	
+	/**
+	 * A max segment tree over the counts, with the root at index 1 and
+	 * the leaf for count i at index <code>boundaries.length + i</code>
+	 */
+	private int[] tree;
+	
+	/**
+	 * Creates an empty index.
+	 */
+	public TickCoverageIndex() {
+		this(Collections.<TickRangeProvider>emptyList());
+	}
+	
+	/**
+	 * Creates an index of the supplied ranges.
+	 * 
+	 * @param ranges The ranges to index, in any order
+	 */
+	public TickCoverageIndex(Iterable<? extends TickRangeProvider> ranges) {
+		boundaries = new long[16];
+		counts     = new int[16];
+		tree       = new int[32];
+		append(ranges);
+	}
+	
+	/**
+	 * Adds a range to the index.
+	 * 
+	 * @param r The range to add
+	 * @see #append(Iterable)
+	 */
+	public void append(TickRangeProvider r) {
+		append(Collections.singletonList(r));
+	}
+	
+	/**
+	 * Adds ranges to the index. The ranges may be in any order, but only
+	 * the boundaries at or after the earliest of their start ticks are
+	 * rebuilt, so this is cheapest when ranges are appended in tick order.
+	 * 
+	 * @param ranges The ranges to add
+	 */
+	public void append(Iterable<? extends TickRangeProvider> ranges) {
+		// validates the ranges the same way TickRange does
+		PackedTickRangeList list = new PackedTickRangeList(ranges);
+		int n = list.size();
+		
+		if (0 == n) {
+			return;
+		}
+		
+		long[] starts = Arrays.copyOf(list.startArray(), n);
+		long[] ends   = Arrays.copyOf(list.endArray(), n);
+		Arrays.sort(starts);
+		Arrays.sort(ends);
+		rebuild(lowerBound(starts[0]), starts, ends);
+	}
+	
+	/**
+	 * Merges new start and end ticks into the boundaries from index k on,
+	 * recomputing the counts of that suffix and updating the tree.
+	 * 
+	 * @param k The first boundary that may change
+	 * @param starts The sorted start ticks of the new ranges, none of
+	 * 		which may be before boundary k
+	 * @param ends The sorted end ticks of the new ranges
+	 */
+	private void rebuild(int k, long[] starts, long[] ends) {
+		int n = starts.length;
+		long[] newBoundaries = new long[size - k + 2 * n];
+		int[] newCounts = new int[newBoundaries.length];
+		int running = (k > 0) ? counts[k - 1] : 0;
+		int m = 0;
+		int a = k;
+		int s = 0;
+		int e = 0;
+		
+		while (a < size || e < n) {
+			long tick = Long.MAX_VALUE;
+			
+			if (a < size) {
+				tick = boundaries[a];
+			}
+			
+			if (s < n) {
+				tick = Math.min(tick, starts[s]);
+			}
+			
+			if (e < n) {
+				tick = Math.min(tick, ends[e]);
+			}
+			
+			int delta = 0;
+			
+			if (a < size && boundaries[a] == tick) {
+				delta += counts[a] - ((a > 0) ? counts[a - 1] : 0);
+				a++;
+			}
+			
+			for (; s < n && starts[s] == tick; s++) {
+				delta++;
+			}
+			
+			for (; e < n && ends[e] == tick; e++) {
+				delta--;
+			}
+			
+			// ticks where ranges end and start in equal numbers change nothing
+			if (0 != delta) {
+				running += delta;
+				newBoundaries[m] = tick;
+				newCounts[m++] = running;
+			}
+		}
+		
+		assert 0 == running;
+		
+		int oldSize = size;
+		int changed = k;
+		size = k + m;
+		
+		if (boundaries.length < size) {
+			// the tree has to be rebuilt from scratch for the new leaves
+			int capacity = Integer.highestOneBit(size - 1) << 1;
+			boundaries = Arrays.copyOf(boundaries, capacity);
+			counts     = Arrays.copyOf(counts, capacity);
+			tree       = new int[2 * capacity];
+			changed    = 0;
+		}
+		
+		System.arraycopy(newBoundaries, 0, boundaries, k, m);
+		System.arraycopy(newCounts, 0, counts, k, m);
+		updateTree(changed, Math.max(oldSize, size));
+	}
+	
+	/**
+	 * Copies the counts from [from, to) into the leaves of the tree and
+	 * recomputes their ancestors. Counts at or past the size are treated
+	 * as zero.
+	 */
+	private void updateTree(int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		
+		int leaves = boundaries.length;
+		
+		for (int i = from; i < to; i++) {
+			tree[leaves + i] = (i < size) ? counts[i] : 0;
+		}
+		
+		int lo = (leaves + from) >>> 1;
+		int hi = (leaves + to - 1) >>> 1;
+		
+		while (lo >= 1) {
+			for (int p = lo; p <= hi; p++) {
+				tree[p] = Math.max(tree[2 * p], tree[2 * p + 1]);
+			}
+			
+			lo >>>= 1;
+			hi >>>= 1;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param tick The tick to find
+	 * @return The index of the first boundary at or after the tick
+	 */
+	private int lowerBound(long tick) {
+		int i = Arrays.binarySearch(boundaries, 0, size, tick);
+		return (i < 0) ? -(i + 1) : i;
+	}
+	
+	/**
+	 * 
+	 * @param tick The tick to find
+	 * @return The index of the last boundary at or before the tick or -1
+	 * 		if there is none
+	 */
+	private int floorIndex(long tick) {
+		int i = Arrays.binarySearch(boundaries, 0, size, tick);
+		return (i < 0) ? -(i + 1) - 1 : i;
+	}
+	
+	/**
+	 * Counts the ranges that contain a tick, the same as counting the
+	 * ranges for which {@link TickRange#contains(TickRangeProvider)} is
+	 * true for a range of length one at the tick.
+	 * 
+	 * @param tick The tick to check
+	 * @return The number of ranges that start at or before the tick and
+	 * 		end after it
+	 */
+	public int coverage(long tick) {
+		int i = floorIndex(tick);
+		return (i < 0) ? 0 : counts[i];
+	}
+	
+	/**
+	 * Finds the highest number of ranges that contain any single tick in
+	 * [start, end).
+	 * 
+	 * @param start The first tick of the window
+	 * @param end One past the last tick of the window
+	 * @return The highest coverage in the window, or 0 if the window is
+	 * 		empty
+	 */
+	public int maxCoverage(long start, long end) {
+		if (end <= start) {
+			return 0;
+		}
+		
+		// the coverage before the first boundary is zero
+		int from = Math.max(0, floorIndex(start));
+		int to = lowerBound(end);
+		
+		if (from >= to) {
+			return 0;
+		}
+		
+		int leaves = boundaries.length;
+		int lo = leaves + from;
+		int hi = leaves + to;
+		int ret = 0;
+		
+		while (lo < hi) {
+			if (0 != (lo & 1)) {
+				ret = Math.max(ret, tree[lo++]);
+			}
+			
+			if (0 != (hi & 1)) {
+				ret = Math.max(ret, tree[--hi]);
+			}
+			
+			lo >>>= 1;
+			hi >>>= 1;
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Finds the highest number of ranges that contain any single tick in
+	 * the supplied range.
+	 * 
+	 * @param r The window to check
+	 * @return The highest coverage in the window
+	 * @see #maxCoverage(long, long)
+	 */
+	public int maxCoverage(TickRangeProvider r) {
+		return maxCoverage(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * 
+	 * @return The highest number of ranges that contain any single tick
+	 */
+	public int maxCoverage() {
+		return tree[1];
+	}
+	
+	/**
+	 * 
+	 * @return The number of ticks where the coverage changes
+	 */
+	public int boundaryCount() {
+		return size;
+	}
+}
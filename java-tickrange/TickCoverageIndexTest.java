@@ -0,0 +1,166 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickCoverageIndexTest {
+	/**
+	 * Helper that creates a list of ranges from pairs of start and end
+	 * ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> ranges(long... ticks) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.add(new TickRange(ticks[i], ticks[i + 1], true));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that creates a list of random ranges.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to create
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> randomRanges(long seed, int count) {
+		Random random = new Random(seed);
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			ret.add(new TickRange(random.nextInt(1000), 1 + random.nextInt(50)));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that checks an index against the coverage of every tick
+	 * counted by scanning the ranges with {@link TickRange#contains}.
+	 * 
+	 * @param ranges The ranges in the index
+	 * @param index The index to check
+	 * @param seed The seed for the random windows to check
+	 */
+	private static void check(
+			List<TickRange> ranges, TickCoverageIndex index, long seed) {
+		int[] expected = new int[1100];
+		
+		for (int tick = 0; tick < expected.length; tick++) {
+			for (TickRange r : ranges) {
+				if (r.contains(new TickRange(tick, 1))) {
+					expected[tick]++;
+				}
+			}
+			
+			assertEquals(expected[tick], index.coverage(tick));
+		}
+		
+		Random random = new Random(seed);
+		int max = 0;
+		
+		for (int count : expected) {
+			max = Math.max(max, count);
+		}
+		
+		assertEquals(max, index.maxCoverage());
+		
+		for (int i = 0; i < 500; i++) {
+			int start = random.nextInt(expected.length - 1);
+			int end = start + 1 + random.nextInt(
+				Math.min(200, expected.length - start - 1));
+			max = 0;
+			
+			for (int tick = start; tick < end; tick++) {
+				max = Math.max(max, expected[tick]);
+			}
+			
+			assertEquals(max, index.maxCoverage(start, end));
+		}
+	}
+	
+	@Test public void empty() {
+		TickCoverageIndex index = new TickCoverageIndex();
+		assertEquals(0, index.coverage(0));
+		assertEquals(0, index.maxCoverage());
+		assertEquals(0, index.maxCoverage(0, Long.MAX_VALUE));
+		assertEquals(0, index.boundaryCount());
+	}
+	
+	@Test public void halfOpen() {
+		TickCoverageIndex index = new TickCoverageIndex(ranges(100, 200, 150, 250));
+		assertEquals(0, index.coverage(99));
+		assertEquals(1, index.coverage(100));
+		assertEquals(2, index.coverage(199));
+		assertEquals(1, index.coverage(200));
+		assertEquals(0, index.coverage(250));
+		assertEquals(1, index.maxCoverage(0, 150));
+		assertEquals(2, index.maxCoverage(0, 151));
+		assertEquals(0, index.maxCoverage(250, 300));
+		assertEquals(0, index.maxCoverage(150, 150));
+	}
+	
+	@Test public void touchingRangesShareBoundary() {
+		TickCoverageIndex index = new TickCoverageIndex(ranges(100, 200, 200, 300));
+		assertEquals(2, index.boundaryCount());
+		assertEquals(1, index.maxCoverage());
+	}
+	
+	@Test public void matchesScan() {
+		List<TickRange> ranges = randomRanges(1, 500);
+		check(ranges, new TickCoverageIndex(ranges), 2);
+	}
+	
+	@Test public void appendInTickOrder() {
+		List<TickRange> ranges = randomRanges(3, 500);
+		Collections.sort(ranges);
+		TickCoverageIndex index = new TickCoverageIndex();
+		
+		for (int i = 0; i < ranges.size(); i++) {
+			index.append(ranges.get(i));
+			
+			if (0 == i % 100) {
+				check(ranges.subList(0, i + 1), index, i);
+			}
+		}
+		
+		check(ranges, index, 4);
+	}
+	
+	@Test public void appendOutOfOrder() {
+		List<TickRange> ranges = randomRanges(5, 500);
+		TickCoverageIndex index = new TickCoverageIndex(ranges.subList(0, 250));
+		index.append(ranges.subList(250, 500));
+		check(ranges, index, 6);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void appendNegativeStart() {
+		new TickCoverageIndex().append(new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return -1;
+			}
+			
+			@Override
+			public long getEndTick() {
+				return 5;
+			}
+			
+			@Override
+			public long getTickLength() {
+				return 6;
+			}
+		});
+	}
+}
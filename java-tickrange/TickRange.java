@@ -1,6 +1,6 @@
 package net.tmullin.ipather;
 
-import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * An immutable class representing a tick range within a
@@ -25,26 +25,116 @@ public final class TickRange implements
 	 *		if it happens to be a TickRange already
 	 */
 	public static final TickRange fromProvider(TickRangeProvider trp) {
-		return (trp instanceof TickRange)
+		boolean reuse = trp instanceof TickRange;
+		
+		if (METRICS_ENABLED) {
+			METRICS.fromProvider(!reuse);
+		}
+		
+		return reuse
 		? (TickRange) trp
 		: new TickRange(trp.getTick(), trp.getTickLength());
 	}
 	
 	/**
-	 * Creates a copy of the source array with an additional value
-	 * appended to the end.
+	 * Static method to get a TickRange with the specified start and end
+	 * ticks. If the system property named by
+	 * {@link TickRangeInterner#PROPERTY} was set, the range is shared
+	 * through {@link TickRangeInterner#shared()}, so equal calls may
+	 * return the same object. Otherwise a new TickRange is created.
 	 * 
-	 * @param in The source array
-	 * @param val The value to append
-	 * @return A copy of the source array with the additional value
-	 * 		added to it
+	 * @param start The starting tick
+	 * @param end The ending tick
+	 * @return A TickRange equal to [start, end)
 	 */
-	private static <T> T[] arrayPush(T[] in, T val) {
-		T[] ret = Arrays.copyOf(in, in.length + 1);
-		ret[ret.length - 1] = val;
-		return ret;
+	public static TickRange of(long start, long end) {
+		TickRangeInterner interner = TickRangeInterner.SHARED;
+		
+		return (null == interner)
+		? new TickRange(start, end, true)
+		: interner.intern(start, end);
+	}
+	
+	/**
+	 * The sink selected by {@link TickRangeMetrics#PROPERTY}, or null if
+	 * metrics are off
+	 */
+	static final TickRangeMetrics METRICS =
+		loadMetrics(System.getProperty(TickRangeMetrics.PROPERTY));
+	
+	/**
+	 * Whether there is a metrics sink. Since this is a constant once the
+	 * class is loaded, the JIT drops the code guarded by it when it is
+	 * false.
+	 */
+	private static final boolean METRICS_ENABLED = null != METRICS;
+	
+	/**
+	 * Creates the metrics sink selected by the value of
+	 * {@link TickRangeMetrics#PROPERTY}. Since whoever set the property
+	 * asked for metrics, a class that cannot be used as a sink is an error
+	 * rather than a reason to quietly run without them.
+	 * 
+	 * @param name The value of the property
+	 * @return The sink, or null if the property is not set
+	 * @throws IllegalArgumentException If the name is not
+	 * 		{@link TickRangeMetrics#COUNTERS} or a class implementing
+	 * 		TickRangeMetrics with a public no-argument constructor
+	 */
+	static TickRangeMetrics loadMetrics(String name) {
+		if (null == name || name.isEmpty()) {
+			return null;
+		}
+		
+		if (TickRangeMetrics.COUNTERS.equals(name)) {
+			return TickRangeCounters.platform();
+		}
+		
+		try {
+			Class<?> type = Class.forName(name);
+			
+			if (!TickRangeMetrics.class.isAssignableFrom(type)) {
+				throw new IllegalArgumentException(TickRangeMetrics.PROPERTY + "=" + name
+					+ ": the class does not implement TickRangeMetrics");
+			}
+			
+			return (TickRangeMetrics) type.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException(TickRangeMetrics.PROPERTY + "=" + name
+				+ ": the class cannot be instantiated", e);
+		}
 	}
 	
+	/**
+	 * Classifies the result of intersect() or union() for the metrics
+	 * sink.
+	 * 
+	 * @param result The range returned
+	 * @param self The range the operation was called on
+	 * @param argument The argument of the operation
+	 * @return One of the RESULT_ constants in {@link TickRangeMetrics}
+	 */
+	static int result(TickRange result, TickRange self, TickRangeProvider argument) {
+		if (null == result) {
+			return TickRangeMetrics.RESULT_NULL;
+		}
+		
+		if (self == result) {
+			return TickRangeMetrics.RESULT_THIS;
+		}
+		
+		return (argument == result)
+		? TickRangeMetrics.RESULT_ARGUMENT
+		: TickRangeMetrics.RESULT_NEW;
+	}
+	
+	/**
+	 * The number of values needed in a buffer passed to
+	 * {@link #splitUnion(TickRangeProvider, long[], int)}, enough for the
+	 * start and end ticks of three ranges.
+	 */
+	public static final int SPLIT_UNION_LENGTH = 6;
+	
 	/**
 	 * The start tick of this range
 	 */
@@ -173,6 +263,25 @@ public final class TickRange implements
 		return comp;
 	}
 	
+	/**
+	 * A comparator that orders TickRangeProviders the same way as
+	 * {@link #compareTo(TickRangeProvider)}, first by start tick then by
+	 * end tick if the start ticks are equal.
+	 */
+	public static final Comparator<TickRangeProvider> COMPARATOR =
+		new Comparator<TickRangeProvider>() {
+			@Override
+			public int compare(TickRangeProvider r1, TickRangeProvider r2) {
+				int comp = compareTick(r1, r2);
+				
+				if (0 == comp) {
+					comp = compareEndTick(r1, r2);
+				}
+				
+				return comp;
+			}
+		};
+	
 	/**
 	 * Determines if a TickRange contains another. Two equal TickRanges
 	 * are considered to contain each other.
@@ -243,31 +352,75 @@ public final class TickRange implements
 		 *       -----	7
 		 * ----
 		 */
-
-		if (start <= r.getTick()) { // 1-4
-			if (r.getTick() < end) { // 1-3
-				return true;
-			}
-			
-			return false; // 4
-		} else { // 5-7
-			if (start < r.getEndTick()) { // 5-6
-				return true;
-			}
-			
-			return false; // 7
-		}
+		long rStart = r.getTick();
+		long rEnd   = r.getEndTick();
+		
+		// 1-3 when r starts inside this range, 5-6 when this range starts
+		// inside r, and both sides are simple enough to not need a branch
+		return (start <= rStart) ? rStart < end : start < rEnd;
 	}
 	
 	/**
 	 * Creates a TickRange representing the intersection of this one
 	 * with another. Returns null if there is no intersection.
+	 * <p>
+	 * If the intersection is the whole of r and r is a TickRange then r
+	 * is returned, otherwise if it is the whole of this range then this
+	 * range is returned. A new TickRange is only created when the
+	 * intersection is only part of both.
 	 * 
 	 * @param r The TickRange to intersect with
 	 * @return The intersection of this and r or null if there is
 	 * 		no intersection
+	 * @throws IllegalArgumentException If r is not a valid range, as
+	 * 		checked by the TickRange constructor
 	 */
 	public TickRange intersect(TickRangeProvider r) {
+		TickRange ret = doIntersect(r);
+		
+		if (METRICS_ENABLED) {
+			METRICS.intersect(result(ret, this, r));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Checks the ticks read from another range the same way as the
+	 * constructor, since intersect() and union() read them directly
+	 * rather than going through {@link #fromProvider(TickRangeProvider)}.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @throws IllegalArgumentException If they do not make a valid range
+	 */
+	private static void checkBounds(long start, long end) {
+		if (start < 0) {
+			throw new IllegalArgumentException("start must be >= 0");
+		}
+		
+		if (end <= start) {
+			throw new IllegalArgumentException("length must be > 0");
+		}
+	}
+	
+	private TickRange doIntersect(TickRangeProvider r) {
+		long rStart = r.getTick();
+		long rEnd   = r.getEndTick();
+		checkBounds(rStart, rEnd);
+		long lo     = Math.max(start, rStart);
+		long hi     = Math.min(end, rEnd);
+		
+		/* -----
+		 *       ------
+		 *         
+		 *        ----
+		 * ----
+		 */
+		if (hi <= lo) {
+			return null;
+		}
+		
 		/* ---------
 		 *   -----
 		 *   
@@ -280,8 +433,8 @@ public final class TickRange implements
 		 * ---------
 		 * ---------
 		 */
-		if (start <= r.getTick() && r.getEndTick() <= end) {
-			return fromProvider(r);
+		if (lo == rStart && hi == rEnd) {
+			return (r instanceof TickRange) ? (TickRange) r : new TickRange(lo, hi, true);
 		}
 		
 		/*   -----	
@@ -293,70 +446,66 @@ public final class TickRange implements
 		 * ---------
 		 * -----------
 		 */
-		if (r.getTick() <= start && end <= r.getEndTick())
+		if (lo == start && hi == end) {
 			return this;
+		}
 		
 		/* ---------
 		 *   ---------
-		 */
-		if (start < r.getTick() && end < r.getEndTick() && r.getTick() < end)
-			return new TickRange(r.getTick(), end, true);
-		
-		/*  ---------
+		 *   
+		 *  ---------
 		 * ---------
 		 */
-		if (r.getTick() < start && r.getEndTick() < end && start < r.getEndTick())
-			return new TickRange(start, r.getEndTick(), true);
-		
-		/* -----
-		 *       ------
-		 *         
-		 *        ----
-		 * ----
-		 */
-		return null;
+		return new TickRange(lo, hi, true);
 	}
 	
 	/**
 	 * Creates a TickRange representing the union of this one with
 	 * another. Only returns the union if they are intersecting.
 	 * Disjoint ranges will return null instead.
+	 * <p>
+	 * If the union is the whole of this range then this range is
+	 * returned, otherwise if it is the whole of trp then trp is returned
+	 * if it is a TickRange. A new TickRange is only created when the
+	 * union is larger than both.
 	 * 
 	 * @param trp The range to union with
 	 * @return The union of this and trp or null if they do not intersect
+	 * @throws IllegalArgumentException If trp is not a valid range, as
+	 * 		checked by the TickRange constructor
 	 */
 	public TickRange union(TickRangeProvider trp) {
-		TickRange r = fromProvider(trp);
+		TickRange ret = doUnion(trp);
 		
-		if (contains(r)) {
-			return this;
+		if (METRICS_ENABLED) {
+			METRICS.union(result(ret, this, trp));
 		}
 		
-		if (r.contains(this)) {
-			return r;
+		return ret;
+	}
+	
+	private TickRange doUnion(TickRangeProvider trp) {
+		long rStart = trp.getTick();
+		long rEnd   = trp.getEndTick();
+		checkBounds(rStart, rEnd);
+		
+		// ranges that only touch are not unioned
+		if (Math.min(end, rEnd) <= Math.max(start, rStart)) {
+			return null;
 		}
 		
-		if (start <= r.start) {
-			if (end <= r.start) { // no intersection
-				return null;
-			}
-			
-			if (r.end <= end) {
-				return this;
-			}
-			
-			return new TickRange(start, r.end, true);
-		} else {
-			if (r.end <= start) { // no intersection
-				return null;
-			}
-			
-			if (end <= r.end) {
-				return r;
-			}
-			
-			return new TickRange(r.start, end, true);
+		long lo = Math.min(start, rStart);
+		long hi = Math.max(end, rEnd);
+		
+		if (lo == start && hi == end) {
+			return this;
+		}
+		
+		if (lo == rStart && hi == rEnd && trp instanceof TickRange) {
+			return (TickRange) trp;
 		}
+		
+		return new TickRange(lo, hi, true);
 	}
 
 	/**
@@ -380,6 +529,93 @@ public final class TickRange implements
 	 * is split along the intersection boundaries
 	 */
 	public TickRange[] splitUnion(TickRangeProvider trp) {
+		long[] bounds = new long[SPLIT_UNION_LENGTH];
+		int count = splitUnion(trp, bounds, 0);
+		TickRange[] ret = new TickRange[count];
+		
+		for (int i = 0; i < count; i++) {
+			ret[i] = segment(trp, bounds[2 * i], bounds[2 * i + 1]);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Returns a TickRange for one segment of a split union, reusing this
+	 * range or the other one if the segment happens to equal either.
+	 * 
+	 * @param trp The range that was unioned with this one
+	 * @param segStart The start tick of the segment
+	 * @param segEnd The end tick of the segment
+	 * @return A TickRange for the segment
+	 */
+	private TickRange segment(TickRangeProvider trp, long segStart, long segEnd) {
+		if (segStart == start && segEnd == end) {
+			return this;
+		}
+		
+		if (segStart == trp.getTick() && segEnd == trp.getEndTick()) {
+			return fromProvider(trp);
+		}
+		
+		return new TickRange(segStart, segEnd, true);
+	}
+	
+	/**
+	 * Writes the boundaries of the union of this range with another into
+	 * a caller-supplied buffer instead of creating new TickRanges. The
+	 * segments are the same ones returned by
+	 * {@link #splitUnion(TickRangeProvider)} and are written as pairs of
+	 * start and end ticks in order from lowest to highest.
+	 * 
+	 * @param trp The range to union with
+	 * @param out The buffer to write the start and end ticks to
+	 * @param offset The index in the buffer to start writing at, which
+	 * 		must leave room for at least {@link #SPLIT_UNION_LENGTH} values
+	 * @return The number of segments written, between one and three
+	 * @see #splitUnion(long, long, long, long, long[], int)
+	 */
+	public int splitUnion(TickRangeProvider trp, long[] out, int offset) {
+		return splitUnion(
+			start, end, trp.getTick(), trp.getEndTick(), out, offset);
+	}
+	
+	/**
+	 * Writes the boundaries of the union of two ranges into a
+	 * caller-supplied buffer, split along the intersection boundaries the
+	 * same way as {@link #splitUnion(TickRangeProvider)}. Nothing is
+	 * allocated, so this can be used in loops that would otherwise create
+	 * many short-lived TickRanges.
+	 * 
+	 * @param start1 The start tick of the first range
+	 * @param end1 The end tick of the first range
+	 * @param start2 The start tick of the second range
+	 * @param end2 The end tick of the second range
+	 * @param out The buffer to write the start and end ticks to
+	 * @param offset The index in the buffer to start writing at, which
+	 * 		must leave room for at least {@link #SPLIT_UNION_LENGTH} values
+	 * @return The number of segments written, between one and three
+	 */
+	public static int splitUnion(
+			long start1, long end1, long start2, long end2,
+			long[] out, int offset) {
+		if (offset < 0 || out.length - offset < SPLIT_UNION_LENGTH) {
+			throw new IllegalArgumentException(
+				"out must have room for " + SPLIT_UNION_LENGTH + " values");
+		}
+		
+		int segments = splitBounds(start1, end1, start2, end2, out, offset);
+		
+		if (METRICS_ENABLED) {
+			METRICS.splitUnion(segments);
+		}
+		
+		return segments;
+	}
+	
+	private static int splitBounds(
+			long start1, long end1, long start2, long end2,
+			long[] out, int offset) {
 		/*
 		 * --|-----|--	1
 		 *   |-----|
@@ -412,66 +648,53 @@ public final class TickRange implements
 		 * ----|
 		 */
 		
-		
-		if (this.equals(trp)) { // 3
-			return new TickRange[] {this};
+		if (start1 == start2 && end1 == end2) { // 3
+			out[offset]     = start1;
+			out[offset + 1] = end1;
+			return 1;
 		}
 		
-		if (!this.intersects(trp)) { // 4, 7
-			if (this.compareTick(trp) < 0) { // 4
-				return new TickRange[] {this, fromProvider(trp)};
+		// same test as intersects()
+		if (start1 <= start2 ? end1 <= start2 : end2 <= start1) { // 4, 7
+			if (start1 < start2) { // 4
+				out[offset]     = start1;
+				out[offset + 1] = end1;
+				out[offset + 2] = start2;
+				out[offset + 3] = end2;
+			} else { // 7
+				out[offset]     = start2;
+				out[offset + 1] = end2;
+				out[offset + 2] = start1;
+				out[offset + 3] = end1;
 			}
 			
-			// 7
-			return new TickRange[] {fromProvider(trp), this};
+			return 2;
 		}
 		
-		TickRange[] ret = null;
-		TickRange r1, r2;
-		int tickComp = this.compareTick(trp);
+		long lowStart  = Math.min(start1, start2);
+		long highStart = Math.max(start1, start2);
+		long lowEnd    = Math.min(end1, end2);
+		long highEnd   = Math.max(end1, end2);
+		int i = offset;
 		
-		// arrange so the one that starts first is r1
-		if (tickComp < 0) {
-			r1 = this;
-			r2 = fromProvider(trp);
-		} else {
-			r1 = fromProvider(trp);
-			r2 = this;
+		if (lowStart != highStart) {
+			// the leading range before the intersection
+			out[i++] = lowStart;
+			out[i++] = highStart;
 		}
 		
-		if (0 != tickComp) {
-			// make a range from the start of r1 to the start of r2
-			// for the leading range before the intersection
-			ret = new TickRange[] {new TickRange(r1.start, r2.start, true)};
-			
-			// set r1 to start where r2 starts
-			r1 = new TickRange(r2.start, r1.end, true);
-		}
+		// will always have the range where the two intersect
+		out[i++] = highStart;
+		out[i++] = lowEnd;
 		
-
-		int endComp  = r1.compareEndTick(r2);
-		
-		// arrange so the one that ends first is in r1
-		if (endComp > 0) {
-			TickRange temp = r1;
-			r1 = r2;
-			r2 = temp;
+		if (lowEnd != highEnd) {
+			// the trailing range after the intersection
+			out[i++] = lowEnd;
+			out[i++] = highEnd;
 		}
 		
-		// now r1.start == r2.start and r1.end <= r2.end
-		
-		// will always have at least this range in the result where
-		// the two intersect
-		ret = (null == ret) ? new TickRange[] {r1} : arrayPush(ret, r1);
+		assert 2 <= i - offset && i - offset <= SPLIT_UNION_LENGTH;
 		
-		if (0 != endComp) {
-			// make a range from the end of r1 to the end of r2
-			// for the trailing range after the intersection
-			ret = arrayPush(ret, new TickRange(r1.end, r2.end, true));
-		}
-		
-		assert 1 <= ret.length && ret.length <= 3;
-		
-		return ret;
+		return (i - offset) / 2;
 	}
 }
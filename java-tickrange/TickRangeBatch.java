@@ -0,0 +1,296 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+
+/**
+ * Builds many ranges at once from arrays of start ticks and end ticks or
+ * lengths, such as when importing notes from a file that may contain bad
+ * data. Instead of throwing an exception for the first bad range, like
+ * the {@link TickRange} constructor does, every range is checked and the
+ * problems are collected into a compact report that lists the index of
+ * each bad range and what was wrong with it.
+ * <p>
+ * In {@link Mode#STRICT} mode, bad ranges are left out of the result. In
+ * {@link Mode#CLAMP} mode, they are repaired instead: a negative start
+ * tick is moved to zero and a range that would be empty or negative is
+ * given a length of one tick.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeBatch {
+	
+	/**
+	 * What to do with ranges that are not valid
+	 */
+	public enum Mode {
+		/**
+		 * Leaves bad ranges out of the result
+		 */
+		STRICT,
+		
+		/**
+		 * Repairs bad ranges and keeps them in the result
+		 */
+		CLAMP
+	}
+	
+	/**
+	 * What was wrong with a range. Only the first problem found is
+	 * reported, checking in the same order as the TickRange constructor.
+	 */
+	public enum Problem {
+		/**
+		 * The start tick was negative
+		 */
+		NEGATIVE_START,
+		
+		/**
+		 * The end tick or length was negative
+		 */
+		NEGATIVE_END,
+		
+		/**
+		 * The start tick plus the length was too large for a long
+		 */
+		OVERFLOW,
+		
+		/**
+		 * The end tick was not after the start tick
+		 */
+		EMPTY
+	}
+	
+	private static final Problem[] PROBLEMS = Problem.values();
+	
+	/**
+	 * Builds ranges from parallel arrays of start and end ticks.
+	 * 
+	 * @param starts The start ticks
+	 * @param ends The end ticks
+	 * @param mode What to do with ranges that are not valid
+	 * @return The ranges and a report of any problems
+	 */
+	public static TickRangeBatch fromEnds(long[] starts, long[] ends, Mode mode) {
+		return build(starts, ends, true, mode);
+	}
+	
+	/**
+	 * Builds ranges from parallel arrays of start ticks and lengths.
+	 * 
+	 * @param starts The start ticks
+	 * @param lengths The lengths
+	 * @param mode What to do with ranges that are not valid
+	 * @return The ranges and a report of any problems
+	 */
+	public static TickRangeBatch fromLengths(
+			long[] starts, long[] lengths, Mode mode) {
+		return build(starts, lengths, false, mode);
+	}
+	
+	/**
+	 * Builds ranges from a start tick and either an end tick or a length
+	 * for each one, the same way as
+	 * {@link TickRange#TickRange(long, long, boolean)}.
+	 */
+	private static TickRangeBatch build(
+			long[] starts, long[] values, boolean passingEnd, Mode mode) {
+		if (starts.length != values.length) {
+			throw new IllegalArgumentException("arrays must be the same length");
+		}
+		
+		if (null == mode) {
+			throw new IllegalArgumentException("mode must not be null");
+		}
+		
+		int n = starts.length;
+		PackedTickRangeList ranges = new PackedTickRangeList(n);
+		int[] sources = new int[n];
+		int[] problemIndices = new int[0];
+		byte[] problems = new byte[0];
+		int problemCount = 0;
+		
+		for (int i = 0; i < n; i++) {
+			long start = starts[i];
+			long end = values[i];
+			Problem problem = null;
+			
+			if (start < 0) {
+				problem = Problem.NEGATIVE_START;
+			} else if (end < 0) {
+				problem = Problem.NEGATIVE_END;
+			}
+			
+			if (!passingEnd) {
+				if (end < 0) {
+					// already reported, and will be repaired as empty
+					end = start;
+				} else if (start > 0 && Long.MAX_VALUE - start < end) {
+					if (null == problem) {
+						problem = Problem.OVERFLOW;
+					}
+					
+					end = Long.MAX_VALUE;
+				} else {
+					end = start + end;
+				}
+			}
+			
+			if (null == problem && end <= start) {
+				problem = Problem.EMPTY;
+			}
+			
+			if (null != problem) {
+				if (problemCount == problems.length) {
+					int capacity = Math.max(8, 2 * problemCount);
+					problemIndices = Arrays.copyOf(problemIndices, capacity);
+					problems = Arrays.copyOf(problems, capacity);
+				}
+				
+				problemIndices[problemCount] = i;
+				problems[problemCount++] = (byte) problem.ordinal();
+				
+				if (Mode.STRICT == mode) {
+					continue;
+				}
+				
+				start = Math.max(0, Math.min(start, Long.MAX_VALUE - 1));
+				
+				if (end <= start) {
+					end = start + 1;
+				}
+			}
+			
+			sources[ranges.size()] = i;
+			ranges.add(start, end);
+		}
+		
+		return new TickRangeBatch(
+			mode, ranges, Arrays.copyOf(sources, ranges.size()),
+			Arrays.copyOf(problemIndices, problemCount),
+			Arrays.copyOf(problems, problemCount));
+	}
+	
+	private final Mode mode;
+	
+	/**
+	 * The valid or repaired ranges in input order
+	 */
+	private final PackedTickRangeList ranges;
+	
+	/**
+	 * The input index of each range
+	 */
+	private final int[] sources;
+	
+	/**
+	 * The input indices of the ranges that had problems, in ascending
+	 * order
+	 */
+	private final int[] problemIndices;
+	
+	/**
+	 * The ordinal of the {@link Problem} with each of those ranges
+	 */
+	private final byte[] problems;
+	
+	private TickRangeBatch(
+			Mode mode, PackedTickRangeList ranges, int[] sources,
+			int[] problemIndices, byte[] problems) {
+		this.mode           = mode;
+		this.ranges         = ranges;
+		this.sources        = sources;
+		this.problemIndices = problemIndices;
+		this.problems       = problems;
+	}
+	
+	/**
+	 * 
+	 * @return The mode the ranges were built with
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+	
+	/**
+	 * Returns the ranges that were built, in the same order as the input.
+	 * In {@link Mode#STRICT} mode, ranges with problems are left out, so
+	 * use {@link #sourceIndex(int)} to find where each came from.
+	 * 
+	 * @return The list of ranges, which may be modified by the caller
+	 */
+	public PackedTickRangeList ranges() {
+		return ranges;
+	}
+	
+	/**
+	 * 
+	 * @return A new array of TickRanges equal to {@link #ranges()}
+	 */
+	public TickRange[] toArray() {
+		return ranges.toArray();
+	}
+	
+	/**
+	 * 
+	 * @param i The index of a range in the result
+	 * @return The index in the input arrays that the range was built from
+	 */
+	public int sourceIndex(int i) {
+		return sources[i];
+	}
+	
+	/**
+	 * 
+	 * @return Whether every range in the input was valid
+	 */
+	public boolean isClean() {
+		return 0 == problemIndices.length;
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges in the input that had problems, which
+	 * 		were either left out or repaired depending on the mode
+	 */
+	public int problemCount() {
+		return problemIndices.length;
+	}
+	
+	/**
+	 * 
+	 * @param i Which problem to return, from 0 to
+	 * 		<code>problemCount() - 1</code>
+	 * @return The index in the input arrays of the range with the problem
+	 */
+	public int problemIndex(int i) {
+		return problemIndices[i];
+	}
+	
+	/**
+	 * 
+	 * @param i Which problem to return, from 0 to
+	 * 		<code>problemCount() - 1</code>
+	 * @return What was wrong with the range
+	 */
+	public Problem problem(int i) {
+		return PROBLEMS[problems[i]];
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(ranges.size()).append(" ranges, ");
+		sb.append(problemIndices.length).append(" problems {");
+		
+		for (int i = 0; i < problemIndices.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			
+			sb.append(problemIndices[i]).append('=').append(problem(i));
+		}
+		
+		return sb.append('}').toString();
+	}
+}
@@ -0,0 +1,135 @@
+package net.tmullin.ipather;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeBatchTest {
+	/**
+	 * Helper that checks a batch against the TickRange constructor. Every
+	 * range the constructor accepts must be in the batch unchanged, and
+	 * every range it rejects must be reported as a problem.
+	 * 
+	 * @param starts The start ticks
+	 * @param values The end ticks or lengths
+	 * @param passingEnd True if the values are end ticks
+	 */
+	private void matchesConstructor(
+			long[] starts, long[] values, boolean passingEnd) {
+		for (TickRangeBatch.Mode mode : TickRangeBatch.Mode.values()) {
+			TickRangeBatch batch = passingEnd
+				? TickRangeBatch.fromEnds(starts, values, mode)
+				: TickRangeBatch.fromLengths(starts, values, mode);
+			int r = 0;
+			int p = 0;
+			
+			for (int i = 0; i < starts.length; i++) {
+				TickRange expected = null;
+				
+				try {
+					expected = new TickRange(starts[i], values[i], passingEnd);
+				} catch (IllegalArgumentException e) {
+					// reported as a problem below
+				}
+				
+				if (null != expected) {
+					assertEquals(i, batch.sourceIndex(r));
+					assertEquals(expected, batch.ranges().get(r++));
+					continue;
+				}
+				
+				assertEquals(i, batch.problemIndex(p++));
+				
+				if (TickRangeBatch.Mode.CLAMP == mode) {
+					assertEquals(i, batch.sourceIndex(r));
+					TickRange repaired = batch.ranges().get(r++);
+					assertTrue(repaired.start >= 0);
+				}
+			}
+			
+			assertEquals(r, batch.ranges().size());
+			assertEquals(p, batch.problemCount());
+		}
+	}
+	
+	@Test public void problems() {
+		TickRangeBatch batch = TickRangeBatch.fromEnds(
+			new long[] {10, -5, 20, 30, 40},
+			new long[] {20, 10, -1, 30, 50},
+			TickRangeBatch.Mode.STRICT);
+		assertEquals(2, batch.ranges().size());
+		assertEquals(new TickRange(40, 50, true), batch.ranges().get(1));
+		assertEquals(4, batch.sourceIndex(1));
+		assertEquals(3, batch.problemCount());
+		assertEquals(TickRangeBatch.Problem.NEGATIVE_START, batch.problem(0));
+		assertEquals(TickRangeBatch.Problem.NEGATIVE_END, batch.problem(1));
+		assertEquals(TickRangeBatch.Problem.EMPTY, batch.problem(2));
+		assertEquals(3, batch.problemIndex(2));
+		assertFalse(batch.isClean());
+	}
+	
+	@Test public void clamp() {
+		TickRangeBatch batch = TickRangeBatch.fromEnds(
+			new long[] {-5, 20, 30, Long.MAX_VALUE},
+			new long[] {10, -1, 25, Long.MAX_VALUE},
+			TickRangeBatch.Mode.CLAMP);
+		assertEquals(4, batch.problemCount());
+		assertArrayEquals(
+			new TickRange[] {
+				new TickRange(0, 10, true),
+				new TickRange(20, 21, true),
+				new TickRange(30, 31, true),
+				new TickRange(Long.MAX_VALUE - 1, Long.MAX_VALUE, true)},
+			batch.toArray());
+	}
+	
+	@Test public void lengthOverflow() {
+		TickRangeBatch batch = TickRangeBatch.fromLengths(
+			new long[] {10, 100, -10},
+			new long[] {Long.MAX_VALUE, -5, 30},
+			TickRangeBatch.Mode.CLAMP);
+		assertEquals(TickRangeBatch.Problem.OVERFLOW, batch.problem(0));
+		assertEquals(TickRangeBatch.Problem.NEGATIVE_END, batch.problem(1));
+		assertEquals(TickRangeBatch.Problem.NEGATIVE_START, batch.problem(2));
+		assertArrayEquals(
+			new TickRange[] {
+				new TickRange(10, Long.MAX_VALUE, true),
+				new TickRange(100, 101, true),
+				new TickRange(0, 20, true)},
+			batch.toArray());
+	}
+	
+	@Test public void clean() {
+		TickRangeBatch batch = TickRangeBatch.fromLengths(
+			new long[] {10, 20}, new long[] {5, 5}, TickRangeBatch.Mode.STRICT);
+		assertTrue(batch.isClean());
+		assertEquals(2, batch.ranges().size());
+	}
+	
+	@Test public void matchesConstructor() {
+		Random random = new Random(1);
+		long[] starts = new long[5000];
+		long[] values = new long[starts.length];
+		long[] edges = {
+			Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+		
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = (0 == random.nextInt(10))
+				? edges[random.nextInt(edges.length)]
+				: random.nextInt(200) - 20;
+			values[i] = (0 == random.nextInt(10))
+				? edges[random.nextInt(edges.length)]
+				: random.nextInt(200) - 20;
+		}
+		
+		matchesConstructor(starts, values, true);
+		matchesConstructor(starts, values, false);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void differentLengths() {
+		TickRangeBatch.fromEnds(
+			new long[2], new long[3], TickRangeBatch.Mode.STRICT);
+	}
+}
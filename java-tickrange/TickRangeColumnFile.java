@@ -0,0 +1,536 @@
+package net.tmullin.ipather;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only view of a file of sorted tick ranges that is memory mapped
+ * rather than parsed onto the heap, so opening even a large file is
+ * nearly free and ranges are only read as they are used.
+ * <p>
+ * The file stores its ranges sorted by start tick then end tick, as
+ * columns rather than as pairs. A 32 byte header holding a magic number,
+ * version, flags, block shift and range count is followed by either
+ * <ul>
+ * <li>a column of start ticks and a column of end ticks as longs, or</li>
+ * <li>when written compactly, a column with the first start tick of each
+ * block of 2<sup>block shift</sup> ranges as longs, then a column of
+ * each start tick's offset from its block's first start tick and a
+ * column of tick lengths, both as unsigned ints.</li>
+ * </ul>
+ * Either layout supports random access in constant time. All values are
+ * big-endian.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeColumnFile implements Closeable {
+	
+	/**
+	 * The magic number at the start of every file, "TRCF"
+	 */
+	private static final int MAGIC = 0x54524346;
+	
+	/**
+	 * The version of the file format
+	 */
+	private static final int VERSION = 1;
+	
+	/**
+	 * The flag set when the file uses the compact layout
+	 */
+	private static final int FLAG_COMPACT = 1;
+	
+	/**
+	 * The size of the header in bytes
+	 */
+	private static final int HEADER_SIZE = 32;
+	
+	/**
+	 * The number of ranges in each block of the compact layout, as a
+	 * power of two
+	 */
+	private static final int BLOCK_SHIFT = 10;
+	
+	/**
+	 * The largest value that fits in an unsigned int column
+	 */
+	private static final long MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+	
+	/**
+	 * The size of the buffer used when writing a file
+	 */
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+	
+	/**
+	 * Writes ranges to a file, replacing it if it already exists. The
+	 * ranges are sorted first, so they may be in any order.
+	 * 
+	 * @param path The file to write
+	 * @param ranges The ranges to write
+	 * @param compact Whether to use the compact layout. If any start
+	 * 		offset or length is too large for it, the full layout is used
+	 * 		instead.
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void write(
+			Path path, Iterable<? extends TickRangeProvider> ranges,
+			boolean compact) throws IOException {
+		PackedTickRangeList list = new PackedTickRangeList(ranges);
+		list.sort();
+		
+		long[] starts = list.startArray();
+		long[] ends   = list.endArray();
+		int count     = list.size();
+		
+		if (compact) {
+			compact = fitsCompact(starts, ends, count);
+		}
+		
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(compact ? FLAG_COMPACT : 0);
+			buffer.putInt(compact ? BLOCK_SHIFT : 0);
+			buffer.putLong(count);
+			buffer.putLong(0);
+			
+			if (compact) {
+				for (int i = 0; i < count; i += 1 << BLOCK_SHIFT) {
+					putLong(channel, buffer, starts[i]);
+				}
+				
+				for (int i = 0; i < count; i++) {
+					long base = starts[i & -(1 << BLOCK_SHIFT)];
+					putInt(channel, buffer, (int) (starts[i] - base));
+				}
+				
+				for (int i = 0; i < count; i++) {
+					putInt(channel, buffer, (int) (ends[i] - starts[i]));
+				}
+			} else {
+				for (int i = 0; i < count; i++) {
+					putLong(channel, buffer, starts[i]);
+				}
+				
+				for (int i = 0; i < count; i++) {
+					putLong(channel, buffer, ends[i]);
+				}
+			}
+			
+			flush(channel, buffer);
+		}
+	}
+	
+	/**
+	 * Checks whether sorted ranges can be stored in the compact layout.
+	 */
+	private static boolean fitsCompact(long[] starts, long[] ends, int count) {
+		for (int i = 0; i < count; i++) {
+			long base = starts[i & -(1 << BLOCK_SHIFT)];
+			
+			if (starts[i] - base > MAX_UNSIGNED_INT ||
+					ends[i] - starts[i] > MAX_UNSIGNED_INT) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static void putLong(
+			FileChannel channel, ByteBuffer buffer, long value) throws IOException {
+		if (buffer.remaining() < 8) {
+			flush(channel, buffer);
+		}
+		
+		buffer.putLong(value);
+	}
+	
+	private static void putInt(
+			FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+		if (buffer.remaining() < 4) {
+			flush(channel, buffer);
+		}
+		
+		buffer.putInt(value);
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		
+		buffer.clear();
+	}
+	
+	/**
+	 * Opens a file written by
+	 * {@link #write(Path, Iterable, boolean)} and maps it into memory.
+	 * 
+	 * @param path The file to open
+	 * @return The mapped file
+	 * @throws IOException If the file cannot be read, is not a tick range
+	 * 		column file, or is too large to map
+	 */
+	public static TickRangeColumnFile open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		
+		try {
+			return new TickRangeColumnFile(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * The channel the file was mapped from
+	 */
+	private final FileChannel channel;
+	
+	/**
+	 * The number of ranges in the file
+	 */
+	private final int size;
+	
+	/**
+	 * Whether the file uses the compact layout
+	 */
+	private final boolean compact;
+	
+	/**
+	 * The number of ranges in each block as a power of two, for the
+	 * compact layout
+	 */
+	private final int blockShift;
+	
+	/**
+	 * The start ticks, or the first start tick of each block for the
+	 * compact layout
+	 */
+	private final LongBuffer starts;
+	
+	/**
+	 * The end ticks, or null for the compact layout
+	 */
+	private final LongBuffer ends;
+	
+	/**
+	 * The offset of each start tick from its block's first start tick,
+	 * or null for the full layout
+	 */
+	private final IntBuffer offsets;
+	
+	/**
+	 * The length of each range, or null for the full layout
+	 */
+	private final IntBuffer lengths;
+	
+	/**
+	 * Maps a file and checks its header.
+	 * 
+	 * @param channel The channel to map
+	 */
+	private TickRangeColumnFile(FileChannel channel) throws IOException {
+		this.channel = channel;
+		long fileSize = channel.size();
+		
+		if (fileSize > Integer.MAX_VALUE) {
+			throw new IOException("file too large to map: " + fileSize);
+		}
+		
+		if (fileSize < HEADER_SIZE) {
+			throw new IOException("not a tick range column file");
+		}
+		
+		MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+		
+		if (map.getInt(0) != MAGIC) {
+			throw new IOException("not a tick range column file");
+		}
+		
+		if (map.getInt(4) != VERSION) {
+			throw new IOException("unsupported version: " + map.getInt(4));
+		}
+		
+		compact    = 0 != (map.getInt(8) & FLAG_COMPACT);
+		blockShift = map.getInt(12);
+		long count = map.getLong(16);
+		long blocks = compact ? (count + (1L << blockShift) - 1) >> blockShift : 0;
+		long expected = compact
+			? HEADER_SIZE + 8 * blocks + 8 * count
+			: HEADER_SIZE + 16 * count;
+		
+		if (count < 0 || (compact && (blockShift < 0 || blockShift > 30)) ||
+				expected != fileSize) {
+			throw new IOException("corrupt tick range column file");
+		}
+		
+		size = (int) count;
+		
+		if (compact) {
+			starts  = slice(map, HEADER_SIZE, 8 * blocks).asLongBuffer();
+			ends    = null;
+			offsets = slice(map, HEADER_SIZE + 8 * blocks, 4 * count).asIntBuffer();
+			lengths = slice(map, HEADER_SIZE + 8 * blocks + 4 * count, 4 * count).asIntBuffer();
+		} else {
+			starts  = slice(map, HEADER_SIZE, 8 * count).asLongBuffer();
+			ends    = slice(map, HEADER_SIZE + 8 * count, 8 * count).asLongBuffer();
+			offsets = null;
+			lengths = null;
+		}
+	}
+	
+	/**
+	 * Creates a buffer over part of a mapped file.
+	 */
+	private static ByteBuffer slice(ByteBuffer map, long offset, long length) {
+		ByteBuffer dup = map.duplicate();
+		dup.position((int) offset);
+		dup.limit((int) (offset + length));
+		return dup.slice();
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges in the file
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * 
+	 * @return Whether the file uses the compact layout
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+	
+	/**
+	 * Checks that an index refers to a range in the file.
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + size);
+		}
+	}
+	
+	/**
+	 * Reads a start tick without checking the index.
+	 */
+	private long start(int index) {
+		if (compact) {
+			return starts.get(index >>> blockShift) +
+				(offsets.get(index) & MAX_UNSIGNED_INT);
+		}
+		
+		return starts.get(index);
+	}
+	
+	/**
+	 * Reads an end tick without checking the index.
+	 */
+	private long end(int index) {
+		if (compact) {
+			return start(index) + (lengths.get(index) & MAX_UNSIGNED_INT);
+		}
+		
+		return ends.get(index);
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in the file
+	 * @return The start tick of the range
+	 */
+	public long getTick(int index) {
+		checkIndex(index);
+		return start(index);
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in the file
+	 * @return The end tick of the range
+	 */
+	public long getEndTick(int index) {
+		checkIndex(index);
+		return end(index);
+	}
+	
+	/**
+	 * Creates a TickRange equal to the range at the specified index.
+	 * 
+	 * @param index The index of a range in the file
+	 * @return A TickRange for the range
+	 */
+	public TickRange get(int index) {
+		checkIndex(index);
+		return new TickRange(start(index), end(index), true);
+	}
+	
+	/**
+	 * Creates a lightweight view of the range at the specified index that
+	 * reads through to the mapped file.
+	 * 
+	 * @param index The index of a range in the file
+	 * @return A TickRangeProvider backed by the file
+	 */
+	public TickRangeProvider view(final int index) {
+		checkIndex(index);
+		return new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return start(index);
+			}
+			
+			@Override
+			public long getEndTick() {
+				return end(index);
+			}
+			
+			@Override
+			public long getTickLength() {
+				return end(index) - start(index);
+			}
+			
+			@Override
+			public String toString() {
+				return String.format("[%s, %s)", getTick(), getEndTick());
+			}
+		};
+	}
+	
+	/**
+	 * Finds the first range that starts at or after the specified tick.
+	 * 
+	 * @param tick The tick to search for
+	 * @return The index of the first range starting at or after the tick,
+	 * 		or {@link #size()} if there is none
+	 */
+	public int lowerBound(long tick) {
+		int lo = 0;
+		int hi = size;
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			
+			if (start(mid) < tick) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		
+		return lo;
+	}
+	
+	/**
+	 * Creates a cursor positioned before the first range.
+	 * 
+	 * @return A new cursor
+	 */
+	public Cursor cursor() {
+		return new Cursor(0);
+	}
+	
+	/**
+	 * Creates a cursor positioned before the range at the specified index,
+	 * such as one found by {@link #lowerBound(long)}.
+	 * 
+	 * @param index The index of the first range the cursor will move to
+	 * @return A new cursor
+	 */
+	public Cursor cursor(int index) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + size);
+		}
+		
+		return new Cursor(index);
+	}
+	
+	/**
+	 * Closes the channel the file was mapped from. The mapping itself
+	 * stays valid until it is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * A cursor that moves forward through the ranges of a file. The
+	 * cursor is itself a TickRangeProvider for the range it is on, so
+	 * sequential scans need no other objects.
+	 */
+	public final class Cursor implements TickRangeProvider {
+		private int index;
+		private long start;
+		private long end;
+		
+		private Cursor(int index) {
+			this.index = index - 1;
+		}
+		
+		/**
+		 * Moves to the next range.
+		 * 
+		 * @return Whether there was another range to move to
+		 */
+		public boolean next() {
+			if (index + 1 >= size) {
+				index = size;
+				return false;
+			}
+			
+			index++;
+			start = start(index);
+			end   = end(index);
+			return true;
+		}
+		
+		/**
+		 * 
+		 * @return The index of the range the cursor is on
+		 */
+		public int index() {
+			return index;
+		}
+		
+		@Override
+		public long getTick() {
+			return start;
+		}
+		
+		@Override
+		public long getEndTick() {
+			return end;
+		}
+		
+		@Override
+		public long getTickLength() {
+			return end - start;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("[%s, %s)", start, end);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package net.tmullin.ipather;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class TickRangeColumnFileTest {
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Helper that creates a list of random ranges.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to create
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> randomRanges(long seed, int count) {
+		Random random = new Random(seed);
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			ret.add(new TickRange(random.nextInt(1000000), 1 + random.nextInt(960)));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper for round trip tests. Writes ranges to a file, reads them
+	 * back and checks that they match the sorted ranges.
+	 * 
+	 * @param ranges The ranges to write
+	 * @param compact Whether to ask for the compact layout
+	 * @param expectCompact Whether the file should end up compact
+	 */
+	private void roundTrip(
+			List<TickRange> ranges, boolean compact, boolean expectCompact)
+			throws IOException {
+		File file = folder.newFile();
+		TickRangeColumnFile.write(file.toPath(), ranges, compact);
+		
+		List<TickRange> expected = new ArrayList<TickRange>(ranges);
+		Collections.sort(expected);
+		
+		try (TickRangeColumnFile columns = TickRangeColumnFile.open(file.toPath())) {
+			assertEquals(expectCompact, columns.isCompact());
+			assertEquals(expected.size(), columns.size());
+			
+			TickRangeColumnFile.Cursor cursor = columns.cursor();
+			
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i), columns.get(i));
+				assertEquals(expected.get(i), columns.view(i));
+				assertTrue(cursor.next());
+				assertEquals(i, cursor.index());
+				assertEquals(expected.get(i), TickRange.fromProvider(cursor));
+			}
+			
+			assertFalse(cursor.next());
+		}
+	}
+	
+	@Test public void roundTripFull() throws IOException {
+		roundTrip(randomRanges(1, 5000), false, false);
+	}
+	
+	@Test public void roundTripCompact() throws IOException {
+		roundTrip(randomRanges(2, 5000), true, true);
+	}
+	
+	@Test public void roundTripEmpty() throws IOException {
+		roundTrip(new ArrayList<TickRange>(), true, true);
+	}
+	
+	@Test public void compactFallsBack() throws IOException {
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		ranges.add(new TickRange(0, 10));
+		ranges.add(new TickRange(1L << 40, 10));
+		roundTrip(ranges, true, false);
+	}
+	
+	@Test public void compactSmaller() throws IOException {
+		List<TickRange> ranges = randomRanges(3, 5000);
+		File full = folder.newFile();
+		File compact = folder.newFile();
+		TickRangeColumnFile.write(full.toPath(), ranges, false);
+		TickRangeColumnFile.write(compact.toPath(), ranges, true);
+		assertTrue(compact.length() < full.length() * 6 / 10);
+	}
+	
+	@Test public void lowerBoundAndCursor() throws IOException {
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		ranges.add(new TickRange(400, 456, true));
+		ranges.add(new TickRange(123, 150, true));
+		ranges.add(new TickRange(150, 400, true));
+		File file = folder.newFile();
+		TickRangeColumnFile.write(file.toPath(), ranges, true);
+		
+		try (TickRangeColumnFile columns = TickRangeColumnFile.open(file.toPath())) {
+			assertEquals(1, columns.lowerBound(124));
+			assertEquals(3, columns.lowerBound(401));
+			
+			TickRangeColumnFile.Cursor cursor = columns.cursor(columns.lowerBound(150));
+			assertTrue(cursor.next());
+			assertEquals(150, cursor.getTick());
+			assertEquals(400, cursor.getEndTick());
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), new byte[64]);
+		TickRangeColumnFile.open(file.toPath());
+	}
+	
+	@Test(expected = IOException.class)
+	public void rejectsTruncated() throws IOException {
+		File file = folder.newFile();
+		TickRangeColumnFile.write(file.toPath(), randomRanges(4, 10), false);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		byte[] truncated = new byte[bytes.length - 8];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		Files.write(file.toPath(), truncated);
+		TickRangeColumnFile.open(file.toPath());
+	}
+}
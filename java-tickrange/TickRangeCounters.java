@@ -0,0 +1,227 @@
+package net.tmullin.ipather;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link TickRangeMetrics} sink that counts every call in
+ * {@link LongAdder}s, which spread their updates over several cells so
+ * that threads using TickRange at the same time do not contend on a
+ * single counter. Reading a count adds up the cells, so the counts are
+ * only exact while nothing is updating them.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeCounters implements TickRangeMetrics, TickRangeCountersMBean {
+	
+	/**
+	 * The name the counters installed by {@link TickRangeMetrics#PROPERTY}
+	 * are registered under
+	 */
+	public static final String OBJECT_NAME = "net.tmullin.ipather:type=TickRangeCounters";
+	
+	private final LongAdder fromProviderCalls = new LongAdder();
+	private final LongAdder fromProviderAllocations = new LongAdder();
+	
+	/**
+	 * The counts of each result, indexed by the RESULT_ constants
+	 */
+	private final LongAdder[] intersect = adders(4);
+	private final LongAdder[] union = adders(4);
+	
+	/**
+	 * The counts of each number of segments, less one
+	 */
+	private final LongAdder[] splitUnion = adders(3);
+	
+	private static LongAdder[] adders(int count) {
+		LongAdder[] ret = new LongAdder[count];
+		
+		for (int i = 0; i < count; i++) {
+			ret[i] = new LongAdder();
+		}
+		
+		return ret;
+	}
+	
+	private static long sum(LongAdder[] adders) {
+		long ret = 0;
+		
+		for (LongAdder adder : adders) {
+			ret += adder.sum();
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Registers these counters with an MBean server under
+	 * {@link #OBJECT_NAME}.
+	 * 
+	 * @param server The server to register with
+	 * @throws JMException If the counters cannot be registered, such as
+	 * 		when something is already registered under the name
+	 */
+	public void register(MBeanServer server) throws JMException {
+		server.registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+	
+	/**
+	 * Creates the counters installed by {@link TickRangeMetrics#PROPERTY},
+	 * registered with the platform MBean server if possible. If they cannot
+	 * be registered, a warning is logged and they still count, but the
+	 * numbers cannot be read over JMX.
+	 * 
+	 * @return The new counters
+	 */
+	static TickRangeCounters platform() {
+		TickRangeCounters ret = new TickRangeCounters();
+		
+		try {
+			ret.register(ManagementFactory.getPlatformMBeanServer());
+		} catch (JMException e) {
+			System.getLogger(TickRangeCounters.class.getName()).log(System.Logger.Level.WARNING,
+				"Cannot register the TickRange counters as " + OBJECT_NAME, e);
+		}
+		
+		return ret;
+	}
+	
+	@Override
+	public void fromProvider(boolean allocated) {
+		fromProviderCalls.increment();
+		
+		if (allocated) {
+			fromProviderAllocations.increment();
+		}
+	}
+	
+	@Override
+	public void intersect(int result) {
+		intersect[result].increment();
+	}
+	
+	@Override
+	public void union(int result) {
+		union[result].increment();
+	}
+	
+	@Override
+	public void splitUnion(int segments) {
+		splitUnion[segments - 1].increment();
+	}
+	
+	@Override
+	public long getFromProviderCalls() {
+		return fromProviderCalls.sum();
+	}
+	
+	@Override
+	public long getFromProviderAllocations() {
+		return fromProviderAllocations.sum();
+	}
+	
+	@Override
+	public long getIntersectCalls() {
+		return sum(intersect);
+	}
+	
+	@Override
+	public long getIntersectNullResults() {
+		return intersect[RESULT_NULL].sum();
+	}
+	
+	@Override
+	public long getIntersectThisResults() {
+		return intersect[RESULT_THIS].sum();
+	}
+	
+	@Override
+	public long getIntersectArgumentResults() {
+		return intersect[RESULT_ARGUMENT].sum();
+	}
+	
+	@Override
+	public long getIntersectAllocations() {
+		return intersect[RESULT_NEW].sum();
+	}
+	
+	@Override
+	public long getUnionCalls() {
+		return sum(union);
+	}
+	
+	@Override
+	public long getUnionNullResults() {
+		return union[RESULT_NULL].sum();
+	}
+	
+	@Override
+	public long getUnionThisResults() {
+		return union[RESULT_THIS].sum();
+	}
+	
+	@Override
+	public long getUnionArgumentResults() {
+		return union[RESULT_ARGUMENT].sum();
+	}
+	
+	@Override
+	public long getUnionAllocations() {
+		return union[RESULT_NEW].sum();
+	}
+	
+	@Override
+	public long getSplitUnionCalls() {
+		return sum(splitUnion);
+	}
+	
+	@Override
+	public long getSplitUnionOneSegment() {
+		return splitUnion[0].sum();
+	}
+	
+	@Override
+	public long getSplitUnionTwoSegments() {
+		return splitUnion[1].sum();
+	}
+	
+	@Override
+	public long getSplitUnionThreeSegments() {
+		return splitUnion[2].sum();
+	}
+	
+	@Override
+	public void reset() {
+		fromProviderCalls.reset();
+		fromProviderAllocations.reset();
+		
+		for (LongAdder adder : intersect) {
+			adder.reset();
+		}
+		
+		for (LongAdder adder : union) {
+			adder.reset();
+		}
+		
+		for (LongAdder adder : splitUnion) {
+			adder.reset();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+			"fromProvider %d (%d allocated), intersect %d (%d null, %d new), " +
+			"union %d (%d null, %d new), splitUnion %d/%d/%d",
+			getFromProviderCalls(), getFromProviderAllocations(),
+			getIntersectCalls(), getIntersectNullResults(), getIntersectAllocations(),
+			getUnionCalls(), getUnionNullResults(), getUnionAllocations(),
+			getSplitUnionOneSegment(), getSplitUnionTwoSegments(), getSplitUnionThreeSegments());
+	}
+}
@@ -0,0 +1,48 @@
+package net.tmullin.ipather;
+
+/**
+ * The management interface of {@link TickRangeCounters}, through which
+ * the counts can be read with JConsole or any other JMX client.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public interface TickRangeCountersMBean {
+	
+	public long getFromProviderCalls();
+	
+	public long getFromProviderAllocations();
+	
+	public long getIntersectCalls();
+	
+	public long getIntersectNullResults();
+	
+	public long getIntersectThisResults();
+	
+	public long getIntersectArgumentResults();
+	
+	public long getIntersectAllocations();
+	
+	public long getUnionCalls();
+	
+	public long getUnionNullResults();
+	
+	public long getUnionThisResults();
+	
+	public long getUnionArgumentResults();
+	
+	public long getUnionAllocations();
+	
+	public long getSplitUnionCalls();
+	
+	public long getSplitUnionOneSegment();
+	
+	public long getSplitUnionTwoSegments();
+	
+	public long getSplitUnionThreeSegments();
+	
+	/**
+	 * Sets every count back to zero.
+	 */
+	public void reset();
+}
@@ -0,0 +1,130 @@
+package net.tmullin.ipather;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeCountersTest {
+	/**
+	 * A sink that ignores everything, for loading by class name
+	 */
+	public static final class IgnoringSink implements TickRangeMetrics {
+		@Override
+		public void fromProvider(boolean allocated) {
+		}
+		
+		@Override
+		public void intersect(int result) {
+		}
+		
+		@Override
+		public void union(int result) {
+		}
+		
+		@Override
+		public void splitUnion(int segments) {
+		}
+	}
+	
+	@Test public void counts() {
+		TickRangeCounters counters = new TickRangeCounters();
+		counters.fromProvider(true);
+		counters.fromProvider(false);
+		counters.fromProvider(false);
+		counters.intersect(TickRangeMetrics.RESULT_NULL);
+		counters.intersect(TickRangeMetrics.RESULT_NEW);
+		counters.intersect(TickRangeMetrics.RESULT_NEW);
+		counters.union(TickRangeMetrics.RESULT_THIS);
+		counters.union(TickRangeMetrics.RESULT_ARGUMENT);
+		counters.splitUnion(1);
+		counters.splitUnion(3);
+		counters.splitUnion(3);
+		
+		assertEquals(3, counters.getFromProviderCalls());
+		assertEquals(1, counters.getFromProviderAllocations());
+		assertEquals(3, counters.getIntersectCalls());
+		assertEquals(1, counters.getIntersectNullResults());
+		assertEquals(0, counters.getIntersectThisResults());
+		assertEquals(2, counters.getIntersectAllocations());
+		assertEquals(2, counters.getUnionCalls());
+		assertEquals(1, counters.getUnionThisResults());
+		assertEquals(1, counters.getUnionArgumentResults());
+		assertEquals(0, counters.getUnionAllocations());
+		assertEquals(3, counters.getSplitUnionCalls());
+		assertEquals(1, counters.getSplitUnionOneSegment());
+		assertEquals(0, counters.getSplitUnionTwoSegments());
+		assertEquals(2, counters.getSplitUnionThreeSegments());
+		
+		counters.reset();
+		assertEquals(0, counters.getFromProviderCalls());
+		assertEquals(0, counters.getIntersectCalls());
+		assertEquals(0, counters.getUnionCalls());
+		assertEquals(0, counters.getSplitUnionCalls());
+	}
+	
+	@Test public void jmx() throws Exception {
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		TickRangeCounters counters = new TickRangeCounters();
+		counters.register(server);
+		counters.splitUnion(2);
+		
+		ObjectName name = new ObjectName(TickRangeCounters.OBJECT_NAME);
+		assertEquals(1L, server.getAttribute(name, "SplitUnionTwoSegments"));
+		server.invoke(name, "reset", null, null);
+		assertEquals(0L, server.getAttribute(name, "SplitUnionCalls"));
+	}
+	
+	@Test public void offByDefault() {
+		assertNull(System.getProperty(TickRangeMetrics.PROPERTY));
+		assertNull(TickRange.METRICS);
+	}
+	
+	@Test public void loadMetrics() {
+		assertNull(TickRange.loadMetrics(null));
+		assertNull(TickRange.loadMetrics(""));
+		assertTrue(TickRange.loadMetrics(TickRangeMetrics.COUNTERS) instanceof TickRangeCounters);
+		assertTrue(TickRange.loadMetrics(IgnoringSink.class.getName()) instanceof IgnoringSink);
+	}
+	
+	@Test public void loadMissingClass() {
+		try {
+			TickRange.loadMetrics("net.tmullin.ipather.NoSuchSink");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("net.tmullin.ipather.NoSuchSink"));
+			assertTrue(e.getCause() instanceof ClassNotFoundException);
+		}
+	}
+	
+	@Test public void loadWrongClass() {
+		try {
+			TickRange.loadMetrics(TickRange.class.getName());
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains(TickRange.class.getName()));
+		}
+	}
+	
+	@Test public void results() {
+		TickRange outer = new TickRange(123, 456, true);
+		TickRange inner = new TickRange(150, 400, true);
+		TickRange partial = new TickRange(400, 500, true);
+		TickRange disjoint = new TickRange(500, 600, true);
+		
+		assertEquals(TickRangeMetrics.RESULT_ARGUMENT,
+			TickRange.result(outer.intersect(inner), outer, inner));
+		assertEquals(TickRangeMetrics.RESULT_THIS,
+			TickRange.result(inner.intersect(outer), inner, outer));
+		assertEquals(TickRangeMetrics.RESULT_NEW,
+			TickRange.result(outer.intersect(partial), outer, partial));
+		assertEquals(TickRangeMetrics.RESULT_NULL,
+			TickRange.result(outer.intersect(disjoint), outer, disjoint));
+		assertEquals(TickRangeMetrics.RESULT_THIS,
+			TickRange.result(outer.union(inner), outer, inner));
+		assertEquals(TickRangeMetrics.RESULT_ARGUMENT,
+			TickRange.result(inner.union(outer), inner, outer));
+	}
+}
@@ -0,0 +1,417 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from tick ranges to values that stores each key as a pair
+ * of primitive start and end ticks instead of as a {@link TickRange}.
+ * <p>
+ * {@link TickRange#hashCode()} folds the start and end together with an
+ * XOR, so ranges such as [1, 6) and [2, 5), and many ranges on a regular
+ * grid, share the same hash code. This map mixes both ticks with a
+ * multiply and shift hash instead, and compares keys directly on the
+ * stored ticks without calling through {@link TickRangeProvider}.
+ * <p>
+ * The entries are held in parallel arrays using open addressing with
+ * linear probing, and removed entries are filled in by shifting later
+ * entries in the same run back, so there are no tombstones and lookups
+ * never slow down after many removals. A slot is empty when its end tick
+ * is zero, which no valid range can have.
+ * <p>
+ * Keys must be valid ranges, as checked by the {@link TickRange}
+ * constructor. Null values are allowed. This class is not thread safe.
+ * 
+ * @author Tim Mullin
+ * 
+ * @param <V> The type of value mapped to each range
+ */
+public final class TickRangeHashMap<V> {
+	
+	/**
+	 * The capacity used when the map is created without one
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	/**
+	 * The table is doubled once it is more than this full
+	 */
+	private static final float LOAD_FACTOR = 0.6f;
+	
+	/**
+	 * Mixes the start and end ticks of a range into a hash code. Unlike
+	 * {@link TickRange#hashCode()}, every bit of both ticks affects every
+	 * bit of the result.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return The hash code
+	 */
+	static long hash(long start, long end) {
+		long h = start * 0x9E3779B97F4A7C15L + end;
+		h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+		h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+		return h ^ (h >>> 32);
+	}
+	
+	/**
+	 * The start ticks of the keys
+	 */
+	private long[] starts;
+	
+	/**
+	 * The end ticks of the keys, or zero for an empty slot
+	 */
+	private long[] ends;
+	
+	/**
+	 * The values mapped to the keys
+	 */
+	private Object[] values;
+	
+	/**
+	 * The number of entries in the map
+	 */
+	private int size;
+	
+	/**
+	 * The size at which the table is doubled
+	 */
+	private int threshold;
+	
+	/**
+	 * Creates an empty map.
+	 */
+	public TickRangeHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates an empty map that can hold the specified number of entries
+	 * before it needs to grow.
+	 * 
+	 * @param expectedSize The number of entries to make room for
+	 */
+	public TickRangeHashMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("expectedSize must be >= 0");
+		}
+		
+		int capacity = DEFAULT_CAPACITY;
+		
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		
+		allocate(capacity);
+	}
+	
+	/**
+	 * Replaces the table with an empty one of the specified capacity.
+	 * 
+	 * @param capacity The new capacity, which must be a power of two
+	 */
+	private void allocate(int capacity) {
+		starts    = new long[capacity];
+		ends      = new long[capacity];
+		values    = new Object[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+	
+	/**
+	 * Checks that a start and end tick make a valid range, using the same
+	 * rules as the {@link TickRange} constructor.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 */
+	private static void validate(long start, long end) {
+		if (start < 0) {
+			throw new IllegalArgumentException("start must be >= 0");
+		}
+		
+		if (end <= start) {
+			throw new IllegalArgumentException("length must be > 0");
+		}
+	}
+	
+	/**
+	 * Finds the slot holding a key or the empty slot where it would go.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return The index of the slot
+	 */
+	private int slot(long start, long end) {
+		int mask = ends.length - 1;
+		int i = (int) hash(start, end) & mask;
+		
+		while (0 != ends[i] && !(ends[i] == end && starts[i] == start)) {
+			i = (i + 1) & mask;
+		}
+		
+		return i;
+	}
+	
+	/**
+	 * 
+	 * @return The number of entries in the map
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * 
+	 * @return Whether the map has no entries
+	 */
+	public boolean isEmpty() {
+		return 0 == size;
+	}
+	
+	/**
+	 * Removes all of the entries from the map.
+	 */
+	public void clear() {
+		Arrays.fill(ends, 0);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	/**
+	 * 
+	 * @param start The start tick of the key
+	 * @param end The end tick of the key
+	 * @return Whether the map has an entry for the range
+	 */
+	public boolean containsKey(long start, long end) {
+		return 0 != end && 0 != ends[slot(start, end)];
+	}
+	
+	/**
+	 * 
+	 * @param r The key
+	 * @return Whether the map has an entry for a range equal to r
+	 */
+	public boolean containsKey(TickRangeProvider r) {
+		return containsKey(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * 
+	 * @param start The start tick of the key
+	 * @param end The end tick of the key
+	 * @return The value mapped to the range or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long start, long end) {
+		// an end of zero would match an empty slot
+		return (0 == end) ? null : (V) values[slot(start, end)];
+	}
+	
+	/**
+	 * 
+	 * @param r The key
+	 * @return The value mapped to a range equal to r or null if there is
+	 * 		none
+	 */
+	public V get(TickRangeProvider r) {
+		return get(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * Maps a range to a value, replacing any value already mapped to it.
+	 * 
+	 * @param start The start tick of the key
+	 * @param end The end tick of the key
+	 * @param value The value to map the range to
+	 * @return The previous value mapped to the range or null if there
+	 * 		was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long start, long end, V value) {
+		validate(start, end);
+		int i = slot(start, end);
+		
+		if (0 != ends[i]) {
+			V ret = (V) values[i];
+			values[i] = value;
+			return ret;
+		}
+		
+		starts[i] = start;
+		ends[i]   = end;
+		values[i] = value;
+		
+		if (++size > threshold) {
+			rehash();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Maps a range to a value, replacing any value already mapped to it.
+	 * 
+	 * @param r The key
+	 * @param value The value to map the range to
+	 * @return The previous value mapped to the range or null if there
+	 * 		was none
+	 */
+	public V put(TickRangeProvider r, V value) {
+		return put(r.getTick(), r.getEndTick(), value);
+	}
+	
+	/**
+	 * Removes the entry for a range.
+	 * 
+	 * @param start The start tick of the key
+	 * @param end The end tick of the key
+	 * @return The value that was mapped to the range or null if there was
+	 * 		none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long start, long end) {
+		if (0 == end) {
+			return null;
+		}
+		
+		int i = slot(start, end);
+		
+		if (0 == ends[i]) {
+			return null;
+		}
+		
+		V ret = (V) values[i];
+		shiftBack(i);
+		size--;
+		return ret;
+	}
+	
+	/**
+	 * Removes the entry for a range.
+	 * 
+	 * @param r The key
+	 * @return The value that was mapped to a range equal to r or null if
+	 * 		there was none
+	 */
+	public V remove(TickRangeProvider r) {
+		return remove(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * Empties a slot by moving back any later entry in the same run that
+	 * would otherwise no longer be found from its home slot.
+	 * 
+	 * @param hole The slot to empty
+	 */
+	private void shiftBack(int hole) {
+		int mask = ends.length - 1;
+		int i = hole;
+		
+		while (true) {
+			i = (i + 1) & mask;
+			
+			if (0 == ends[i]) {
+				break;
+			}
+			
+			int home = (int) hash(starts[i], ends[i]) & mask;
+			
+			// move the entry unless its home is after the hole, cyclically
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				starts[hole] = starts[i];
+				ends[hole]   = ends[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		
+		ends[hole]   = 0;
+		values[hole] = null;
+	}
+	
+	/**
+	 * Doubles the size of the table and reinserts every entry.
+	 */
+	private void rehash() {
+		long[] oldStarts = starts;
+		long[] oldEnds = ends;
+		Object[] oldValues = values;
+		allocate(2 * oldEnds.length);
+		
+		for (int i = 0; i < oldEnds.length; i++) {
+			if (0 != oldEnds[i]) {
+				int j = slot(oldStarts[i], oldEnds[i]);
+				starts[j] = oldStarts[i];
+				ends[j]   = oldEnds[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+	
+	/**
+	 * Receives the entries of a map.
+	 * 
+	 * @param <V> The type of value
+	 */
+	public interface EntryVisitor<V> {
+		/**
+		 * Called once for each entry.
+		 * 
+		 * @param start The start tick of the key
+		 * @param end The end tick of the key
+		 * @param value The value mapped to the key
+		 */
+		void visit(long start, long end, V value);
+	}
+	
+	/**
+	 * Calls a visitor for every entry in the map, in no particular order.
+	 * The map must not be changed while this runs.
+	 * 
+	 * @param visitor The visitor to call
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryVisitor<? super V> visitor) {
+		for (int i = 0; i < ends.length; i++) {
+			if (0 != ends[i]) {
+				visitor.visit(starts[i], ends[i], (V) values[i]);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @return A new list of the keys in the map, in no particular order
+	 */
+	public PackedTickRangeList keys() {
+		PackedTickRangeList ret = new PackedTickRangeList(size);
+		
+		for (int i = 0; i < ends.length; i++) {
+			if (0 != ends[i]) {
+				ret.add(starts[i], ends[i]);
+			}
+		}
+		
+		return ret;
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("{");
+		
+		forEach(new EntryVisitor<V>() {
+			@Override
+			public void visit(long start, long end, V value) {
+				if (sb.length() > 1) {
+					sb.append(", ");
+				}
+				
+				sb.append('[').append(start).append(", ").append(end).append(")=");
+				sb.append(value);
+			}
+		});
+		
+		return sb.append('}').toString();
+	}
+}
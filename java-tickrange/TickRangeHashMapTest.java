@@ -0,0 +1,99 @@
+package net.tmullin.ipather;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeHashMapTest {
+	@Test public void putGetRemove() {
+		TickRangeHashMap<String> map = new TickRangeHashMap<String>();
+		assertNull(map.put(1, 6, "a"));
+		assertNull(map.put(2, 5, "b"));
+		assertEquals("a", map.put(new TickRange(1, 6, true), "c"));
+		assertEquals("c", map.get(1, 6));
+		assertEquals("b", map.get(new TickRange(2, 5, true)));
+		assertNull(map.get(1, 5));
+		assertNull(map.get(0, 0));
+		assertEquals(2, map.size());
+		assertEquals("c", map.remove(1, 6));
+		assertNull(map.remove(1, 6));
+		assertFalse(map.containsKey(1, 6));
+		assertTrue(map.containsKey(2, 5));
+		assertEquals(1, map.size());
+	}
+	
+	@Test public void nullValues() {
+		TickRangeHashMap<String> map = new TickRangeHashMap<String>();
+		map.put(1, 6, null);
+		assertTrue(map.containsKey(1, 6));
+		assertEquals(1, map.size());
+	}
+	
+	@Test public void clear() {
+		TickRangeHashMap<String> map = new TickRangeHashMap<String>();
+		map.put(1, 6, "a");
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(1, 6));
+	}
+	
+	@Test public void matchesHashMap() {
+		Random random = new Random(1);
+		TickRangeHashMap<Integer> map = new TickRangeHashMap<Integer>();
+		Map<TickRange, Integer> expected = new HashMap<TickRange, Integer>();
+		
+		for (int i = 0; i < 200000; i++) {
+			// a small grid so that keys are reused and runs are long
+			TickRange r = new TickRange(
+				random.nextInt(64) * 120L, (1 + random.nextInt(32)) * 120L);
+			
+			switch (random.nextInt(3)) {
+				case 0:
+					assertEquals(expected.remove(r), map.remove(r));
+					break;
+				
+				default:
+					assertEquals(expected.put(r, i), map.put(r, i));
+					break;
+			}
+			
+			assertEquals(expected.size(), map.size());
+		}
+		
+		for (Map.Entry<TickRange, Integer> e : expected.entrySet()) {
+			assertEquals(e.getValue(), map.get(e.getKey()));
+		}
+		
+		final Map<TickRange, Integer> visited = new HashMap<TickRange, Integer>();
+		map.forEach(new TickRangeHashMap.EntryVisitor<Integer>() {
+			@Override
+			public void visit(long start, long end, Integer value) {
+				assertNull(visited.put(new TickRange(start, end, true), value));
+			}
+		});
+		
+		assertEquals(expected, visited);
+		assertEquals(expected.size(), map.keys().size());
+	}
+	
+	@Test public void hashSeparatesGrid() {
+		// both of these have the same TickRange.hashCode()
+		assertEquals(
+			new TickRange(1, 6, true).hashCode(),
+			new TickRange(2, 5, true).hashCode());
+		assertTrue(TickRangeHashMap.hash(1, 6) != TickRangeHashMap.hash(2, 5));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void putEmpty() {
+		new TickRangeHashMap<String>().put(5, 5, "a");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void putNegative() {
+		new TickRangeHashMap<String>().put(-1, 5, "a");
+	}
+}
@@ -0,0 +1,147 @@
+package net.tmullin.ipather;
+
+/**
+ * A hash set of tick ranges stored as pairs of primitive start and end
+ * ticks, for removing duplicate ranges without the collisions of
+ * {@link TickRange#hashCode()}. It is backed by a
+ * {@link TickRangeHashMap}, so it has the same hashing and probing.
+ * <p>
+ * Ranges must be valid, as checked by the {@link TickRange} constructor.
+ * This class is not thread safe.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeHashSet {
+	
+	private final TickRangeHashMap<Boolean> map;
+	
+	/**
+	 * Creates an empty set.
+	 */
+	public TickRangeHashSet() {
+		map = new TickRangeHashMap<Boolean>();
+	}
+	
+	/**
+	 * Creates an empty set that can hold the specified number of ranges
+	 * before it needs to grow.
+	 * 
+	 * @param expectedSize The number of ranges to make room for
+	 */
+	public TickRangeHashSet(int expectedSize) {
+		map = new TickRangeHashMap<Boolean>(expectedSize);
+	}
+	
+	/**
+	 * Creates a set of the supplied ranges.
+	 * 
+	 * @param ranges The ranges to add
+	 */
+	public TickRangeHashSet(Iterable<? extends TickRangeProvider> ranges) {
+		this();
+		
+		for (TickRangeProvider r : ranges) {
+			add(r);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges in the set
+	 */
+	public int size() {
+		return map.size();
+	}
+	
+	/**
+	 * 
+	 * @return Whether the set has no ranges
+	 */
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+	
+	/**
+	 * Removes all of the ranges from the set.
+	 */
+	public void clear() {
+		map.clear();
+	}
+	
+	/**
+	 * Adds a range to the set.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return Whether the range was added, or false if it was already in
+	 * 		the set
+	 */
+	public boolean add(long start, long end) {
+		return null == map.put(start, end, Boolean.TRUE);
+	}
+	
+	/**
+	 * Adds a range to the set.
+	 * 
+	 * @param r The range to add
+	 * @return Whether the range was added, or false if an equal range was
+	 * 		already in the set
+	 */
+	public boolean add(TickRangeProvider r) {
+		return add(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return Whether the range is in the set
+	 */
+	public boolean contains(long start, long end) {
+		return map.containsKey(start, end);
+	}
+	
+	/**
+	 * 
+	 * @param r The range to look for
+	 * @return Whether a range equal to r is in the set
+	 */
+	public boolean contains(TickRangeProvider r) {
+		return map.containsKey(r);
+	}
+	
+	/**
+	 * Removes a range from the set.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return Whether the range was in the set
+	 */
+	public boolean remove(long start, long end) {
+		return null != map.remove(start, end);
+	}
+	
+	/**
+	 * Removes a range from the set.
+	 * 
+	 * @param r The range to remove
+	 * @return Whether a range equal to r was in the set
+	 */
+	public boolean remove(TickRangeProvider r) {
+		return null != map.remove(r);
+	}
+	
+	/**
+	 * 
+	 * @return A new list of the ranges in the set, in no particular order
+	 */
+	public PackedTickRangeList toList() {
+		return map.keys();
+	}
+	
+	@Override
+	public String toString() {
+		return toList().toString();
+	}
+}
@@ -0,0 +1,41 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeHashSetTest {
+	@Test public void addContainsRemove() {
+		TickRangeHashSet set = new TickRangeHashSet();
+		assertTrue(set.add(1, 6));
+		assertTrue(set.add(new TickRange(2, 5, true)));
+		assertFalse(set.add(1, 6));
+		assertTrue(set.contains(new TickRange(1, 6, true)));
+		assertFalse(set.contains(1, 5));
+		assertTrue(set.remove(1, 6));
+		assertFalse(set.remove(new TickRange(1, 6, true)));
+		assertEquals(1, set.size());
+		assertEquals("[[2, 5)]", set.toString());
+	}
+	
+	@Test public void deduplicates() {
+		Random random = new Random(1);
+		TickRange[] ranges = new TickRange[50000];
+		
+		for (int i = 0; i < ranges.length; i++) {
+			ranges[i] = new TickRange(
+				random.nextInt(100) * 120L, (1 + random.nextInt(16)) * 120L);
+		}
+		
+		Set<TickRange> expected = new HashSet<TickRange>(Arrays.asList(ranges));
+		TickRangeHashSet set = new TickRangeHashSet(Arrays.asList(ranges));
+		assertEquals(expected.size(), set.size());
+		assertEquals(
+			expected,
+			new HashSet<TickRange>(Arrays.asList(set.toList().toArray())));
+	}
+}
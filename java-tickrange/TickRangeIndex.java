@@ -0,0 +1,230 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable index over a collection of {@link TickRangeProvider}s
+ * that finds the ranges overlapping, stabbed by, or contained in a query
+ * without comparing the query against every range.
+ * <p>
+ * The ranges are sorted the same way as
+ * {@link TickRange#compareTo(TickRangeProvider)} and the sorted array is
+ * treated as an implicit balanced binary search tree where the root of
+ * any subarray is its middle element. Each node is augmented with the
+ * highest and lowest end tick in its subtree so that queries can skip
+ * entire subtrees that cannot match. Since only the end ticks are
+ * bounded, a subtree can pass that check and still hold no match, so a
+ * query for k results takes O(min(n, k log n)) time in the worst case
+ * rather than O(log n + k). Matches are returned in sorted order.
+ * <p>
+ * All queries follow the half-open [start, end) convention used by
+ * {@link TickRange}, so ranges that merely touch do not overlap.
+ * 
+ * @author Tim Mullin
+ * 
+ * @param <T> The type of range held in the index
+ */
+public final class TickRangeIndex<T extends TickRangeProvider> {
+	
+	/**
+	 * The indexed ranges in sorted order
+	 */
+	private final List<T> ranges;
+	
+	/**
+	 * The start ticks of the sorted ranges
+	 */
+	private final long[] starts;
+	
+	/**
+	 * The end ticks of the sorted ranges
+	 */
+	private final long[] ends;
+	
+	/**
+	 * The highest end tick in the subtree rooted at each index
+	 */
+	private final long[] maxEnds;
+	
+	/**
+	 * The lowest end tick in the subtree rooted at each index
+	 */
+	private final long[] minEnds;
+	
+	/**
+	 * Creates a new index over the supplied ranges. Later changes to
+	 * the collection are not reflected in the index.
+	 * 
+	 * @param ranges The ranges to index
+	 */
+	public TickRangeIndex(Collection<? extends T> ranges) {
+		List<T> sorted = new ArrayList<T>(ranges);
+		Collections.sort(sorted, TickRange.COMPARATOR);
+		
+		int size = sorted.size();
+		this.ranges  = sorted;
+		this.starts  = new long[size];
+		this.ends    = new long[size];
+		this.maxEnds = new long[size];
+		this.minEnds = new long[size];
+		
+		for (int i = 0; i < size; i++) {
+			T r = sorted.get(i);
+			starts[i] = r.getTick();
+			ends[i]   = r.getEndTick();
+		}
+		
+		augment(0, size);
+	}
+	
+	/**
+	 * Fills in the subtree end ticks for the subarray [lo, hi).
+	 * 
+	 * @param lo The first index of the subarray
+	 * @param hi One past the last index of the subarray
+	 */
+	private void augment(int lo, int hi) {
+		if (lo >= hi) {
+			return;
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		long max = ends[mid];
+		long min = ends[mid];
+		
+		augment(lo, mid);
+		augment(mid + 1, hi);
+		
+		if (lo < mid) {
+			int left = (lo + mid) >>> 1;
+			max = Math.max(max, maxEnds[left]);
+			min = Math.min(min, minEnds[left]);
+		}
+		
+		if (mid + 1 < hi) {
+			int right = (mid + 1 + hi) >>> 1;
+			max = Math.max(max, maxEnds[right]);
+			min = Math.min(min, minEnds[right]);
+		}
+		
+		maxEnds[mid] = max;
+		minEnds[mid] = min;
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges in this index
+	 */
+	public int size() {
+		return starts.length;
+	}
+	
+	/**
+	 * Finds every range in this index that intersects the supplied range,
+	 * as determined by {@link TickRange#intersects(TickRangeProvider)}.
+	 * 
+	 * @param r The range to query with
+	 * @return The intersecting ranges in sorted order
+	 */
+	public List<T> overlapping(TickRangeProvider r) {
+		List<T> ret = new ArrayList<T>();
+		overlapping(0, starts.length, r.getTick(), r.getEndTick(), ret);
+		return ret;
+	}
+	
+	/**
+	 * Finds every range in this index that contains the supplied tick.
+	 * 
+	 * @param tick The tick to query with
+	 * @return The ranges that start at or before the tick and end after
+	 * 		it, in sorted order
+	 */
+	public List<T> stabbing(long tick) {
+		List<T> ret = new ArrayList<T>();
+		
+		if (tick < Long.MAX_VALUE) {
+			overlapping(0, starts.length, tick, tick + 1, ret);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Finds every range in this index that is contained in the supplied
+	 * range, as determined by
+	 * {@link TickRange#contains(TickRangeProvider, TickRangeProvider)}.
+	 * A range equal to the query is considered to be contained in it.
+	 * 
+	 * @param r The range to query with
+	 * @return The contained ranges in sorted order
+	 */
+	public List<T> containedIn(TickRangeProvider r) {
+		List<T> ret = new ArrayList<T>();
+		containedIn(0, starts.length, r.getTick(), r.getEndTick(), ret);
+		return ret;
+	}
+	
+	/**
+	 * Collects the ranges in the subarray [lo, hi) that intersect
+	 * [start, end) in order.
+	 */
+	private void overlapping(int lo, int hi, long start, long end, List<T> out) {
+		if (lo >= hi) {
+			return;
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		
+		// nothing in this subtree ends after the query starts
+		if (maxEnds[mid] <= start) {
+			return;
+		}
+		
+		overlapping(lo, mid, start, end, out);
+		
+		// everything to the right starts at or after this one
+		if (end <= starts[mid]) {
+			return;
+		}
+		
+		if (start < ends[mid]) {
+			out.add(ranges.get(mid));
+		}
+		
+		overlapping(mid + 1, hi, start, end, out);
+	}
+	
+	/**
+	 * Collects the ranges in the subarray [lo, hi) that are contained
+	 * in [start, end) in order.
+	 */
+	private void containedIn(int lo, int hi, long start, long end, List<T> out) {
+		if (lo >= hi) {
+			return;
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		
+		// nothing in this subtree ends before the query does
+		if (end < minEnds[mid]) {
+			return;
+		}
+		
+		// everything to the left starts at or before this one
+		if (start <= starts[mid]) {
+			containedIn(lo, mid, start, end, out);
+			
+			if (ends[mid] <= end) {
+				out.add(ranges.get(mid));
+			}
+		}
+		
+		// everything to the right starts at or after this one
+		if (starts[mid] < end) {
+			containedIn(mid + 1, hi, start, end, out);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeIndexTest {
+	/**
+	 * Helper that creates a list of ranges from pairs of start and end
+	 * ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> ranges(long... ticks) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.add(new TickRange(ticks[i], ticks[i + 1], true));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that creates a list of random ranges.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to create
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> randomRanges(long seed, int count) {
+		Random random = new Random(seed);
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			ret.add(new TickRange(random.nextInt(1000), 1 + random.nextInt(50)));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that finds the expected results of a query by checking every
+	 * range with the pairwise TickRange methods.
+	 * 
+	 * @param ranges The ranges to check
+	 * @param query The range to query with
+	 * @param contained True to look for ranges contained in the query or
+	 * 		false to look for ranges intersecting the query
+	 * @return The matching ranges in sorted order
+	 */
+	private static List<TickRange> pairwise(
+			List<TickRange> ranges, TickRange query, boolean contained) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (TickRange r : ranges) {
+			if (contained ? query.contains(r) : query.intersects(r)) {
+				ret.add(r);
+			}
+		}
+		
+		Collections.sort(ret);
+		return ret;
+	}
+	
+	@Test public void empty() {
+		TickRangeIndex<TickRange> index =
+			new TickRangeIndex<TickRange>(new ArrayList<TickRange>());
+		assertEquals(0, index.size());
+		assertTrue(index.overlapping(new TickRange(0, 10)).isEmpty());
+		assertTrue(index.stabbing(5).isEmpty());
+		assertTrue(index.containedIn(new TickRange(0, 10)).isEmpty());
+	}
+	
+	@Test public void overlappingExcludesTouching() {
+		TickRangeIndex<TickRange> index = new TickRangeIndex<TickRange>(
+			ranges(100, 200, 200, 300, 300, 400));
+		assertEquals(
+			ranges(200, 300),
+			index.overlapping(new TickRange(200, 300, true)));
+	}
+	
+	@Test public void overlappingSorted() {
+		TickRangeIndex<TickRange> index = new TickRangeIndex<TickRange>(
+			ranges(150, 400, 123, 456, 400, 456, 123, 150));
+		assertEquals(
+			ranges(123, 150, 123, 456, 150, 400),
+			index.overlapping(new TickRange(140, 160, true)));
+	}
+	
+	@Test public void stabbingHalfOpen() {
+		TickRangeIndex<TickRange> index = new TickRangeIndex<TickRange>(
+			ranges(100, 200, 200, 300, 150, 250));
+		assertEquals(ranges(150, 250, 200, 300), index.stabbing(200));
+		assertEquals(ranges(100, 200, 150, 250), index.stabbing(199));
+		assertTrue(index.stabbing(300).isEmpty());
+		assertTrue(index.stabbing(Long.MAX_VALUE).isEmpty());
+	}
+	
+	@Test public void containedInIncludesEqual() {
+		TickRangeIndex<TickRange> index = new TickRangeIndex<TickRange>(
+			ranges(123, 456, 150, 400, 150, 457, 122, 400));
+		assertEquals(
+			ranges(123, 456, 150, 400),
+			index.containedIn(new TickRange(123, 456, true)));
+	}
+	
+	@Test public void matchesPairwise() {
+		List<TickRange> ranges = randomRanges(1, 2000);
+		TickRangeIndex<TickRange> index = new TickRangeIndex<TickRange>(ranges);
+		Random random = new Random(2);
+		
+		for (int i = 0; i < 500; i++) {
+			TickRange query = new TickRange(
+				random.nextInt(1100), 1 + random.nextInt(100));
+			assertEquals(pairwise(ranges, query, false), index.overlapping(query));
+			assertEquals(pairwise(ranges, query, true), index.containedIn(query));
+			
+			long tick = query.start;
+			assertEquals(
+				pairwise(ranges, new TickRange(tick, 1), false),
+				index.stabbing(tick));
+		}
+	}
+}
@@ -0,0 +1,348 @@
+package net.tmullin.ipather;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache that hands out one shared {@link TickRange} for each
+ * [start, end) pair, so that music quantized to a grid, where the same
+ * ranges come up over and over, does not hold millions of equal copies.
+ * <p>
+ * The table is a fixed number of buckets of two ranges each, chosen by
+ * mixing the start and end ticks with {@link TickRangeHashMap}'s hash.
+ * Looking up a range reads the bucket without locking, which is safe
+ * because TickRange is immutable. Adding a range locks one of a number
+ * of stripes, each guarding an interleaved share of the buckets, and
+ * puts the range first in its bucket. If the bucket was full, the range
+ * that was added to it longest ago is dropped, so the cache never holds
+ * more than its capacity. Dropped ranges stay valid for whoever already
+ * has them. They are just no longer shared with later callers.
+ * <p>
+ * Setting the system property
+ * <code>net.tmullin.ipather.interner</code> to a capacity creates a
+ * shared interner that {@link TickRange#of(long, long)} goes through.
+ * Without it, that method always creates a new range. A value that is
+ * not a whole number from 0 to 2^30 is ignored with a warning, leaving
+ * the shared interner off.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeInterner {
+	
+	/**
+	 * The name of the system property holding the capacity of the shared
+	 * interner
+	 */
+	public static final String PROPERTY = "net.tmullin.ipather.interner";
+	
+	/**
+	 * The most stripes an interner is split into
+	 */
+	private static final int MAX_STRIPES = 64;
+	
+	/**
+	 * The largest capacity
+	 */
+	private static final int MAX_CAPACITY = 1 << 30;
+	
+	/**
+	 * The interner used by {@link TickRange#of(long, long)}, or null if
+	 * {@link #PROPERTY} is not set to a positive capacity
+	 */
+	static final TickRangeInterner SHARED = create(capacityProperty(System.getProperty(PROPERTY)));
+	
+	/**
+	 * 
+	 * @return The interner that {@link TickRange#of(long, long)} goes
+	 * 		through, or null if there is none
+	 */
+	public static TickRangeInterner shared() {
+		return SHARED;
+	}
+	
+	/**
+	 * Creates an interner if the capacity is positive.
+	 * 
+	 * @param capacity The capacity
+	 * @return The interner or null if the capacity is not positive
+	 */
+	static TickRangeInterner create(int capacity) {
+		return (capacity > 0) ? new TickRangeInterner(capacity) : null;
+	}
+	
+	/**
+	 * Reads the capacity of the shared interner. This must not throw, since
+	 * it runs while the class is initialized, so a value that is not a
+	 * valid capacity is logged and treated as no capacity.
+	 * 
+	 * @param value The value of {@link #PROPERTY}, or null if it is not set
+	 * @return The capacity, or zero for no shared interner
+	 */
+	static int capacityProperty(String value) {
+		int capacity = parseCapacity(value);
+		
+		if (capacity < 0) {
+			System.getLogger(TickRangeInterner.class.getName()).log(System.Logger.Level.WARNING,
+				"Ignoring {0}={1}: the capacity must be a whole number from 0 to 2^30", PROPERTY, value);
+			return 0;
+		}
+		
+		return capacity;
+	}
+	
+	/**
+	 * Parses a capacity for the shared interner.
+	 * 
+	 * @param value The value of {@link #PROPERTY}, or null if it is not set
+	 * @return The capacity, zero if the value is null or empty, or -1 if it
+	 * 		is not a whole number from 0 to 2^30
+	 */
+	static int parseCapacity(String value) {
+		if (null == value || value.isEmpty()) {
+			return 0;
+		}
+		
+		try {
+			int capacity = Integer.parseInt(value.trim());
+			return (0 <= capacity && capacity <= MAX_CAPACITY) ? capacity : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * The ranges, with bucket b in slots 2b and 2b + 1 and the more
+	 * recently added one first
+	 */
+	private final TickRange[] table;
+	
+	/**
+	 * The locks for adding ranges. Bucket b is guarded by
+	 * <code>locks[b &amp; (locks.length - 1)]</code>.
+	 */
+	private final Object[] locks;
+	
+	private final int bucketMask;
+	private final int stripeMask;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	/**
+	 * Creates an empty interner.
+	 * 
+	 * @param capacity The most ranges to hold, which is rounded up to a
+	 * 		power of two no less than two
+	 */
+	public TickRangeInterner(int capacity) {
+		if (capacity < 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+		}
+		
+		int slots = (capacity <= 2) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+		int buckets = slots / 2;
+		int stripes = Math.min(buckets, MAX_STRIPES);
+		
+		table = new TickRange[slots];
+		locks = new Object[stripes];
+		bucketMask = buckets - 1;
+		stripeMask = stripes - 1;
+		
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new Object();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return The most ranges this interner holds at once
+	 */
+	public int capacity() {
+		return table.length;
+	}
+	
+	/**
+	 * Returns the shared range equal to [start, end), adding a new one if
+	 * there is none.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return A range equal to [start, end)
+	 * @throws IllegalArgumentException If the ticks do not make a valid
+	 * 		range, as checked by the {@link TickRange} constructor
+	 */
+	public TickRange intern(long start, long end) {
+		int bucket = (int) TickRangeHashMap.hash(start, end) & bucketMask;
+		TickRange found = find(bucket, start, end);
+		
+		if (null != found) {
+			hits.increment();
+			return found;
+		}
+		
+		return add(bucket, new TickRange(start, end, true));
+	}
+	
+	/**
+	 * Returns the shared range equal to a range. If there is none and the
+	 * range is a TickRange, it becomes the shared one, so nothing is
+	 * allocated.
+	 * 
+	 * @param r The range to look up
+	 * @return A range equal to r
+	 */
+	public TickRange intern(TickRangeProvider r) {
+		long start = r.getTick();
+		long end   = r.getEndTick();
+		int bucket = (int) TickRangeHashMap.hash(start, end) & bucketMask;
+		TickRange found = find(bucket, start, end);
+		
+		if (null != found) {
+			hits.increment();
+			return found;
+		}
+		
+		return add(bucket, TickRange.fromProvider(r));
+	}
+	
+	/**
+	 * Looks for a range in a bucket without locking.
+	 * 
+	 * @param bucket The bucket
+	 * @param start The start tick
+	 * @param end The end tick
+	 * @return The range or null if the bucket does not hold it
+	 */
+	private TickRange find(int bucket, long start, long end) {
+		TickRange r = table[2 * bucket];
+		
+		if (null != r && r.start == start && r.end == end) {
+			return r;
+		}
+		
+		r = table[2 * bucket + 1];
+		
+		if (null != r && r.start == start && r.end == end) {
+			return r;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Adds a range to the front of its bucket, unless another thread added
+	 * an equal one first.
+	 * 
+	 * @param bucket The bucket
+	 * @param r The range to add
+	 * @return The shared range equal to r
+	 */
+	private TickRange add(int bucket, TickRange r) {
+		synchronized (locks[bucket & stripeMask]) {
+			TickRange found = find(bucket, r.start, r.end);
+			
+			if (null != found) {
+				hits.increment();
+				return found;
+			}
+			
+			misses.increment();
+			int slot = 2 * bucket;
+			
+			if (null != table[slot]) {
+				if (null != table[slot + 1]) {
+					evictions.increment();
+				}
+				
+				table[slot + 1] = table[slot];
+			}
+			
+			table[slot] = r;
+			return r;
+		}
+	}
+	
+	/**
+	 * Drops every range. The statistics are not reset.
+	 */
+	public void clear() {
+		for (int stripe = 0; stripe < locks.length; stripe++) {
+			synchronized (locks[stripe]) {
+				for (int bucket = stripe; bucket <= bucketMask; bucket += locks.length) {
+					table[2 * bucket]     = null;
+					table[2 * bucket + 1] = null;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Counts the ranges being held. This reads the whole table, so it is
+	 * meant for reporting rather than for hot paths.
+	 * 
+	 * @return The number of ranges being held
+	 */
+	public int size() {
+		int ret = 0;
+		
+		for (TickRange r : table) {
+			if (null != r) {
+				ret++;
+			}
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * 
+	 * @return The number of lookups that found a shared range
+	 */
+	public long hitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * 
+	 * @return The number of lookups that had to add a range
+	 */
+	public long missCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges dropped to make room for others
+	 */
+	public long evictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * 
+	 * @return The fraction of lookups that found a shared range, or zero
+	 * 		if there have been none
+	 */
+	public double hitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return (0 == total) ? 0 : (double) h / total;
+	}
+	
+	/**
+	 * Sets the hit, miss and eviction counts back to zero.
+	 */
+	public void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+			"TickRangeInterner[capacity %d, hits %d, misses %d, evictions %d]",
+			capacity(), hitCount(), missCount(), evictionCount());
+	}
+}
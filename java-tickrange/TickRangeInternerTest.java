@@ -0,0 +1,163 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeInternerTest {
+	@Test public void sameInstance() {
+		TickRangeInterner interner = new TickRangeInterner(64);
+		TickRange r = interner.intern(120, 240);
+		
+		assertEquals(new TickRange(120, 240, true), r);
+		assertSame(r, interner.intern(120, 240));
+		assertSame(r, interner.intern(new TickRange(120, 240, true)));
+		assertNotSame(r, interner.intern(120, 360));
+		assertEquals(2, interner.hitCount());
+		assertEquals(2, interner.missCount());
+		assertEquals(0.5, interner.hitRate(), 0);
+		assertEquals(2, interner.size());
+	}
+	
+	@Test public void keepsArgument() {
+		TickRangeInterner interner = new TickRangeInterner(64);
+		TickRange r = new TickRange(0, 480, true);
+		
+		assertSame(r, interner.intern(r));
+		assertSame(r, interner.intern(0, 480));
+	}
+	
+	@Test public void capacity() {
+		assertEquals(2, new TickRangeInterner(1).capacity());
+		assertEquals(2, new TickRangeInterner(2).capacity());
+		assertEquals(4, new TickRangeInterner(3).capacity());
+		assertEquals(1024, new TickRangeInterner(1000).capacity());
+		assertEquals(1024, new TickRangeInterner(1024).capacity());
+	}
+	
+	@Test public void bounded() {
+		TickRangeInterner interner = new TickRangeInterner(16);
+		
+		for (int i = 0; i < 1000; i++) {
+			interner.intern(i, i + 1);
+		}
+		
+		assertTrue(interner.size() <= 16);
+		assertEquals(1000, interner.missCount());
+		assertEquals(1000 - interner.size(), interner.evictionCount());
+	}
+	
+	@Test public void evictsOldest() {
+		// a single bucket holds the two most recently added ranges
+		TickRangeInterner interner = new TickRangeInterner(2);
+		TickRange a = interner.intern(0, 1);
+		TickRange b = interner.intern(1, 2);
+		interner.intern(2, 3);
+		
+		assertEquals(1, interner.evictionCount());
+		assertSame(b, interner.intern(1, 2));
+		assertNotSame(a, interner.intern(0, 1));
+	}
+	
+	@Test public void clearAndReset() {
+		TickRangeInterner interner = new TickRangeInterner(8);
+		TickRange r = interner.intern(0, 1);
+		interner.clear();
+		
+		assertEquals(0, interner.size());
+		assertNotSame(r, interner.intern(0, 1));
+		assertEquals(2, interner.missCount());
+		
+		interner.resetStatistics();
+		assertEquals(0, interner.missCount());
+		assertEquals(0, interner.hitRate(), 0);
+	}
+	
+	@Test public void concurrent() throws Exception {
+		// large enough that none of the ranges are evicted
+		final TickRangeInterner interner = new TickRangeInterner(1 << 16);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		
+		try {
+			List<Future<TickRange[]>> futures = new ArrayList<Future<TickRange[]>>();
+			
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(new Callable<TickRange[]>() {
+					@Override
+					public TickRange[] call() {
+						TickRange[] ret = new TickRange[100];
+						
+						for (int i = 0; i < ret.length; i++) {
+							ret[i] = interner.intern(120 * i, 120 * i + 60);
+						}
+						
+						return ret;
+					}
+				}));
+			}
+			
+			TickRange[] first = futures.get(0).get();
+			assertEquals(0, interner.evictionCount());
+			
+			for (Future<TickRange[]> future : futures) {
+				TickRange[] ranges = future.get();
+				
+				for (int i = 0; i < ranges.length; i++) {
+					assertEquals(new TickRange(120 * i, 120 * i + 60, true), ranges[i]);
+					assertSame(first[i], ranges[i]);
+				}
+			}
+			
+			assertEquals(100, interner.missCount());
+			assertEquals(300, interner.hitCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test public void ofWithoutInterner() {
+		assertNull(TickRangeInterner.shared());
+		assertNull(TickRangeInterner.create(0));
+		assertEquals(new TickRange(0, 10, true), TickRange.of(0, 10));
+		assertNotSame(TickRange.of(0, 10), TickRange.of(0, 10));
+	}
+	
+	@Test public void parseCapacity() {
+		assertEquals(0, TickRangeInterner.parseCapacity(null));
+		assertEquals(0, TickRangeInterner.parseCapacity(""));
+		assertEquals(0, TickRangeInterner.parseCapacity("0"));
+		assertEquals(4096, TickRangeInterner.parseCapacity("4096"));
+		assertEquals(4096, TickRangeInterner.parseCapacity(" 4096 "));
+		assertEquals(1 << 30, TickRangeInterner.parseCapacity("1073741824"));
+		assertEquals(4096, TickRangeInterner.capacityProperty("4096"));
+	}
+	
+	@Test public void capacityOutOfRange() {
+		assertEquals(-1, TickRangeInterner.parseCapacity("1073741825"));
+		assertEquals(-1, TickRangeInterner.parseCapacity("2147483647"));
+		assertEquals(-1, TickRangeInterner.parseCapacity("99999999999"));
+		assertEquals(-1, TickRangeInterner.parseCapacity("-1"));
+	}
+	
+	@Test public void capacityNotNumeric() {
+		assertEquals(-1, TickRangeInterner.parseCapacity("abc"));
+		assertEquals(-1, TickRangeInterner.parseCapacity("64k"));
+		assertEquals(-1, TickRangeInterner.parseCapacity("1.5"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidRange() {
+		new TickRangeInterner(8).intern(10, 10);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidCapacity() {
+		new TickRangeInterner(0);
+	}
+}
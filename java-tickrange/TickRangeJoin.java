@@ -0,0 +1,203 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Finds every intersecting pair of ranges between two collections using
+ * a sweep line instead of checking every pair. Both collections are
+ * walked in order of start tick while keeping a list of the ranges from
+ * each side that have started but not yet ended. Each range that starts
+ * is paired with every range still active on the other side, which is
+ * exactly the set of ranges on that side it intersects.
+ * <p>
+ * The pairs found are the same ones for which
+ * {@link TickRange#intersect(TickRangeProvider)} returns a non-null
+ * range, so ranges that merely touch are not paired.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeJoin {
+	
+	private TickRangeJoin() {
+	}
+	
+	/**
+	 * Finds every intersecting pair of ranges between two collections.
+	 * Takes O((n + m) log(n + m) + k) time for k pairs.
+	 * 
+	 * @param as The first collection of ranges, in any order
+	 * @param bs The second collection of ranges, in any order
+	 * @param action Called once for each intersecting pair with the
+	 * 		range from the first collection and the range from the second
+	 */
+	public static <A extends TickRangeProvider, B extends TickRangeProvider>
+	void overlaps(
+			Iterable<? extends A> as, Iterable<? extends B> bs,
+			BiConsumer<? super A, ? super B> action) {
+		overlapsSorted(sorted(as), sorted(bs), action);
+	}
+	
+	/**
+	 * Finds every intersecting pair of ranges between two collections
+	 * that are already sorted by start tick, such as by
+	 * {@link TickRange#COMPARATOR}. Takes O(n + m + k) time for k pairs.
+	 * 
+	 * @param as The first collection of ranges, sorted by start tick
+	 * @param bs The second collection of ranges, sorted by start tick
+	 * @param action Called once for each intersecting pair with the
+	 * 		range from the first collection and the range from the second
+	 * @throws IllegalArgumentException If either collection is not sorted
+	 * 		by start tick
+	 */
+	public static <A extends TickRangeProvider, B extends TickRangeProvider>
+	void overlapsSorted(
+			Iterable<? extends A> as, Iterable<? extends B> bs,
+			BiConsumer<? super A, ? super B> action) {
+		Iterator<? extends A> itA = as.iterator();
+		Iterator<? extends B> itB = bs.iterator();
+		ActiveList<A> activeA = new ActiveList<A>();
+		ActiveList<B> activeB = new ActiveList<B>();
+		A nextA = next(itA, null);
+		B nextB = next(itB, null);
+		
+		while (null != nextA && null != nextB) {
+			if (nextA.getTick() <= nextB.getTick()) {
+				long start = nextA.getTick();
+				activeB.prune(start);
+				
+				for (int i = 0; i < activeB.size; i++) {
+					action.accept(nextA, activeB.get(i));
+				}
+				
+				activeA.add(nextA);
+				nextA = next(itA, nextA);
+			} else {
+				long start = nextB.getTick();
+				activeA.prune(start);
+				
+				for (int i = 0; i < activeA.size; i++) {
+					action.accept(activeA.get(i), nextB);
+				}
+				
+				activeB.add(nextB);
+				nextB = next(itB, nextB);
+			}
+		}
+		
+		// whatever is left on one side can only pair with the other
+		// side's active ranges
+		for (; null != nextA; nextA = next(itA, nextA)) {
+			activeB.prune(nextA.getTick());
+			
+			for (int i = 0; i < activeB.size; i++) {
+				action.accept(nextA, activeB.get(i));
+			}
+		}
+		
+		for (; null != nextB; nextB = next(itB, nextB)) {
+			activeA.prune(nextB.getTick());
+			
+			for (int i = 0; i < activeA.size; i++) {
+				action.accept(activeA.get(i), nextB);
+			}
+		}
+	}
+	
+	/**
+	 * Copies a collection of ranges into a list sorted by
+	 * {@link TickRange#COMPARATOR}.
+	 * 
+	 * @param ranges The ranges to sort
+	 * @return A new sorted list of the ranges
+	 */
+	private static <T extends TickRangeProvider> List<T> sorted(
+			Iterable<? extends T> ranges) {
+		List<T> ret = new ArrayList<T>();
+		
+		for (T r : ranges) {
+			ret.add(r);
+		}
+		
+		Collections.sort(ret, TickRange.COMPARATOR);
+		return ret;
+	}
+	
+	/**
+	 * Gets the next range from an iterator, checking that it does not
+	 * start before the previous one.
+	 * 
+	 * @param it The iterator to read from
+	 * @param prev The previous range from the iterator or null if there
+	 * 		is none
+	 * @return The next range or null if the iterator is exhausted
+	 */
+	private static <T extends TickRangeProvider> T next(
+			Iterator<? extends T> it, T prev) {
+		if (!it.hasNext()) {
+			return null;
+		}
+		
+		T next = it.next();
+		
+		if (null != prev && next.getTick() < prev.getTick()) {
+			throw new IllegalArgumentException(
+				"ranges must be sorted by start tick: " + next + " follows " + prev);
+		}
+		
+		return next;
+	}
+	
+	/**
+	 * The ranges from one side of a join that have started, along with
+	 * their end ticks so that pruning does not go through the
+	 * TickRangeProvider interface.
+	 */
+	private static final class ActiveList<T extends TickRangeProvider> {
+		private Object[] items = new Object[16];
+		private long[] ends = new long[16];
+		private int size;
+		
+		void add(T item) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+				ends  = Arrays.copyOf(ends, size * 2);
+			}
+			
+			items[size] = item;
+			ends[size]  = item.getEndTick();
+			size++;
+		}
+		
+		@SuppressWarnings("unchecked")
+		T get(int index) {
+			return (T) items[index];
+		}
+		
+		/**
+		 * Removes the ranges that end at or before a tick, keeping the
+		 * rest in the order they were added.
+		 * 
+		 * @param tick The tick to prune at
+		 */
+		void prune(long tick) {
+			int kept = 0;
+			
+			for (int i = 0; i < size; i++) {
+				if (tick < ends[i]) {
+					items[kept] = items[i];
+					ends[kept]  = ends[i];
+					kept++;
+				}
+			}
+			
+			Arrays.fill(items, kept, size, null);
+			size = kept;
+		}
+	}
+}
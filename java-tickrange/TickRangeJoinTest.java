@@ -0,0 +1,145 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeJoinTest {
+	/**
+	 * Helper that creates a list of ranges from pairs of start and end
+	 * ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> ranges(long... ticks) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.add(new TickRange(ticks[i], ticks[i + 1], true));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that creates a list of random ranges.
+	 * 
+	 * @param random The random number generator
+	 * @param count The number of ranges to create
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> randomRanges(Random random, int count) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			ret.add(new TickRange(random.nextInt(1000), 1 + random.nextInt(60)));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that joins two lists and collects the pairs as strings.
+	 * 
+	 * @param as The first list
+	 * @param bs The second list
+	 * @param sorted Whether to use the variant for sorted input
+	 * @return The pairs found, each formatted as "a b"
+	 */
+	private static List<String> join(
+			List<TickRange> as, List<TickRange> bs, boolean sorted) {
+		final List<String> ret = new ArrayList<String>();
+		BiConsumer<TickRange, TickRange> action = new BiConsumer<TickRange, TickRange>() {
+			@Override
+			public void accept(TickRange a, TickRange b) {
+				ret.add(a + " " + b);
+			}
+		};
+		
+		if (sorted) {
+			TickRangeJoin.overlapsSorted(as, bs, action);
+		} else {
+			TickRangeJoin.overlaps(as, bs, action);
+		}
+		
+		Collections.sort(ret);
+		return ret;
+	}
+	
+	/**
+	 * Helper that finds the pairs two lists should join on by
+	 * intersecting every pair.
+	 * 
+	 * @param as The first list
+	 * @param bs The second list
+	 * @return The intersecting pairs, each formatted as "a b"
+	 */
+	private static List<String> pairwise(List<TickRange> as, List<TickRange> bs) {
+		List<String> ret = new ArrayList<String>();
+		
+		for (TickRange a : as) {
+			for (TickRange b : bs) {
+				if (null != a.intersect(b)) {
+					ret.add(a + " " + b);
+				}
+			}
+		}
+		
+		Collections.sort(ret);
+		return ret;
+	}
+	
+	@Test public void touchingNotPaired() {
+		assertEquals(
+			Arrays.asList("[100, 200) [150, 200)"),
+			join(ranges(100, 200), ranges(50, 100, 150, 200, 200, 250), false));
+	}
+	
+	@Test public void sameStart() {
+		assertEquals(
+			Arrays.asList("[123, 400) [123, 456)"),
+			join(ranges(123, 400), ranges(123, 456), true));
+	}
+	
+	@Test public void empty() {
+		assertTrue(join(ranges(), ranges(123, 456), false).isEmpty());
+		assertTrue(join(ranges(123, 456), ranges(), false).isEmpty());
+	}
+	
+	@Test public void matchesPairwise() {
+		Random random = new Random(1);
+		
+		for (int i = 0; i < 50; i++) {
+			List<TickRange> as = randomRanges(random, random.nextInt(200));
+			List<TickRange> bs = randomRanges(random, random.nextInt(200));
+			List<String> expected = pairwise(as, bs);
+			assertEquals(expected, join(as, bs, false));
+			
+			Collections.sort(as);
+			Collections.sort(bs);
+			assertEquals(expected, join(as, bs, true));
+		}
+	}
+	
+	@Test public void reportsEachPairOnce() {
+		List<TickRange> as = ranges(100, 200, 100, 200);
+		List<TickRange> bs = ranges(150, 250);
+		Set<String> unique = new HashSet<String>(join(as, bs, true));
+		assertEquals(1, unique.size());
+		assertEquals(2, join(as, bs, true).size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unsortedInput() {
+		join(ranges(200, 300, 100, 150), ranges(100, 400), true);
+	}
+}
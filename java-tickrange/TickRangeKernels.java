@@ -0,0 +1,221 @@
+package net.tmullin.ipather;
+
+/**
+ * Bulk tests of many ranges against a single query range, for filtering
+ * ranges stored as parallel arrays of start and end ticks such as those
+ * behind a {@link PackedTickRangeList}.
+ * <p>
+ * The implementation that uses the incubating Vector API is only
+ * compiled by the <code>vector</code> profile, so that the default build
+ * and whoever uses the jar do not need the incubator module. When it was
+ * compiled and the JVM was started with
+ * <code>--add-modules jdk.incubator.vector</code>, the tests are done
+ * several ranges at a time with the Vector API. Otherwise they fall back
+ * to a scalar loop. Both give exactly the same
+ * results as calling {@link TickRange#intersects(TickRangeProvider)} and
+ * {@link TickRange#contains(TickRangeProvider, TickRangeProvider)} on
+ * each range, including for pairs of ticks that would not make a valid
+ * range. Setting the system property
+ * <code>net.tmullin.ipather.kernels</code> to <code>scalar</code> forces
+ * the fallback.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeKernels {
+	
+	/**
+	 * The implementation of the kernels. There is one implementation that
+	 * uses the Vector API and one that does not.
+	 */
+	interface Impl {
+		/**
+		 * @see TickRangeKernels#intersectsMask(long[], long[], int, long, long, long[])
+		 */
+		int intersectsMask(
+				long[] starts, long[] ends, int size,
+				long qStart, long qEnd, long[] maskOut);
+		
+		/**
+		 * @see TickRangeKernels#containsCount(long[], long[], int, long, long)
+		 */
+		int containsCount(
+				long[] starts, long[] ends, int size, long qStart, long qEnd);
+	}
+	
+	/**
+	 * The kernels as plain loops over the arrays
+	 */
+	static final Impl SCALAR = new Impl() {
+		@Override
+		public int intersectsMask(
+				long[] starts, long[] ends, int size,
+				long qStart, long qEnd, long[] maskOut) {
+			int count = 0;
+			
+			for (int w = 0; w << 6 < size; w++) {
+				int from = w << 6;
+				int to   = Math.min(size, from + 64);
+				long word = 0;
+				
+				for (int i = from; i < to; i++) {
+					long start = starts[i];
+					
+					// the same test as TickRange.intersects() with this
+					// range as the receiver
+					boolean hit = (start <= qStart) ? qStart < ends[i] : start < qEnd;
+					word |= (hit ? 1L : 0L) << (i - from);
+				}
+				
+				maskOut[w] = word;
+				count += Long.bitCount(word);
+			}
+			
+			return count;
+		}
+		
+		@Override
+		public int containsCount(
+				long[] starts, long[] ends, int size, long qStart, long qEnd) {
+			int count = 0;
+			
+			for (int i = 0; i < size; i++) {
+				count += (starts[i] <= qStart && qEnd <= ends[i]) ? 1 : 0;
+			}
+			
+			return count;
+		}
+	};
+	
+	/**
+	 * The name of the class implementing the kernels with the Vector API,
+	 * which is only loaded by name so that this class still works when the
+	 * incubator module is missing
+	 */
+	private static final String VECTOR_IMPL =
+		"net.tmullin.ipather.VectorTickRangeKernels";
+	
+	/**
+	 * The implementation used by the static methods
+	 */
+	private static final Impl IMPL =
+		"scalar".equals(System.getProperty("net.tmullin.ipather.kernels"))
+		? SCALAR
+		: loadVector();
+	
+	private TickRangeKernels() {
+	}
+	
+	/**
+	 * Loads the implementation that uses the Vector API.
+	 * 
+	 * @return The vector implementation if it was compiled and the
+	 * 		incubator module is available, otherwise {@link #SCALAR}
+	 */
+	static Impl loadVector() {
+		try {
+			return (Impl) Class.forName(VECTOR_IMPL).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return SCALAR;
+		} catch (LinkageError e) {
+			// thrown when jdk.incubator.vector is not in the module graph
+			return SCALAR;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return Whether the kernels are using the Vector API
+	 */
+	public static boolean isVectorized() {
+		return SCALAR != IMPL;
+	}
+	
+	/**
+	 * Tests which of the first <code>size</code> ranges intersect the
+	 * query range [qStart, qEnd), as determined by
+	 * {@link TickRange#intersects(TickRangeProvider)}. The results are
+	 * written as a bitmask with the result for range i in bit
+	 * <code>i % 64</code> of <code>maskOut[i / 64]</code>. The bits past
+	 * <code>size</code> in the last word written are cleared and the words
+	 * after it are left alone.
+	 * 
+	 * @param starts The start ticks of the ranges
+	 * @param ends The end ticks of the ranges
+	 * @param size The number of ranges to test
+	 * @param qStart The start tick of the query range
+	 * @param qEnd The end tick of the query range
+	 * @param maskOut The buffer to write the bitmask to, which must have
+	 * 		room for at least <code>(size + 63) / 64</code> values
+	 * @return The number of ranges that intersect the query range
+	 */
+	public static int intersectsMask(
+			long[] starts, long[] ends, int size,
+			long qStart, long qEnd, long[] maskOut) {
+		checkArrays(starts, ends, size);
+		
+		if (maskOut.length < (size + 63) >>> 6) {
+			throw new IllegalArgumentException(
+				"maskOut must have room for " + ((size + 63) >>> 6) + " values");
+		}
+		
+		return IMPL.intersectsMask(starts, ends, size, qStart, qEnd, maskOut);
+	}
+	
+	/**
+	 * Tests which ranges in a list intersect the query range.
+	 * 
+	 * @param list The ranges to test
+	 * @param q The query range
+	 * @param maskOut The buffer to write the bitmask to
+	 * @return The number of ranges that intersect the query range
+	 * @see #intersectsMask(long[], long[], int, long, long, long[])
+	 */
+	public static int intersectsMask(
+			PackedTickRangeList list, TickRangeProvider q, long[] maskOut) {
+		return intersectsMask(
+			list.startArray(), list.endArray(), list.size(),
+			q.getTick(), q.getEndTick(), maskOut);
+	}
+	
+	/**
+	 * Counts how many of the first <code>size</code> ranges contain the
+	 * query range [qStart, qEnd), as determined by
+	 * {@link TickRange#contains(TickRangeProvider, TickRangeProvider)}
+	 * with the stored range first. Passing <code>qEnd = qStart + 1</code>
+	 * counts the ranges containing a single tick.
+	 * 
+	 * @param starts The start ticks of the ranges
+	 * @param ends The end ticks of the ranges
+	 * @param size The number of ranges to test
+	 * @param qStart The start tick of the query range
+	 * @param qEnd The end tick of the query range
+	 * @return The number of ranges that contain the query range
+	 */
+	public static int containsCount(
+			long[] starts, long[] ends, int size, long qStart, long qEnd) {
+		checkArrays(starts, ends, size);
+		return IMPL.containsCount(starts, ends, size, qStart, qEnd);
+	}
+	
+	/**
+	 * Counts how many ranges in a list contain the query range.
+	 * 
+	 * @param list The ranges to test
+	 * @param q The query range
+	 * @return The number of ranges that contain the query range
+	 * @see #containsCount(long[], long[], int, long, long)
+	 */
+	public static int containsCount(PackedTickRangeList list, TickRangeProvider q) {
+		return containsCount(
+			list.startArray(), list.endArray(), list.size(),
+			q.getTick(), q.getEndTick());
+	}
+	
+	private static void checkArrays(long[] starts, long[] ends, int size) {
+		if (size < 0 || size > starts.length || size > ends.length) {
+			throw new IllegalArgumentException(
+				"size must be between 0 and the length of the arrays");
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package net.tmullin.ipather;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeKernelsTest {
+	/**
+	 * Helper that wraps a pair of ticks as a provider without validating
+	 * them, so that the kernels can be checked against TickRange on pairs
+	 * that are not valid ranges.
+	 */
+	private static TickRangeProvider provider(final long start, final long end) {
+		return new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return start;
+			}
+			
+			@Override
+			public long getEndTick() {
+				return end;
+			}
+			
+			@Override
+			public long getTickLength() {
+				return end - start;
+			}
+		};
+	}
+	
+	/**
+	 * Helper that checks an implementation against TickRange on random
+	 * ticks, with every size up to a limit so that each way of splitting
+	 * the ranges into vectors and words is covered.
+	 * 
+	 * @param impl The implementation to check
+	 * @param seed The seed for the random number generator
+	 * @param valid Whether to only use pairs of ticks that are valid
+	 * 		ranges
+	 */
+	static void check(TickRangeKernels.Impl impl, long seed, boolean valid) {
+		Random random = new Random(seed);
+		
+		for (int size = 0; size <= 200; size++) {
+			long[] starts = new long[size + 3];
+			long[] ends = new long[size + 3];
+			
+			for (int i = 0; i < starts.length; i++) {
+				starts[i] = random.nextInt(40);
+				ends[i] = valid ? starts[i] + 1 + random.nextInt(20) : random.nextInt(40);
+			}
+			
+			long qStart = random.nextInt(40);
+			long qEnd = valid ? qStart + 1 + random.nextInt(20) : random.nextInt(40);
+			TickRange query = valid ? new TickRange(qStart, qEnd, true) : null;
+			long[] mask = new long[(size + 63) / 64 + 1];
+			mask[mask.length - 1] = -1;
+			int expectedHits = 0;
+			int expectedContains = 0;
+			
+			int hits = impl.intersectsMask(starts, ends, size, qStart, qEnd, mask);
+			
+			for (int i = 0; i < size; i++) {
+				TickRangeProvider r = provider(starts[i], ends[i]);
+				// TickRange.intersects() with the stored range as the receiver
+				boolean expected = (starts[i] <= qStart) ? qStart < ends[i] : starts[i] < qEnd;
+				
+				if (null != query) {
+					assertEquals(expected, new TickRange(starts[i], ends[i], true).intersects(query));
+				}
+				
+				assertEquals("size " + size + " index " + i,
+					expected, 0 != (mask[i >>> 6] & (1L << i)));
+				expectedHits += expected ? 1 : 0;
+				expectedContains += TickRange.contains(r, provider(qStart, qEnd)) ? 1 : 0;
+			}
+			
+			if (0 != (size & 63)) {
+				assertEquals(0, mask[size >>> 6] >>> (size & 63));
+			}
+			
+			assertEquals(-1, mask[mask.length - 1]);
+			assertEquals(expectedHits, hits);
+			assertEquals(expectedContains,
+				impl.containsCount(starts, ends, size, qStart, qEnd));
+		}
+	}
+	
+	@Test public void scalarValid() {
+		check(TickRangeKernels.SCALAR, 1, true);
+	}
+	
+	@Test public void scalarInvalid() {
+		check(TickRangeKernels.SCALAR, 2, false);
+	}
+	
+	@Test public void packedList() {
+		PackedTickRangeList list = new PackedTickRangeList();
+		list.add(0, 100);
+		list.add(100, 200);
+		list.add(50, 150);
+		long[] mask = new long[1];
+		
+		assertEquals(2, TickRangeKernels.intersectsMask(list, new TickRange(100, 120, true), mask));
+		assertEquals(6, mask[0]);
+		assertEquals(2, TickRangeKernels.containsCount(list, new TickRange(100, 120, true)));
+		assertEquals(0, TickRangeKernels.containsCount(list, new TickRange(0, 200, true)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void maskTooShort() {
+		TickRangeKernels.intersectsMask(new long[65], new long[65], 65, 0, 1, new long[1]);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void sizePastArrays() {
+		TickRangeKernels.containsCount(new long[4], new long[3], 4, 0, 1);
+	}
+}
@@ -0,0 +1,253 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent sorted map from {@link TickRange}s to values that can be
+ * updated and queried by several threads at once without locking, such
+ * as when recording notes live while they are played back.
+ * <p>
+ * The entries are held in a {@link ConcurrentSkipListMap} ordered by
+ * {@link TickRange#compareTo(TickRangeProvider)}, so insertion, removal
+ * and lookups are lock-free. To find the ranges overlapping a query
+ * without scanning every range that starts before it, the map keeps
+ * track of the longest range ever added. Any range that overlaps
+ * [start, end) must then start after <code>start - maxLength</code> and
+ * before <code>end</code>, which bounds the part of the map to scan.
+ * The longest length only ever grows, even when ranges are removed,
+ * so it is always safe to use but may make the scan wider than needed
+ * after long ranges are removed. It is raised before a range is added to
+ * the map, so any query that can see a range also sees its length.
+ * <p>
+ * Like the skip list itself, the queries are weakly consistent. They
+ * never throw {@link java.util.ConcurrentModificationException} and will
+ * see every entry that was in the map for the whole query, but entries
+ * added or removed while the query runs may or may not be seen.
+ * <p>
+ * Null values are not allowed.
+ * 
+ * @author Tim Mullin
+ * 
+ * @param <V> The type of value mapped to each range
+ */
+public final class TickRangeMap<V> {
+	
+	private final ConcurrentSkipListMap<TickRange, V> map =
+		new ConcurrentSkipListMap<TickRange, V>();
+	
+	/**
+	 * The length of the longest range ever added to this map
+	 */
+	private final AtomicLong maxLength = new AtomicLong();
+	
+	/**
+	 * Maps a range to a value, replacing any value already mapped to an
+	 * equal range.
+	 * 
+	 * @param r The range to map
+	 * @param value The value to map it to
+	 * @return The previous value mapped to the range or null if there
+	 * 		was none
+	 */
+	public V put(TickRangeProvider r, V value) {
+		TickRange key = key(r);
+		return map.put(key, value);
+	}
+	
+	/**
+	 * Maps a range to a value only if it is not already mapped.
+	 * 
+	 * @param r The range to map
+	 * @param value The value to map it to
+	 * @return The value already mapped to the range or null if the new
+	 * 		value was added
+	 */
+	public V putIfAbsent(TickRangeProvider r, V value) {
+		TickRange key = key(r);
+		return map.putIfAbsent(key, value);
+	}
+	
+	/**
+	 * Converts a range into a key, first raising the longest length if
+	 * the range is longer than any before it.
+	 * 
+	 * @param r The range being added
+	 * @return The key for the range
+	 */
+	private TickRange key(TickRangeProvider r) {
+		TickRange key = TickRange.fromProvider(r);
+		long length = key.getTickLength();
+		long current = maxLength.get();
+		
+		while (current < length && !maxLength.compareAndSet(current, length)) {
+			current = maxLength.get();
+		}
+		
+		return key;
+	}
+	
+	/**
+	 * 
+	 * @param r The range to look up
+	 * @return The value mapped to a range equal to r or null if there
+	 * 		is none
+	 */
+	public V get(TickRangeProvider r) {
+		return map.get(TickRange.fromProvider(r));
+	}
+	
+	/**
+	 * 
+	 * @param r The range to look up
+	 * @return Whether a range equal to r is mapped
+	 */
+	public boolean containsKey(TickRangeProvider r) {
+		return map.containsKey(TickRange.fromProvider(r));
+	}
+	
+	/**
+	 * Removes the mapping for a range.
+	 * 
+	 * @param r The range to remove
+	 * @return The value that was mapped to the range or null if there
+	 * 		was none
+	 */
+	public V remove(TickRangeProvider r) {
+		return map.remove(TickRange.fromProvider(r));
+	}
+	
+	/**
+	 * Removes the mapping for a range only if it is mapped to the
+	 * supplied value.
+	 * 
+	 * @param r The range to remove
+	 * @param value The value the range must be mapped to
+	 * @return Whether the mapping was removed
+	 */
+	public boolean remove(TickRangeProvider r, V value) {
+		return map.remove(TickRange.fromProvider(r), value);
+	}
+	
+	/**
+	 * Returns the number of mappings. Like
+	 * {@link ConcurrentSkipListMap#size()}, this has to count every entry
+	 * and may be inaccurate if the map is being changed.
+	 * 
+	 * @return The number of mappings in this map
+	 */
+	public int size() {
+		return map.size();
+	}
+	
+	/**
+	 * 
+	 * @return Whether this map has no mappings
+	 */
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+	
+	/**
+	 * Removes every mapping. The longest length is kept.
+	 */
+	public void clear() {
+		map.clear();
+	}
+	
+	/**
+	 * Finds every mapping whose range intersects the supplied range, as
+	 * determined by {@link TickRange#intersects(TickRangeProvider)}.
+	 * 
+	 * @param r The range to query with
+	 * @return A snapshot of the matching mappings in sorted order
+	 */
+	public List<Map.Entry<TickRange, V>> overlapping(TickRangeProvider r) {
+		long start = r.getTick();
+		long end   = r.getEndTick();
+		List<Map.Entry<TickRange, V>> ret = new ArrayList<Map.Entry<TickRange, V>>();
+		
+		// nothing can start before this and still end after start
+		long from = Math.max(0, start - maxLength.get() + 1);
+		
+		for (Map.Entry<TickRange, V> e : startingIn(from, end).entrySet()) {
+			if (start < e.getKey().end) {
+				ret.add(e);
+			}
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Finds the mapping with the greatest range that starts at or before
+	 * a tick. If several ranges start on the same tick, the longest one
+	 * is returned.
+	 * 
+	 * @param tick The tick to search from
+	 * @return The mapping or null if no range starts at or before the tick
+	 */
+	public Map.Entry<TickRange, V> floor(long tick) {
+		if (tick < 0) {
+			return null;
+		}
+		
+		if (Long.MAX_VALUE == tick) {
+			return map.lastEntry();
+		}
+		
+		return map.floorEntry(new TickRange(tick, Long.MAX_VALUE, true));
+	}
+	
+	/**
+	 * Finds the mapping with the least range that starts at or after a
+	 * tick. If several ranges start on the same tick, the shortest one is
+	 * returned.
+	 * 
+	 * @param tick The tick to search from
+	 * @return The mapping or null if no range starts at or after the tick
+	 */
+	public Map.Entry<TickRange, V> ceiling(long tick) {
+		if (tick < 0) {
+			return map.firstEntry();
+		}
+		
+		if (Long.MAX_VALUE == tick) {
+			return null;
+		}
+		
+		return map.ceilingEntry(new TickRange(tick, 1));
+	}
+	
+	/**
+	 * Returns a live view of the mappings whose ranges start in
+	 * [from, to).
+	 * 
+	 * @param from The lowest start tick to include
+	 * @param to One past the highest start tick to include
+	 * @return The view of the mappings
+	 */
+	private ConcurrentNavigableMap<TickRange, V> startingIn(long from, long to) {
+		if (to <= from) {
+			return new ConcurrentSkipListMap<TickRange, V>();
+		}
+		
+		// the shortest range starting on a tick sorts before the others
+		TickRange fromKey = new TickRange(from, 1);
+		
+		if (Long.MAX_VALUE == to) {
+			return map.tailMap(fromKey, true);
+		}
+		
+		return map.subMap(fromKey, true, new TickRange(to, 1), false);
+	}
+	
+	@Override
+	public String toString() {
+		return map.toString();
+	}
+}
@@ -0,0 +1,253 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeMapTest {
+	/**
+	 * Helper that creates a map from pairs of start and end ticks, mapping
+	 * each range to its position in the arguments.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The map of ranges
+	 */
+	private static TickRangeMap<Integer> map(long... ticks) {
+		TickRangeMap<Integer> ret = new TickRangeMap<Integer>();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.put(new TickRange(ticks[i], ticks[i + 1], true), i / 2);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that extracts the ranges from a list of mappings.
+	 * 
+	 * @param entries The mappings
+	 * @return The ranges in the same order
+	 */
+	private static List<TickRange> keys(List<Map.Entry<TickRange, Integer>> entries) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (Map.Entry<TickRange, Integer> e : entries) {
+			ret.add(e.getKey());
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that creates a list of ranges from pairs of start and end
+	 * ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> ranges(long... ticks) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.add(new TickRange(ticks[i], ticks[i + 1], true));
+		}
+		
+		return ret;
+	}
+	
+	@Test public void putGetRemove() {
+		TickRangeMap<Integer> map = map(123, 456, 150, 400);
+		assertEquals(2, map.size());
+		assertEquals(Integer.valueOf(1), map.get(new TickRange(150, 400, true)));
+		assertEquals(Integer.valueOf(0), map.put(new TickRange(123, 456, true), 5));
+		assertEquals(Integer.valueOf(5), map.putIfAbsent(new TickRange(123, 333), 6));
+		assertFalse(map.remove(new TickRange(150, 400, true), 5));
+		assertEquals(Integer.valueOf(1), map.remove(new TickRange(150, 400, true)));
+		assertNull(map.get(new TickRange(150, 400, true)));
+		assertEquals(1, map.size());
+	}
+	
+	@Test public void overlappingExcludesTouching() {
+		TickRangeMap<Integer> map = map(100, 200, 200, 300, 300, 400);
+		assertEquals(
+			ranges(200, 300),
+			keys(map.overlapping(new TickRange(200, 300, true))));
+	}
+	
+	@Test public void overlappingFindsLongRanges() {
+		TickRangeMap<Integer> map = map(0, 1000, 400, 410, 500, 510, 900, 910);
+		assertEquals(
+			ranges(0, 1000, 500, 510),
+			keys(map.overlapping(new TickRange(505, 600, true))));
+	}
+	
+	@Test public void overlappingToEnd() {
+		TickRangeMap<Integer> map = map(100, 200, 300, Long.MAX_VALUE);
+		assertEquals(
+			ranges(300, Long.MAX_VALUE),
+			keys(map.overlapping(new TickRange(1000, Long.MAX_VALUE, true))));
+	}
+	
+	@Test public void floor() {
+		TickRangeMap<Integer> map = map(100, 200, 100, 300, 400, 500);
+		assertNull(map.floor(-1));
+		assertNull(map.floor(99));
+		assertEquals(new TickRange(100, 300, true), map.floor(100).getKey());
+		assertEquals(new TickRange(100, 300, true), map.floor(399).getKey());
+		assertEquals(new TickRange(400, 500, true), map.floor(Long.MAX_VALUE).getKey());
+	}
+	
+	@Test public void ceiling() {
+		TickRangeMap<Integer> map = map(100, 200, 100, 300, 400, 500);
+		assertEquals(new TickRange(100, 200, true), map.ceiling(-1).getKey());
+		assertEquals(new TickRange(100, 200, true), map.ceiling(100).getKey());
+		assertEquals(new TickRange(400, 500, true), map.ceiling(101).getKey());
+		assertNull(map.ceiling(401));
+		assertNull(map.ceiling(Long.MAX_VALUE));
+	}
+	
+	@Test public void matchesPairwise() {
+		Random random = new Random(1);
+		TickRangeMap<Integer> map = new TickRangeMap<Integer>();
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < 2000; i++) {
+			TickRange r = new TickRange(random.nextInt(1000), 1 + random.nextInt(50));
+			
+			if (null == map.put(r, i)) {
+				ranges.add(r);
+			}
+		}
+		
+		TickRangeIndex<TickRange> index = new TickRangeIndex<TickRange>(ranges);
+		
+		for (int i = 0; i < 500; i++) {
+			TickRange query = new TickRange(random.nextInt(1100), 1 + random.nextInt(100));
+			assertEquals(index.overlapping(query), keys(map.overlapping(query)));
+		}
+	}
+	
+	/**
+	 * Several writers add and remove short-lived ranges while readers
+	 * query the map. A set of ranges added before the threads start is
+	 * never removed, so every query must find all of those that overlap
+	 * it, and every range it returns must overlap the query.
+	 */
+	@Test public void concurrentStress() throws Exception {
+		final TickRangeMap<Integer> map = new TickRangeMap<Integer>();
+		final List<TickRange> fixed = new ArrayList<TickRange>();
+		Random random = new Random(2);
+		
+		for (int i = 0; i < 1000; i++) {
+			TickRange r = new TickRange(random.nextInt(100000), 1 + random.nextInt(500));
+			
+			if (null == map.put(r, -1)) {
+				fixed.add(r);
+			}
+		}
+		
+		final TickRangeIndex<TickRange> index = new TickRangeIndex<TickRange>(fixed);
+		final int writers = 4;
+		final int readers = 4;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+		List<Future<Integer>> writes = new ArrayList<Future<Integer>>();
+		List<Future<Integer>> reads = new ArrayList<Future<Integer>>();
+		
+		for (int w = 0; w < writers; w++) {
+			final int id = w;
+			writes.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					Random random = new Random(100 + id);
+					List<TickRange> added = new ArrayList<TickRange>();
+					start.await();
+					
+					for (int i = 0; i < 20000; i++) {
+						// one writer adds long ranges to keep raising the longest length
+						TickRange r = new TickRange(
+							random.nextInt(100000), 1 + random.nextInt(id == 0 ? 5000 : 50));
+						
+						if (null == map.putIfAbsent(r, id)) {
+							added.add(r);
+						}
+						
+						if (added.size() > 100) {
+							map.remove(added.remove(random.nextInt(added.size())), id);
+						}
+					}
+					
+					return added.size();
+				}
+			}));
+		}
+		
+		for (int r = 0; r < readers; r++) {
+			final int id = r;
+			reads.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					Random random = new Random(200 + id);
+					int queries = 0;
+					start.await();
+					
+					while (writing.get() || 0 == queries) {
+						TickRange query = new TickRange(
+							random.nextInt(100000), 1 + random.nextInt(1000));
+						List<TickRange> found = keys(map.overlapping(query));
+						
+						for (TickRange f : found) {
+							assertTrue(query.intersects(f));
+						}
+						
+						List<TickRange> expected = index.overlapping(query);
+						assertTrue(found.containsAll(expected));
+						
+						// a writer may remove any other range before floor() runs
+						assertTrue(expected.isEmpty() || null != map.floor(expected.get(0).start));
+						queries++;
+					}
+					
+					return queries;
+				}
+			}));
+		}
+		
+		start.countDown();
+		int expected = fixed.size();
+		
+		try {
+			for (Future<Integer> f : writes) {
+				expected += f.get(60, TimeUnit.SECONDS);
+			}
+			
+			writing.set(false);
+			
+			for (Future<Integer> f : reads) {
+				assertTrue(f.get(60, TimeUnit.SECONDS) > 0);
+			}
+		} finally {
+			// stop the readers even if a writer failed
+			writing.set(false);
+			executor.shutdown();
+		}
+		
+		assertEquals(expected, map.size());
+		
+		for (TickRange r : fixed) {
+			assertEquals(Integer.valueOf(-1), map.get(r));
+		}
+	}
+}
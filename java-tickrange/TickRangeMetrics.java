@@ -0,0 +1,91 @@
+package net.tmullin.ipather;
+
+/**
+ * A sink for counts of what the hot paths of {@link TickRange} do, such
+ * as how often {@link TickRange#fromProvider(TickRangeProvider)} has to
+ * create a new range.
+ * <p>
+ * Metrics are off unless the system property
+ * <code>net.tmullin.ipather.metrics</code> is set when TickRange is
+ * loaded. Setting it to <code>counters</code> installs a
+ * {@link TickRangeCounters} registered with the platform MBean server,
+ * and setting it to the name of a class implementing this interface with
+ * a public no-argument constructor installs an instance of that class.
+ * Any other value makes loading TickRange fail with an error naming it.
+ * The sink is kept in a static final field, so when metrics are off the
+ * JIT removes the calls entirely.
+ * <p>
+ * The methods are called on whatever thread is using TickRange, so
+ * implementations must be thread-safe and should be cheap.
+ * 
+ * @author Tim Mullin
+ * @see TickRangeCounters
+ * 
+ */
+public interface TickRangeMetrics {
+	
+	/**
+	 * The name of the system property that selects the sink
+	 */
+	public static final String PROPERTY = "net.tmullin.ipather.metrics";
+	
+	/**
+	 * The value of {@link #PROPERTY} that selects a
+	 * {@link TickRangeCounters}
+	 */
+	public static final String COUNTERS = "counters";
+	
+	/**
+	 * The operation found no intersection and returned null
+	 */
+	public static final int RESULT_NULL = 0;
+	
+	/**
+	 * The operation returned the range it was called on
+	 */
+	public static final int RESULT_THIS = 1;
+	
+	/**
+	 * The operation returned its argument
+	 */
+	public static final int RESULT_ARGUMENT = 2;
+	
+	/**
+	 * The operation created a new TickRange
+	 */
+	public static final int RESULT_NEW = 3;
+	
+	/**
+	 * Called for each call to
+	 * {@link TickRange#fromProvider(TickRangeProvider)}.
+	 * 
+	 * @param allocated Whether a new TickRange was created, rather than
+	 * 		the argument being returned
+	 */
+	public void fromProvider(boolean allocated);
+	
+	/**
+	 * Called for each call to {@link TickRange#intersect(TickRangeProvider)}.
+	 * 
+	 * @param result One of {@link #RESULT_NULL}, {@link #RESULT_THIS},
+	 * 		{@link #RESULT_ARGUMENT} or {@link #RESULT_NEW}
+	 */
+	public void intersect(int result);
+	
+	/**
+	 * Called for each call to {@link TickRange#union(TickRangeProvider)}.
+	 * 
+	 * @param result One of {@link #RESULT_NULL}, {@link #RESULT_THIS},
+	 * 		{@link #RESULT_ARGUMENT} or {@link #RESULT_NEW}
+	 */
+	public void union(int result);
+	
+	/**
+	 * Called for each split union, whether it was made with
+	 * {@link TickRange#splitUnion(TickRangeProvider)} or one of the
+	 * versions that write to a buffer.
+	 * 
+	 * @param segments The number of segments, between one and three
+	 */
+	public void splitUnion(int segments);
+}
@@ -0,0 +1,116 @@
+package net.tmullin.ipather;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that TickRange's hooks report to the installed sink. Metrics are
+ * chosen when TickRange is loaded, so surefire runs this class on its own
+ * with net.tmullin.ipather.metrics set to counters, and leaves it out of
+ * the run with metrics off.
+ */
+public class TickRangeMetricsHooksTest {
+	private static TickRangeProvider provider(final long start, final long end) {
+		return new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return start;
+			}
+			
+			@Override
+			public long getEndTick() {
+				return end;
+			}
+			
+			@Override
+			public long getTickLength() {
+				return end - start;
+			}
+		};
+	}
+	
+	/**
+	 * 
+	 * @return The installed counters, reset to zero
+	 */
+	private static TickRangeCounters counters() {
+		assertEquals(TickRangeMetrics.COUNTERS, System.getProperty(TickRangeMetrics.PROPERTY));
+		assertTrue(TickRange.METRICS instanceof TickRangeCounters);
+		TickRangeCounters ret = (TickRangeCounters) TickRange.METRICS;
+		ret.reset();
+		return ret;
+	}
+	
+	@Test public void registered() throws Exception {
+		counters();
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+			new ObjectName(TickRangeCounters.OBJECT_NAME)));
+	}
+	
+	@Test public void fromProvider() {
+		TickRangeCounters counters = counters();
+		TickRange r = new TickRange(0, 10, true);
+		
+		assertSame(r, TickRange.fromProvider(r));
+		TickRange.fromProvider(provider(0, 10));
+		TickRange.fromProvider(provider(5, 20));
+		
+		assertEquals(3, counters.getFromProviderCalls());
+		assertEquals(2, counters.getFromProviderAllocations());
+	}
+	
+	@Test public void intersect() {
+		TickRangeCounters counters = counters();
+		TickRange outer = new TickRange(123, 456, true);
+		TickRange inner = new TickRange(150, 400, true);
+		
+		assertSame(inner, outer.intersect(inner));
+		assertSame(inner, inner.intersect(outer));
+		assertNotNull(outer.intersect(provider(150, 400)));
+		assertNotNull(outer.intersect(provider(400, 500)));
+		assertNull(outer.intersect(provider(500, 600)));
+		
+		assertEquals(5, counters.getIntersectCalls());
+		assertEquals(1, counters.getIntersectNullResults());
+		assertEquals(1, counters.getIntersectThisResults());
+		assertEquals(1, counters.getIntersectArgumentResults());
+		assertEquals(2, counters.getIntersectAllocations());
+	}
+	
+	@Test public void union() {
+		TickRangeCounters counters = counters();
+		TickRange outer = new TickRange(123, 456, true);
+		TickRange inner = new TickRange(150, 400, true);
+		
+		assertSame(outer, outer.union(inner));
+		assertSame(outer, inner.union(outer));
+		assertNotNull(outer.union(provider(400, 500)));
+		assertNull(outer.union(provider(456, 500)));
+		
+		assertEquals(4, counters.getUnionCalls());
+		assertEquals(1, counters.getUnionNullResults());
+		assertEquals(1, counters.getUnionThisResults());
+		assertEquals(1, counters.getUnionArgumentResults());
+		assertEquals(1, counters.getUnionAllocations());
+	}
+	
+	@Test public void splitUnion() {
+		TickRangeCounters counters = counters();
+		long[] bounds = new long[TickRange.SPLIT_UNION_LENGTH];
+		
+		assertEquals(1, TickRange.splitUnion(0, 10, 0, 10, bounds, 0));
+		assertEquals(2, TickRange.splitUnion(0, 10, 20, 30, bounds, 0));
+		assertEquals(2, TickRange.splitUnion(0, 10, 0, 5, bounds, 0));
+		assertEquals(3, TickRange.splitUnion(0, 10, 5, 15, bounds, 0));
+		assertEquals(3, TickRange.splitUnion(5, 15, 0, 10, bounds, 0));
+		
+		assertEquals(5, counters.getSplitUnionCalls());
+		assertEquals(1, counters.getSplitUnionOneSegment());
+		assertEquals(2, counters.getSplitUnionTwoSegments());
+		assertEquals(2, counters.getSplitUnionThreeSegments());
+	}
+}
@@ -0,0 +1,156 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+
+/**
+ * The elementary segments of a collection of ranges, as found by
+ * {@link TickRanges#segment(java.util.Collection)}. Each segment is a
+ * maximal [start, end) range over which the same set of input ranges is
+ * sounding, and the segments are in order from lowest to highest. Ticks
+ * that no input range covers are not included, so there may be gaps
+ * between neighbouring segments.
+ * <p>
+ * The covering ranges are identified by their position in the
+ * collection's iteration order. They are stored in a single array with
+ * an offset for each segment, so that finding them does not create any
+ * objects.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeSegments {
+	
+	/**
+	 * The start ticks of the segments
+	 */
+	private final long[] starts;
+	
+	/**
+	 * The end ticks of the segments
+	 */
+	private final long[] ends;
+	
+	/**
+	 * The index in {@link #cover} of the first covering range of each
+	 * segment, plus one extra entry holding the length of cover
+	 */
+	private final int[] offsets;
+	
+	/**
+	 * The positions of the covering ranges of every segment, in ascending
+	 * order within each segment
+	 */
+	private final int[] cover;
+	
+	/**
+	 * Creates segments backed by the supplied arrays, which must not be
+	 * modified afterwards.
+	 */
+	TickRangeSegments(long[] starts, long[] ends, int[] offsets, int[] cover) {
+		this.starts  = starts;
+		this.ends    = ends;
+		this.offsets = offsets;
+		this.cover   = cover;
+	}
+	
+	/**
+	 * 
+	 * @return The number of segments
+	 */
+	public int size() {
+		return starts.length;
+	}
+	
+	/**
+	 * 
+	 * @param i The index of the segment
+	 * @return The start tick of the segment
+	 */
+	public long getTick(int i) {
+		return starts[i];
+	}
+	
+	/**
+	 * 
+	 * @param i The index of the segment
+	 * @return The end tick of the segment
+	 */
+	public long getEndTick(int i) {
+		return ends[i];
+	}
+	
+	/**
+	 * 
+	 * @param i The index of the segment
+	 * @return A new TickRange equal to the segment
+	 */
+	public TickRange get(int i) {
+		return new TickRange(starts[i], ends[i], true);
+	}
+	
+	/**
+	 * 
+	 * @param i The index of the segment
+	 * @return The number of input ranges that cover the segment, which is
+	 * 		always at least one
+	 */
+	public int coverCount(int i) {
+		checkIndex(i);
+		return offsets[i + 1] - offsets[i];
+	}
+	
+	/**
+	 * 
+	 * @param i The index of the segment
+	 * @param j Which of the segment's covering ranges to return, from 0
+	 * 		to <code>coverCount(i) - 1</code>
+	 * @return The position of the covering range in the input collection
+	 */
+	public int cover(int i, int j) {
+		if (j < 0 || j >= coverCount(i)) {
+			throw new IndexOutOfBoundsException(
+				"cover: " + j + ", count: " + coverCount(i));
+		}
+		
+		return cover[offsets[i] + j];
+	}
+	
+	/**
+	 * 
+	 * @param i The index of the segment
+	 * @return A new array with the positions of the ranges in the input
+	 * 		collection that cover the segment, in ascending order
+	 */
+	public int[] covering(int i) {
+		checkIndex(i);
+		return Arrays.copyOfRange(cover, offsets[i], offsets[i + 1]);
+	}
+	
+	/**
+	 * Throws an exception if an index is not a valid segment.
+	 * 
+	 * @param index The index to check
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= starts.length) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + starts.length);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		
+		for (int i = 0; i < starts.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			
+			sb.append('[').append(starts[i]).append(", ").append(ends[i]).append(")=");
+			sb.append(Arrays.toString(covering(i)));
+		}
+		
+		return sb.append('}').toString();
+	}
+}
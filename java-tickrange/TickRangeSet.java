@@ -0,0 +1,399 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of ticks stored as a sorted array of disjoint
+ * {@link TickRange}s. Overlapping or adjacent ranges are coalesced when
+ * the set is created, so every set of ticks has exactly one
+ * representation and two sets are equal if they contain the same ticks.
+ * <p>
+ * Unlike {@link TickRange#union(TickRangeProvider)}, which only works
+ * for a pair of intersecting ranges, the set operations here combine two
+ * whole sets in a single linear merge of their sorted ranges.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeSet implements Iterable<TickRange> {
+	
+	/**
+	 * The set with no ticks in it
+	 */
+	public static final TickRangeSet EMPTY =
+		new TickRangeSet(new long[0], new long[0]);
+	
+	/**
+	 * Creates a set of all of the ticks in the supplied ranges. The
+	 * ranges may be in any order and may overlap.
+	 * 
+	 * @param ranges The ranges to include in the set
+	 * @return The set of ticks covered by the ranges
+	 */
+	public static TickRangeSet of(Iterable<? extends TickRangeProvider> ranges) {
+		PackedTickRangeList list = new PackedTickRangeList(ranges);
+		list.sort();
+		return fromSorted(list.startArray(), list.endArray(), 0, list.size());
+	}
+	
+	/**
+	 * Creates a set of all of the ticks in the supplied ranges. The
+	 * ranges may be in any order and may overlap.
+	 * 
+	 * @param ranges The ranges to include in the set
+	 * @return The set of ticks covered by the ranges
+	 */
+	public static TickRangeSet of(TickRangeProvider... ranges) {
+		return of(Arrays.asList(ranges));
+	}
+	
+	/**
+	 * Creates a set from parallel arrays of start and end ticks that are
+	 * already sorted by start tick, coalescing any ranges that overlap or
+	 * touch.
+	 * 
+	 * @param starts The start ticks sorted in ascending order
+	 * @param ends The end ticks matching the start ticks
+	 * @param from The first index to include
+	 * @param to One past the last index to include
+	 * @return The set of ticks covered by the ranges
+	 */
+	static TickRangeSet fromSorted(long[] starts, long[] ends, int from, int to) {
+		PackedTickRangeList out = new PackedTickRangeList(to - from);
+		
+		for (int i = from; i < to; i++) {
+			append(out, starts[i], ends[i]);
+		}
+		
+		return fromList(out);
+	}
+	
+	/**
+	 * Creates a set that takes ownership of the arrays of a list that
+	 * already holds sorted, disjoint, non-adjacent ranges.
+	 * 
+	 * @param list The list of normalized ranges
+	 * @return The set backed by the list's arrays
+	 */
+	private static TickRangeSet fromList(PackedTickRangeList list) {
+		if (list.isEmpty()) {
+			return EMPTY;
+		}
+		
+		list.trimToSize();
+		return new TickRangeSet(list.startArray(), list.endArray());
+	}
+	
+	/**
+	 * Appends a range to a list of normalized ranges, extending the last
+	 * range instead if the new one overlaps or touches it. The new range
+	 * must not start before the last range in the list.
+	 * 
+	 * @param out The list to append to
+	 * @param start The start tick
+	 * @param end The end tick
+	 */
+	private static void append(PackedTickRangeList out, long start, long end) {
+		int last = out.size() - 1;
+		
+		if (last >= 0 && start <= out.getEndTick(last)) {
+			if (out.getEndTick(last) < end) {
+				out.set(last, out.getTick(last), end);
+			}
+		} else {
+			out.add(start, end);
+		}
+	}
+	
+	/**
+	 * The start ticks of the ranges in ascending order
+	 */
+	private final long[] starts;
+	
+	/**
+	 * The end ticks of the ranges in ascending order
+	 */
+	private final long[] ends;
+	
+	/**
+	 * Creates a set backed by the supplied arrays, which must already
+	 * hold normalized ranges and must not be modified afterwards.
+	 * 
+	 * @param starts The start ticks
+	 * @param ends The end ticks
+	 */
+	private TickRangeSet(long[] starts, long[] ends) {
+		this.starts = starts;
+		this.ends   = ends;
+	}
+	
+	/**
+	 * 
+	 * @return The number of disjoint ranges in this set
+	 */
+	public int size() {
+		return starts.length;
+	}
+	
+	/**
+	 * 
+	 * @return Whether this set has no ticks in it
+	 */
+	public boolean isEmpty() {
+		return 0 == starts.length;
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in this set
+	 * @return The start tick of the range
+	 */
+	public long getTick(int index) {
+		return starts[index];
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in this set
+	 * @return The end tick of the range
+	 */
+	public long getEndTick(int index) {
+		return ends[index];
+	}
+	
+	/**
+	 * 
+	 * @param index The index of a range in this set
+	 * @return A TickRange for the range
+	 */
+	public TickRange get(int index) {
+		return new TickRange(starts[index], ends[index], true);
+	}
+	
+	/**
+	 * Finds the last range that starts at or before a tick.
+	 * 
+	 * @param tick The tick to search for
+	 * @return The index of the range or -1 if every range starts after
+	 * 		the tick
+	 */
+	private int floorIndex(long tick) {
+		int lo = 0;
+		int hi = starts.length - 1;
+		
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			
+			if (starts[mid] <= tick) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		
+		return hi;
+	}
+	
+	/**
+	 * Determines if this set contains a tick.
+	 * 
+	 * @param tick The tick to check
+	 * @return Whether one of the ranges in this set contains the tick
+	 */
+	public boolean contains(long tick) {
+		int i = floorIndex(tick);
+		return i >= 0 && tick < ends[i];
+	}
+	
+	/**
+	 * Determines if this set contains every tick of a range.
+	 * 
+	 * @param r The range to check
+	 * @return Whether a single range in this set contains r
+	 */
+	public boolean contains(TickRangeProvider r) {
+		int i = floorIndex(r.getTick());
+		return i >= 0 && r.getEndTick() <= ends[i];
+	}
+	
+	/**
+	 * Creates the union of this set with another.
+	 * 
+	 * @param other The set to union with
+	 * @return A set of the ticks that are in either set
+	 */
+	public TickRangeSet union(TickRangeSet other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		
+		if (isEmpty()) {
+			return other;
+		}
+		
+		long[] s1 = starts, e1 = ends, s2 = other.starts, e2 = other.ends;
+		PackedTickRangeList out = new PackedTickRangeList(s1.length + s2.length);
+		int i = 0, j = 0;
+		
+		while (i < s1.length || j < s2.length) {
+			if (j >= s2.length || (i < s1.length && s1[i] <= s2[j])) {
+				append(out, s1[i], e1[i]);
+				i++;
+			} else {
+				append(out, s2[j], e2[j]);
+				j++;
+			}
+		}
+		
+		return fromList(out);
+	}
+	
+	/**
+	 * Creates the intersection of this set with another.
+	 * 
+	 * @param other The set to intersect with
+	 * @return A set of the ticks that are in both sets
+	 */
+	public TickRangeSet intersect(TickRangeSet other) {
+		long[] s1 = starts, e1 = ends, s2 = other.starts, e2 = other.ends;
+		PackedTickRangeList out = new PackedTickRangeList();
+		int i = 0, j = 0;
+		
+		while (i < s1.length && j < s2.length) {
+			long start = Math.max(s1[i], s2[j]);
+			long end   = Math.min(e1[i], e2[j]);
+			
+			if (start < end) {
+				append(out, start, end);
+			}
+			
+			// the range that ends first cannot intersect anything else
+			if (e1[i] <= e2[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		
+		return fromList(out);
+	}
+	
+	/**
+	 * Creates the difference of this set and another.
+	 * 
+	 * @param other The set to subtract
+	 * @return A set of the ticks that are in this set but not the other
+	 */
+	public TickRangeSet subtract(TickRangeSet other) {
+		if (isEmpty() || other.isEmpty()) {
+			return this;
+		}
+		
+		long[] s2 = other.starts, e2 = other.ends;
+		PackedTickRangeList out = new PackedTickRangeList(starts.length);
+		int j = 0;
+		
+		for (int i = 0; i < starts.length; i++) {
+			long cur = starts[i];
+			long end = ends[i];
+			
+			// skip ranges that end before the remaining part of this one
+			while (j < s2.length && e2[j] <= cur) {
+				j++;
+			}
+			
+			while (j < s2.length && s2[j] < end) {
+				if (cur < s2[j]) {
+					append(out, cur, s2[j]);
+				}
+				
+				cur = Math.max(cur, e2[j]);
+				
+				// a range running past this one may also cut the next one
+				if (end < e2[j]) {
+					break;
+				}
+				
+				j++;
+			}
+			
+			if (cur < end) {
+				append(out, cur, end);
+			}
+		}
+		
+		return fromList(out);
+	}
+	
+	/**
+	 * Creates the complement of this set within a range.
+	 * 
+	 * @param within The range to take the complement within
+	 * @return A set of the ticks in the range that are not in this set
+	 */
+	public TickRangeSet complement(TickRangeProvider within) {
+		return of(within).subtract(this);
+	}
+	
+	@Override
+	public Iterator<TickRange> iterator() {
+		return new Iterator<TickRange>() {
+			private int next = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return next < starts.length;
+			}
+			
+			@Override
+			public TickRange next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				
+				return get(next++);
+			}
+			
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		
+		if (!(o instanceof TickRangeSet)) {
+			return false;
+		}
+		
+		TickRangeSet s = (TickRangeSet) o;
+		return Arrays.equals(starts, s.starts) && Arrays.equals(ends, s.ends);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		
+		for (int i = 0; i < starts.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			
+			sb.append('[').append(starts[i]).append(", ").append(ends[i]).append(')');
+		}
+		
+		return sb.append('}').toString();
+	}
+}
@@ -0,0 +1,159 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeSetTest {
+	/**
+	 * Helper that creates a set from pairs of start and end ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The set of ticks covered by the ranges
+	 */
+	private static TickRangeSet set(long... ticks) {
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ranges.add(new TickRange(ticks[i], ticks[i + 1], true));
+		}
+		
+		return TickRangeSet.of(ranges);
+	}
+	
+	/**
+	 * Helper that creates a random set of ticks below 500, both as a
+	 * TickRangeSet and as a bit set.
+	 * 
+	 * @param random The random number generator
+	 * @param bits The bit set to fill with the ticks in the set
+	 * @return The set of ticks
+	 */
+	private static TickRangeSet randomSet(Random random, BitSet bits) {
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		
+		for (int i = random.nextInt(20); i > 0; i--) {
+			TickRange r = new TickRange(random.nextInt(450), 1 + random.nextInt(50));
+			ranges.add(r);
+			bits.set((int) r.start, (int) r.end);
+		}
+		
+		return TickRangeSet.of(ranges);
+	}
+	
+	/**
+	 * Helper that checks a set has exactly the ticks in a bit set.
+	 * 
+	 * @param expected The expected ticks
+	 * @param actual The set to check
+	 */
+	private static void assertTicks(BitSet expected, TickRangeSet actual) {
+		for (int tick = 0; tick < 510; tick++) {
+			assertEquals("tick " + tick, expected.get(tick), actual.contains(tick));
+		}
+		
+		// normalized sets have no adjacent or overlapping ranges
+		for (int i = 1; i < actual.size(); i++) {
+			assertTrue(actual.getEndTick(i - 1) < actual.getTick(i));
+		}
+	}
+	
+	@Test public void coalesces() {
+		assertEquals(set(123, 456), set(150, 400, 123, 150, 400, 456));
+		assertEquals(set(123, 456, 500, 600), set(500, 600, 123, 456, 200, 300));
+		assertEquals(2, set(123, 150, 151, 200).size());
+	}
+	
+	@Test public void containsTick() {
+		TickRangeSet set = set(123, 150, 400, 456);
+		assertFalse(set.contains(122));
+		assertTrue(set.contains(123));
+		assertTrue(set.contains(149));
+		assertFalse(set.contains(150));
+		assertTrue(set.contains(455));
+		assertFalse(set.contains(456));
+		assertFalse(TickRangeSet.EMPTY.contains(0));
+	}
+	
+	@Test public void containsRange() {
+		TickRangeSet set = set(123, 150, 400, 456);
+		assertTrue(set.contains(new TickRange(123, 150, true)));
+		assertTrue(set.contains(new TickRange(410, 420, true)));
+		assertFalse(set.contains(new TickRange(140, 410, true)));
+	}
+	
+	@Test public void union() {
+		assertEquals(
+			set(123, 456),
+			set(123, 150, 400, 456).union(set(150, 400)));
+	}
+	
+	@Test public void intersect() {
+		assertEquals(
+			set(150, 160, 400, 410),
+			set(123, 160, 400, 456).intersect(set(150, 410)));
+	}
+	
+	@Test public void subtract() {
+		assertEquals(
+			set(123, 150, 400, 456),
+			set(123, 456).subtract(set(150, 400)));
+		assertEquals(
+			set(130, 140, 420, 430),
+			set(123, 150, 400, 456).subtract(set(100, 130, 140, 420, 430, 500)));
+	}
+	
+	@Test public void complement() {
+		assertEquals(
+			set(100, 123, 150, 400, 456, 500),
+			set(123, 150, 400, 456).complement(new TickRange(100, 500, true)));
+		assertEquals(
+			TickRangeSet.EMPTY,
+			set(100, 500).complement(new TickRange(123, 456, true)));
+	}
+	
+	@Test public void iterates() {
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		
+		for (TickRange r : set(400, 456, 123, 150)) {
+			ranges.add(r);
+		}
+		
+		assertEquals(2, ranges.size());
+		assertEquals(new TickRange(123, 150, true), ranges.get(0));
+		assertEquals(new TickRange(400, 456, true), ranges.get(1));
+	}
+	
+	@Test public void matchesBitSets() {
+		Random random = new Random(1);
+		
+		for (int i = 0; i < 200; i++) {
+			BitSet bits1 = new BitSet();
+			BitSet bits2 = new BitSet();
+			TickRangeSet set1 = randomSet(random, bits1);
+			TickRangeSet set2 = randomSet(random, bits2);
+			assertTicks(bits1, set1);
+			
+			BitSet union = (BitSet) bits1.clone();
+			union.or(bits2);
+			assertTicks(union, set1.union(set2));
+			
+			BitSet intersect = (BitSet) bits1.clone();
+			intersect.and(bits2);
+			assertTicks(intersect, set1.intersect(set2));
+			
+			BitSet subtract = (BitSet) bits1.clone();
+			subtract.andNot(bits2);
+			assertTicks(subtract, set1.subtract(set2));
+			
+			BitSet complement = new BitSet();
+			complement.set(0, 500);
+			complement.andNot(bits1);
+			assertTicks(complement, set1.complement(new TickRange(0, 500, true)));
+		}
+	}
+}
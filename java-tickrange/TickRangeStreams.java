@@ -0,0 +1,505 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy set operations over streams of ranges that are too large to
+ * collect into a {@link TickRangeSet} first. Each input must be sorted
+ * by start tick, such as the notes of a track in the order they are
+ * read, and is only pulled from as the result is consumed. Only the
+ * current range of each input is kept, so k inputs take O(k) memory no
+ * matter how long they are.
+ * <p>
+ * The results are sorted, disjoint ranges. Their spliterators report
+ * {@link Spliterator#SORTED} in the natural order of TickRange, i.e.
+ * {@link TickRange#compareTo(TickRangeProvider)}, so a later
+ * {@link Stream#sorted()} has nothing to do. Closing a result closes its
+ * inputs. An input that turns out not to be sorted, or that holds a
+ * range with no length, makes the traversal throw an
+ * IllegalArgumentException when it is reached.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeStreams {
+	
+	/**
+	 * The characteristics of every stream returned from here
+	 */
+	static final int CHARACTERISTICS =
+		Spliterator.ORDERED | Spliterator.SORTED |
+		Spliterator.DISTINCT | Spliterator.NONNULL;
+	
+	private TickRangeStreams() {
+	}
+	
+	/**
+	 * Merges sorted streams of ranges into the set of ticks they cover.
+	 * Ranges that overlap or touch are joined, the same way as
+	 * {@link TickRangeSet#union(TickRangeSet)}.
+	 * 
+	 * @param inputs The streams to merge, each sorted by start tick
+	 * @return A stream of the disjoint ranges covering every tick in any
+	 * 		of the inputs
+	 */
+	public static Stream<TickRange> mergeUnion(
+			List<? extends Stream<? extends TickRangeProvider>> inputs) {
+		return stream(new UnionSpliterator(sources(inputs, false)), inputs);
+	}
+	
+	/**
+	 * Intersects sorted streams of ranges, the same way as
+	 * {@link TickRangeSet#intersect(TickRangeSet)}. The ranges within
+	 * each input may overlap, and are joined before they are intersected
+	 * with the other inputs.
+	 * 
+	 * @param inputs The streams to intersect, each sorted by start tick
+	 * @return A stream of the disjoint ranges covering the ticks that are
+	 * 		in every input
+	 */
+	public static Stream<TickRange> mergeIntersect(
+			List<? extends Stream<? extends TickRangeProvider>> inputs) {
+		if (inputs.isEmpty()) {
+			throw new IllegalArgumentException("inputs must not be empty");
+		}
+		
+		return stream(new IntersectSpliterator(sources(inputs, true)), inputs);
+	}
+	
+	/**
+	 * Subtracts one sorted stream of ranges from another, the same way as
+	 * {@link TickRangeSet#subtract(TickRangeSet)}.
+	 * 
+	 * @param from The stream to subtract from, sorted by start tick
+	 * @param subtract The stream to subtract, sorted by start tick
+	 * @return A stream of the disjoint ranges covering the ticks that are
+	 * 		in the first stream but not the second
+	 */
+	public static Stream<TickRange> mergeSubtract(
+			Stream<? extends TickRangeProvider> from,
+			Stream<? extends TickRangeProvider> subtract) {
+		List<Stream<? extends TickRangeProvider>> inputs =
+			Arrays.<Stream<? extends TickRangeProvider>>asList(from, subtract);
+		return stream(new SubtractSpliterator(sources(inputs, true)), inputs);
+	}
+	
+	/**
+	 * Splits sorted streams of ranges into their elementary segments, the
+	 * maximal ranges over which the same set of input ranges is sounding.
+	 * This is the generalization of
+	 * {@link TickRange#splitUnion(TickRangeProvider)} to any number of
+	 * streams, and for two streams holding one range each it returns the
+	 * same segments. Ticks not covered by any range are skipped. It is
+	 * the lazy counterpart of
+	 * {@link TickRanges#segment(java.util.Collection)}, without the
+	 * covering ranges.
+	 * <p>
+	 * Every range that is sounding at once has to be remembered, which
+	 * is at most one per input when the ranges within each input do not
+	 * overlap.
+	 * 
+	 * @param inputs The streams to split, each sorted by start tick
+	 * @return A stream of the segments in order from lowest to highest
+	 */
+	public static Stream<TickRange> splitUnionAll(
+			List<? extends Stream<? extends TickRangeProvider>> inputs) {
+		return stream(new SplitUnionSpliterator(sources(inputs, false)), inputs);
+	}
+	
+	/**
+	 * Creates the sources for a list of inputs without pulling anything
+	 * from them yet.
+	 * 
+	 * @param inputs The input streams
+	 * @param coalesce Whether each source should join its own overlapping
+	 * 		and touching ranges
+	 * @return A source for each input
+	 */
+	private static Source[] sources(
+			List<? extends Stream<? extends TickRangeProvider>> inputs,
+			boolean coalesce) {
+		Source[] ret = new Source[inputs.size()];
+		
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = new Source(inputs.get(i).spliterator(), coalesce);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Wraps a spliterator in a sequential stream that closes the inputs
+	 * when it is closed.
+	 * 
+	 * @param spliterator The spliterator producing the result
+	 * @param inputs The streams it reads from
+	 * @return The stream of the result
+	 */
+	private static Stream<TickRange> stream(
+			Spliterator<TickRange> spliterator,
+			final List<? extends Stream<? extends TickRangeProvider>> inputs) {
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				RuntimeException failure = null;
+				
+				for (Stream<? extends TickRangeProvider> input : inputs) {
+					try {
+						input.close();
+					} catch (RuntimeException e) {
+						if (null == failure) {
+							failure = e;
+						} else {
+							failure.addSuppressed(e);
+						}
+					}
+				}
+				
+				if (null != failure) {
+					throw failure;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * The current range of one input, which is read one range ahead so
+	 * that overlapping ranges can be joined when asked to.
+	 */
+	private static final class Source implements Consumer<TickRangeProvider> {
+		private final Spliterator<? extends TickRangeProvider> input;
+		private final boolean coalesce;
+		
+		/**
+		 * The current range, which is only valid while {@link #done} is
+		 * false
+		 */
+		long start, end;
+		
+		/**
+		 * Whether the input has no more ranges
+		 */
+		boolean done;
+		
+		/**
+		 * The range read ahead of the current one
+		 */
+		private long nextStart, nextEnd;
+		private boolean hasNext;
+		
+		/**
+		 * The start tick of the range read last, to check the order
+		 */
+		private long lastStart = Long.MIN_VALUE;
+		
+		Source(Spliterator<? extends TickRangeProvider> input, boolean coalesce) {
+			this.input    = input;
+			this.coalesce = coalesce;
+		}
+		
+		@Override
+		public void accept(TickRangeProvider r) {
+			long s = r.getTick();
+			long e = r.getEndTick();
+			
+			if (s < lastStart) {
+				throw new IllegalArgumentException(
+					"ranges must be sorted by start tick: " + r);
+			}
+			
+			if (e <= s) {
+				throw new IllegalArgumentException("length must be > 0: " + r);
+			}
+			
+			lastStart = s;
+			nextStart = s;
+			nextEnd   = e;
+		}
+		
+		/**
+		 * Reads the range after the one read last into the read-ahead slot.
+		 */
+		private void read() {
+			hasNext = input.tryAdvance(this);
+		}
+		
+		/**
+		 * Moves to the next range, joining it with the ranges after it
+		 * that overlap or touch it if this source coalesces.
+		 */
+		void advance() {
+			if (!hasNext) {
+				read();
+			}
+			
+			if (!hasNext) {
+				done = true;
+				return;
+			}
+			
+			start = nextStart;
+			end   = nextEnd;
+			read();
+			
+			while (coalesce && hasNext && nextStart <= end) {
+				end = Math.max(end, nextEnd);
+				read();
+			}
+		}
+	}
+	
+	/**
+	 * The spliterator shared by the operations, which pulls the first
+	 * range of each source when it is first advanced.
+	 */
+	private abstract static class MergeSpliterator
+			extends Spliterators.AbstractSpliterator<TickRange> {
+		final Source[] sources;
+		private boolean started;
+		
+		MergeSpliterator(Source[] sources) {
+			super(Long.MAX_VALUE, CHARACTERISTICS);
+			this.sources = sources;
+		}
+		
+		@Override
+		public final boolean tryAdvance(Consumer<? super TickRange> action) {
+			if (!started) {
+				started = true;
+				
+				for (Source source : sources) {
+					source.advance();
+				}
+			}
+			
+			TickRange next = next();
+			
+			if (null == next) {
+				return false;
+			}
+			
+			action.accept(next);
+			return true;
+		}
+		
+		/**
+		 * 
+		 * @return The next range of the result or null if there are none
+		 */
+		abstract TickRange next();
+		
+		/**
+		 * Sorted in the natural order of TickRange.
+		 * <p>
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Comparator<? super TickRange> getComparator() {
+			return null;
+		}
+		
+		/**
+		 * 
+		 * @return The index of the source whose current range starts
+		 * 		first or -1 if every source is done
+		 */
+		final int minStart() {
+			int min = -1;
+			
+			for (int i = 0; i < sources.length; i++) {
+				if (!sources[i].done && (min < 0 || sources[i].start < sources[min].start)) {
+					min = i;
+				}
+			}
+			
+			return min;
+		}
+	}
+	
+	private static final class UnionSpliterator extends MergeSpliterator {
+		UnionSpliterator(Source[] sources) {
+			super(sources);
+		}
+		
+		@Override
+		TickRange next() {
+			int i = minStart();
+			
+			if (i < 0) {
+				return null;
+			}
+			
+			long start = sources[i].start;
+			long end   = sources[i].end;
+			sources[i].advance();
+			
+			// join every range that starts before the union so far ends
+			while ((i = minStart()) >= 0 && sources[i].start <= end) {
+				end = Math.max(end, sources[i].end);
+				sources[i].advance();
+			}
+			
+			return new TickRange(start, end, true);
+		}
+	}
+	
+	private static final class IntersectSpliterator extends MergeSpliterator {
+		IntersectSpliterator(Source[] sources) {
+			super(sources);
+		}
+		
+		@Override
+		TickRange next() {
+			while (true) {
+				long start = Long.MIN_VALUE;
+				long end = Long.MAX_VALUE;
+				int minEnd = -1;
+				
+				for (int i = 0; i < sources.length; i++) {
+					if (sources[i].done) {
+						return null;
+					}
+					
+					start = Math.max(start, sources[i].start);
+					
+					if (sources[i].end < end) {
+						end = sources[i].end;
+						minEnd = i;
+					}
+				}
+				
+				// the range that ends first cannot intersect anything else
+				sources[minEnd].advance();
+				
+				if (start < end) {
+					return new TickRange(start, end, true);
+				}
+			}
+		}
+	}
+	
+	private static final class SubtractSpliterator extends MergeSpliterator {
+		/**
+		 * The part of the current range of the first source that is left
+		 */
+		private long cur, end;
+		private boolean hasCur;
+		
+		SubtractSpliterator(Source[] sources) {
+			super(sources);
+		}
+		
+		@Override
+		TickRange next() {
+			Source from = sources[0];
+			Source subtract = sources[1];
+			
+			while (true) {
+				if (!hasCur) {
+					if (from.done) {
+						return null;
+					}
+					
+					cur = from.start;
+					end = from.end;
+					hasCur = true;
+					from.advance();
+				}
+				
+				// skip ranges that end before the remaining part
+				while (!subtract.done && subtract.end <= cur) {
+					subtract.advance();
+				}
+				
+				if (subtract.done || end <= subtract.start) {
+					hasCur = false;
+					return new TickRange(cur, end, true);
+				}
+				
+				// a range running past this one may also cut the next one,
+				// so it is left for the skip above to pass over
+				long pieceStart = cur;
+				cur = subtract.end;
+				hasCur = cur < end;
+				
+				if (pieceStart < subtract.start) {
+					return new TickRange(pieceStart, subtract.start, true);
+				}
+			}
+		}
+	}
+	
+	private static final class SplitUnionSpliterator extends MergeSpliterator {
+		/**
+		 * The end ticks of the ranges that are sounding
+		 */
+		private long[] active = new long[8];
+		private int activeCount;
+		
+		/**
+		 * Where the next segment starts, if anything is sounding
+		 */
+		private long cur;
+		
+		SplitUnionSpliterator(Source[] sources) {
+			super(sources);
+		}
+		
+		@Override
+		TickRange next() {
+			int i = minStart();
+			
+			if (0 == activeCount) {
+				// skip the gap to the next range
+				if (i < 0) {
+					return null;
+				}
+				
+				cur = sources[i].start;
+			}
+			
+			// every range starting here is sounding from now on
+			for (Source source : sources) {
+				while (!source.done && source.start == cur) {
+					if (active.length == activeCount) {
+						active = Arrays.copyOf(active, 2 * activeCount);
+					}
+					
+					active[activeCount++] = source.end;
+					source.advance();
+				}
+			}
+			
+			// the segment ends at the next start or end, whichever is first
+			long next = Long.MAX_VALUE;
+			
+			for (int j = 0; j < activeCount; j++) {
+				next = Math.min(next, active[j]);
+			}
+			
+			if ((i = minStart()) >= 0) {
+				next = Math.min(next, sources[i].start);
+			}
+			
+			// drop the ranges that end where the segment does
+			for (int j = 0; j < activeCount; ) {
+				if (active[j] == next) {
+					active[j] = active[--activeCount];
+				} else {
+					j++;
+				}
+			}
+			
+			TickRange ret = new TickRange(cur, next, true);
+			cur = next;
+			return ret;
+		}
+	}
+}
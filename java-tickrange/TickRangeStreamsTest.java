@@ -0,0 +1,221 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeStreamsTest {
+	/**
+	 * Helper that creates a sorted list of random ranges, which may
+	 * overlap each other.
+	 * 
+	 * @param random The random number generator
+	 * @param count The number of ranges to create
+	 * @param span The highest start tick
+	 * @return The sorted list of ranges
+	 */
+	private static List<TickRange> randomRanges(Random random, int count, int span) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			ret.add(new TickRange(random.nextInt(span), 1 + random.nextInt(20)));
+		}
+		
+		Collections.sort(ret);
+		return ret;
+	}
+	
+	/**
+	 * Helper that collects a set back into a list.
+	 */
+	private static List<TickRange> list(TickRangeSet set) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (TickRange r : set) {
+			ret.add(r);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that creates a stream of ranges which counts how many have
+	 * been pulled from it.
+	 * 
+	 * @param ranges The ranges to stream
+	 * @param pulled Incremented for every range pulled
+	 * @return The stream of ranges
+	 */
+	private static Stream<TickRange> counting(List<TickRange> ranges, final int[] pulled) {
+		final Iterator<TickRange> it = ranges.iterator();
+		Iterator<TickRange> counted = new Iterator<TickRange>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+			
+			@Override
+			public TickRange next() {
+				pulled[0]++;
+				return it.next();
+			}
+		};
+		
+		return StreamSupport.stream(
+			Spliterators.spliteratorUnknownSize(counted, Spliterator.ORDERED), false);
+	}
+	
+	@Test public void mergeUnionRandom() {
+		Random random = new Random(1);
+		
+		for (int trial = 0; trial < 50; trial++) {
+			List<TickRange> a = randomRanges(random, random.nextInt(100), 1000);
+			List<TickRange> b = randomRanges(random, random.nextInt(100), 1000);
+			List<TickRange> c = randomRanges(random, random.nextInt(100), 1000);
+			TickRangeSet expected = TickRangeSet.of(a).union(TickRangeSet.of(b)).union(TickRangeSet.of(c));
+			
+			assertEquals(list(expected), TickRangeStreams.mergeUnion(
+				Arrays.asList(a.stream(), b.stream(), c.stream())).collect(Collectors.toList()));
+		}
+	}
+	
+	@Test public void mergeIntersectRandom() {
+		Random random = new Random(2);
+		
+		for (int trial = 0; trial < 50; trial++) {
+			List<TickRange> a = randomRanges(random, random.nextInt(100), 1000);
+			List<TickRange> b = randomRanges(random, random.nextInt(100), 1000);
+			List<TickRange> c = randomRanges(random, random.nextInt(100), 1000);
+			TickRangeSet expected = TickRangeSet.of(a).intersect(TickRangeSet.of(b)).intersect(TickRangeSet.of(c));
+			
+			assertEquals(list(expected), TickRangeStreams.mergeIntersect(
+				Arrays.asList(a.stream(), b.stream(), c.stream())).collect(Collectors.toList()));
+		}
+	}
+	
+	@Test public void mergeSubtractRandom() {
+		Random random = new Random(3);
+		
+		for (int trial = 0; trial < 50; trial++) {
+			List<TickRange> a = randomRanges(random, random.nextInt(100), 1000);
+			List<TickRange> b = randomRanges(random, random.nextInt(100), 1000);
+			TickRangeSet expected = TickRangeSet.of(a).subtract(TickRangeSet.of(b));
+			
+			assertEquals(list(expected), TickRangeStreams.mergeSubtract(
+				a.stream(), b.stream()).collect(Collectors.toList()));
+		}
+	}
+	
+	@Test public void splitUnionAllRandom() {
+		Random random = new Random(4);
+		
+		for (int trial = 0; trial < 50; trial++) {
+			List<TickRange> a = randomRanges(random, random.nextInt(100), 1000);
+			List<TickRange> b = randomRanges(random, random.nextInt(100), 1000);
+			List<TickRange> all = new ArrayList<TickRange>(a);
+			all.addAll(b);
+			TickRangeSegments segments = TickRanges.segment(all);
+			List<TickRange> expected = new ArrayList<TickRange>();
+			
+			for (int i = 0; i < segments.size(); i++) {
+				expected.add(segments.get(i));
+			}
+			
+			assertEquals(expected, TickRangeStreams.splitUnionAll(
+				Arrays.asList(a.stream(), b.stream())).collect(Collectors.toList()));
+		}
+	}
+	
+	@Test public void splitUnionAllMatchesSplitUnion() {
+		long[][] permutations = {
+			{123, 456, 150, 400},
+			{123, 456, 150, 456},
+			{150, 456, 123, 456},
+			{123, 456, 123, 400},
+			{123, 400, 123, 456},
+			{123, 400, 150, 456},
+			{123, 456, 123, 456},
+			{123, 150, 400, 456},
+			{150, 400, 123, 456},
+			{150, 456, 123, 400},
+			{400, 456, 123, 150},
+		};
+		
+		for (long[] p : permutations) {
+			TickRange r1 = new TickRange(p[0], p[1], true);
+			TickRange r2 = new TickRange(p[2], p[3], true);
+			
+			assertEquals(Arrays.asList(r1.splitUnion(r2)), TickRangeStreams.splitUnionAll(
+				Arrays.asList(Stream.of(r1), Stream.of(r2))).collect(Collectors.toList()));
+		}
+	}
+	
+	@Test public void pullsOnDemand() {
+		List<TickRange> a = new ArrayList<TickRange>();
+		List<TickRange> b = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < 1000; i++) {
+			a.add(new TickRange(10 * i, 5));
+			b.add(new TickRange(10 * i + 3, 5));
+		}
+		
+		int[] pulledA = new int[1];
+		int[] pulledB = new int[1];
+		Stream<TickRange> union = TickRangeStreams.mergeUnion(
+			Arrays.asList(counting(a, pulledA), counting(b, pulledB)));
+		
+		assertEquals(0, pulledA[0] + pulledB[0]);
+		assertEquals(
+			Arrays.asList(new TickRange(0, 8, true), new TickRange(10, 18, true)),
+			union.limit(2).collect(Collectors.toList()));
+		assertTrue(pulledA[0] <= 4);
+		assertTrue(pulledB[0] <= 4);
+	}
+	
+	@Test public void sortedCharacteristics() {
+		Spliterator<TickRange> spliterator = TickRangeStreams.mergeUnion(
+			Arrays.asList(Stream.of(new TickRange(0, 5)))).spliterator();
+		
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+		assertNull(spliterator.getComparator());
+	}
+	
+	@Test public void closesInputs() {
+		final int[] closed = new int[1];
+		Runnable close = new Runnable() {
+			@Override
+			public void run() {
+				closed[0]++;
+			}
+		};
+		
+		TickRangeStreams.mergeSubtract(
+			Stream.of(new TickRange(0, 5)).onClose(close),
+			Stream.of(new TickRange(2, 5)).onClose(close)).close();
+		assertEquals(2, closed[0]);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unsorted() {
+		TickRangeStreams.mergeUnion(Arrays.asList(
+			Stream.of(new TickRange(10, 5), new TickRange(0, 5)))).count();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void intersectNothing() {
+		TickRangeStreams.mergeIntersect(Collections.<Stream<TickRange>>emptyList());
+	}
+}
@@ -1,5 +1,7 @@
 package net.tmullin.ipather;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -556,6 +558,109 @@ public class TickRangeTest {
 	}
 	
 	
+	/**
+	 * Helper that wraps a range as a provider that is not a TickRange.
+	 */
+	private static TickRangeProvider provider(final TickRange r) {
+		return new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return r.start;
+			}
+			
+			@Override
+			public long getEndTick() {
+				return r.end;
+			}
+			
+			@Override
+			public long getTickLength() {
+				return r.getTickLength();
+			}
+		};
+	}
+	
+	/**
+	 * Helper for identity tests. Creates two ranges and checks which
+	 * object intersect() and union() return, both when the second range
+	 * is passed as a TickRange and when it is passed as a plain provider.
+	 * 
+	 * @param intersectSame 1 if the intersection should be the first
+	 * 		range, 2 if it should be the second and 0 if it should be new
+	 * @param unionSame The same for the union
+	 * @param start1 The start tick of the first range
+	 * @param end1 The end tick of the first range
+	 * @param start2 The start tick of the second range
+	 * @param end2 The end tick of the second range
+	 */
+	private void identity(
+			int intersectSame, int unionSame,
+			long start1, long end1, long start2, long end2) {
+		TickRange r1 = new TickRange(start1, end1, true);
+		TickRange r2 = new TickRange(start2, end2, true);
+		TickRangeProvider p2 = provider(r2);
+		
+		checkIdentity(intersectSame, r1, r2, r1.intersect(r2));
+		checkIdentity(intersectSame == 2 ? 0 : intersectSame, r1, r2, r1.intersect(p2));
+		assertEquals(r1.intersect(r2), r1.intersect(p2));
+		
+		checkIdentity(unionSame, r1, r2, r1.union(r2));
+		checkIdentity(unionSame == 2 ? 0 : unionSame, r1, r2, r1.union(p2));
+		assertEquals(r1.union(r2), r1.union(p2));
+	}
+	
+	private void checkIdentity(int same, TickRange r1, TickRange r2, TickRange actual) {
+		assertNotNull(actual);
+		
+		if (1 == same) {
+			assertSame(r1, actual);
+		} else if (2 == same) {
+			assertSame(r2, actual);
+		} else {
+			assertNotSame(r1, actual);
+			assertNotSame(r2, actual);
+		}
+	}
+	
+	@Test public void identity1() {
+		identity(2, 1, 123, 456, 150, 400);
+	}
+	
+	@Test public void identity2() {
+		identity(2, 1, 123, 456, 150, 456);
+	}
+	
+	@Test public void identity3() {
+		identity(1, 2, 150, 456, 123, 456);
+	}
+	
+	@Test public void identity4() {
+		identity(2, 1, 123, 456, 123, 400);
+	}
+	
+	@Test public void identity5() {
+		identity(1, 2, 123, 400, 123, 456);
+	}
+	
+	@Test public void identity6() {
+		identity(0, 0, 123, 400, 150, 456);
+	}
+	
+	@Test public void identity7() {
+		// an equal TickRange is returned as the intersection, but the
+		// union prefers this range
+		identity(2, 1, 123, 456, 123, 456);
+	}
+	
+	@Test public void identity9() {
+		identity(1, 2, 150, 400, 123, 456);
+	}
+	
+	@Test public void identity10() {
+		identity(0, 0, 150, 456, 123, 400);
+	}
+	
+	
 	/**
 	 * Helper for union tests. Creates two ranges and checks if
 	 * their union equals the provided expected union.
@@ -590,6 +695,13 @@ public class TickRangeTest {
 		TickRange r2 = new TickRange(start2, end2, true);
 		TickRange[] splitUnion = r1.splitUnion(r2);
 		assertArrayEquals(expectedSplitUnion, splitUnion);
+		
+		long[] bounds = new long[TickRange.SPLIT_UNION_LENGTH + 1];
+		int count = r1.splitUnion(r2, bounds, 1);
+		assertEquals(expectedSplitUnion.length, count);
+		assertArrayEquals(
+			expectedUnionRanges,
+			Arrays.copyOfRange(bounds, 1, 1 + 2 * count));
 	}
 	
 	@Test public void splitUnion1() {
@@ -635,4 +747,59 @@ public class TickRangeTest {
 	@Test public void splitUnion11() {
 		splitUnion(400, 456, 123, 150, 123, 150, 400, 456);
 	}
+	
+	/**
+	 * Helper that wraps a pair of ticks as a provider without validating
+	 * them.
+	 */
+	private static TickRangeProvider unchecked(final long start, final long end) {
+		return new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return start;
+			}
+			
+			@Override
+			public long getEndTick() {
+				return end;
+			}
+			
+			@Override
+			public long getTickLength() {
+				return end - start;
+			}
+		};
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unionEmptyInside() {
+		new TickRange(123, 456, true).union(unchecked(150, 150));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unionNegativeLength() {
+		new TickRange(123, 456, true).union(unchecked(400, 150));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unionNegativeStart() {
+		new TickRange(123, 456, true).union(unchecked(-10, 150));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void intersectEmptyInside() {
+		new TickRange(123, 456, true).intersect(unchecked(150, 150));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void intersectNegativeLengthOutside() {
+		new TickRange(123, 456, true).intersect(unchecked(600, 500));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void splitUnionBufferTooSmall() {
+		new TickRange(123, 456, true).splitUnion(
+			new TickRange(150, 400, true),
+			new long[TickRange.SPLIT_UNION_LENGTH], 1);
+	}
 }
@@ -0,0 +1,259 @@
+package net.tmullin.ipather;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Static methods that operate on whole collections of tick ranges.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRanges {
+	
+	/**
+	 * The default number of ranges that
+	 * {@link #coalesce(Collection, ForkJoinPool)} coalesces in each task
+	 */
+	public static final int DEFAULT_COALESCE_THRESHOLD = 1 << 14;
+	
+	private TickRanges() {
+	}
+	
+	/**
+	 * Coalesces a collection of ranges into the set of ticks they cover,
+	 * using a fork/join pool to do the work in parallel.
+	 * 
+	 * @param ranges The ranges to coalesce, in any order
+	 * @param pool The pool to run the work in
+	 * @return The same set as {@link TickRangeSet#of(Iterable)}
+	 * @see #coalesce(Collection, ForkJoinPool, int)
+	 */
+	public static TickRangeSet coalesce(
+			Collection<? extends TickRangeProvider> ranges, ForkJoinPool pool) {
+		return coalesce(ranges, pool, DEFAULT_COALESCE_THRESHOLD);
+	}
+	
+	/**
+	 * Coalesces a collection of ranges into the set of ticks they cover,
+	 * using a fork/join pool to do the work in parallel. The ranges are
+	 * first sorted with
+	 * {@link Arrays#parallelSort(Object[], java.util.Comparator)}, which is
+	 * run from inside the pool so that its subtasks run there too.
+	 * The sorted array is then cut into contiguous chunks of no more than
+	 * the threshold, which are coalesced at the same time. Since every
+	 * chunk starts no earlier than the one before it, the chunks only need
+	 * to be joined where they meet: the coalesced ranges are appended in
+	 * order, and the last range of one chunk is extended by the first
+	 * ones of the next if they overlap or touch. That join is the only
+	 * sequential step, and it takes time linear in the number of
+	 * coalesced ranges rather than in the number of input ranges.
+	 * 
+	 * @param ranges The ranges to coalesce, in any order
+	 * @param pool The pool to run the work in
+	 * @param threshold The largest number of ranges to coalesce in a
+	 * 		single task
+	 * @return The same set as {@link TickRangeSet#of(Iterable)}
+	 */
+	public static TickRangeSet coalesce(
+			Collection<? extends TickRangeProvider> ranges, ForkJoinPool pool,
+			int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be > 0");
+		}
+		
+		if (ranges.size() <= threshold) {
+			return TickRangeSet.of(ranges);
+		}
+		
+		TickRangeProvider[] items = ranges.toArray(new TickRangeProvider[ranges.size()]);
+		return pool.invoke(new CoalesceTask(items, threshold));
+	}
+	
+	/**
+	 * Splits a collection of ranges into its elementary segments, the
+	 * maximal ranges over which the same set of input ranges is sounding,
+	 * along with which input ranges cover each one. This is the
+	 * generalization of {@link TickRange#splitUnion(TickRangeProvider)} to
+	 * any number of ranges, and for two ranges it returns the same
+	 * segments. Ticks not covered by any range are skipped.
+	 * <p>
+	 * The start and end of every range are sorted together as a single
+	 * array of events and swept in order, keeping the set of active ranges
+	 * in arrays so that nothing is allocated for each event. Removing a
+	 * range from the active set leaves it out of order, so each segment's
+	 * covering ranges are sorted as they are copied out. The work takes
+	 * O(n log n + k log m) time for n ranges, k entries in the result and
+	 * at most m ranges sounding at once.
+	 * 
+	 * @param ranges The ranges to split, in any order
+	 * @return The segments, with covering ranges identified by their
+	 * 		position in the collection's iteration order
+	 */
+	public static TickRangeSegments segment(
+			Collection<? extends TickRangeProvider> ranges) {
+		int n = ranges.size();
+		
+		// each event is a tick and a code of (position << 1 | isStart)
+		long[] ticks = new long[2 * n];
+		long[] codes = new long[2 * n];
+		int e = 0;
+		
+		for (TickRangeProvider r : ranges) {
+			long start = r.getTick();
+			long end   = r.getEndTick();
+			
+			if (start < 0) {
+				throw new IllegalArgumentException("start must be >= 0");
+			}
+			
+			if (end <= start) {
+				throw new IllegalArgumentException("length must be > 0");
+			}
+			
+			long position = e >> 1;
+			ticks[e]   = start;
+			codes[e++] = position << 1 | 1;
+			ticks[e]   = end;
+			codes[e++] = position << 1;
+		}
+		
+		PackedTickRangeList.sort(ticks, codes, 0, e);
+		
+		// the active positions and where each one is in the active array
+		int[] active = new int[n];
+		int[] slot = new int[n];
+		int activeCount = 0;
+		
+		// every distinct tick but the last can start a segment
+		int maxSegments = Math.max(0, 2 * n - 1);
+		long[] starts = new long[maxSegments];
+		long[] ends = new long[maxSegments];
+		int[] offsets = new int[maxSegments + 1];
+		int[] cover = new int[Math.max(16, n)];
+		int segments = 0;
+		int covered = 0;
+		int i = 0;
+		
+		while (i < e) {
+			long tick = ticks[i];
+			
+			for (; i < e && ticks[i] == tick; i++) {
+				int position = (int) (codes[i] >>> 1);
+				
+				if (0 != (codes[i] & 1)) {
+					slot[position] = activeCount;
+					active[activeCount++] = position;
+				} else {
+					// move the last active range into the removed one's slot
+					int last = active[--activeCount];
+					active[slot[position]] = last;
+					slot[last] = slot[position];
+				}
+			}
+			
+			if (0 == activeCount) {
+				continue;
+			}
+			
+			if (cover.length - covered < activeCount) {
+				cover = Arrays.copyOf(
+					cover, Math.max(2 * cover.length, covered + activeCount));
+			}
+			
+			// something is active, so there is a later end event
+			starts[segments] = tick;
+			ends[segments] = ticks[i];
+			offsets[segments++] = covered;
+			System.arraycopy(active, 0, cover, covered, activeCount);
+			Arrays.sort(cover, covered, covered + activeCount);
+			covered += activeCount;
+		}
+		
+		offsets[segments] = covered;
+		return new TickRangeSegments(
+			Arrays.copyOf(starts, segments), Arrays.copyOf(ends, segments),
+			Arrays.copyOf(offsets, segments + 1), Arrays.copyOf(cover, covered));
+	}
+	
+	/**
+	 * Sorts an array of ranges, coalesces chunks of it in parallel and
+	 * joins the results.
+	 */
+	@SuppressWarnings("serial")
+	private static final class CoalesceTask extends RecursiveTask<TickRangeSet> {
+		private final TickRangeProvider[] items;
+		private final int threshold;
+		
+		CoalesceTask(TickRangeProvider[] items, int threshold) {
+			this.items     = items;
+			this.threshold = threshold;
+		}
+		
+		@Override
+		protected TickRangeSet compute() {
+			Arrays.parallelSort(items, TickRange.COMPARATOR);
+			
+			ChunkTask[] chunks = new ChunkTask[(items.length + threshold - 1) / threshold];
+			
+			for (int c = 0; c < chunks.length; c++) {
+				int from = c * threshold;
+				chunks[c] = new ChunkTask(items, from, Math.min(items.length, from + threshold));
+			}
+			
+			invokeAll(chunks);
+			int total = 0;
+			
+			for (ChunkTask chunk : chunks) {
+				total += chunk.join().size();
+			}
+			
+			// each chunk is sorted and starts no earlier than the last, so
+			// fromSorted only has to join ranges where two chunks meet
+			long[] starts = new long[total];
+			long[] ends = new long[total];
+			int i = 0;
+			
+			for (ChunkTask chunk : chunks) {
+				TickRangeSet set = chunk.join();
+				
+				for (int j = 0; j < set.size(); j++, i++) {
+					starts[i] = set.getTick(j);
+					ends[i]   = set.getEndTick(j);
+				}
+			}
+			
+			return TickRangeSet.fromSorted(starts, ends, 0, total);
+		}
+	}
+	
+	/**
+	 * Coalesces a contiguous part of a sorted array of ranges.
+	 */
+	@SuppressWarnings("serial")
+	private static final class ChunkTask extends RecursiveTask<TickRangeSet> {
+		private final TickRangeProvider[] items;
+		private final int from;
+		private final int to;
+		
+		ChunkTask(TickRangeProvider[] items, int from, int to) {
+			this.items = items;
+			this.from  = from;
+			this.to    = to;
+		}
+		
+		@Override
+		protected TickRangeSet compute() {
+			PackedTickRangeList list = new PackedTickRangeList(to - from);
+			
+			for (int i = from; i < to; i++) {
+				list.add(items[i]);
+			}
+			
+			return TickRangeSet.fromSorted(
+				list.startArray(), list.endArray(), 0, list.size());
+		}
+	}
+}
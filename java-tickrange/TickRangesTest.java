@@ -0,0 +1,195 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangesTest {
+	/**
+	 * Helper that creates a list of random ranges.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to create
+	 * @param span The highest start tick
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> randomRanges(long seed, int count, int span) {
+		Random random = new Random(seed);
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			ret.add(new TickRange(random.nextInt(span), 1 + random.nextInt(20)));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper for coalesce tests. Checks that the parallel result is the
+	 * same as the sequential one.
+	 * 
+	 * @param ranges The ranges to coalesce
+	 * @param threshold The largest number of ranges in a single task
+	 */
+	private void coalesce(List<TickRange> ranges, int threshold) {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		
+		try {
+			assertEquals(
+				TickRangeSet.of(ranges),
+				TickRanges.coalesce(ranges, pool, threshold));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test public void coalesceSparse() {
+		coalesce(randomRanges(1, 20000, 1000000), 100);
+	}
+	
+	@Test public void coalesceDense() {
+		coalesce(randomRanges(2, 20000, 10000), 100);
+	}
+	
+	@Test public void coalesceAcrossChunks() {
+		// one long range sorts into the first chunk and covers every later one
+		List<TickRange> ranges = randomRanges(3, 1000, 5000);
+		ranges.add(new TickRange(0, 6000));
+		coalesce(ranges, 10);
+	}
+	
+	@Test public void coalesceBelowThreshold() {
+		coalesce(randomRanges(4, 50, 1000), 100);
+	}
+	
+	@Test public void coalesceEmpty() {
+		coalesce(new ArrayList<TickRange>(), 1);
+	}
+	
+	@Test public void coalesceCommonPool() {
+		List<TickRange> ranges = randomRanges(5, 100000, 10000000);
+		assertEquals(
+			TickRangeSet.of(ranges),
+			TickRanges.coalesce(ranges, ForkJoinPool.commonPool()));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void coalesceBadThreshold() {
+		TickRanges.coalesce(
+			randomRanges(6, 10, 100), ForkJoinPool.commonPool(), 0);
+	}
+	
+	/**
+	 * Helper for segment tests. Checks the segments of random ranges tick
+	 * by tick against the ranges that contain each tick.
+	 * 
+	 * @param ranges The ranges to split
+	 * @param span One past the highest tick any range covers
+	 */
+	private void segment(List<TickRange> ranges, int span) {
+		TickRangeSegments segments = TickRanges.segment(ranges);
+		int s = 0;
+		int[] previous = new int[0];
+		
+		for (int tick = 0; tick < span; tick++) {
+			List<Integer> expected = new ArrayList<Integer>();
+			
+			for (int i = 0; i < ranges.size(); i++) {
+				if (ranges.get(i).start <= tick && tick < ranges.get(i).end) {
+					expected.add(i);
+				}
+			}
+			
+			if (s < segments.size() && segments.getEndTick(s) == tick) {
+				s++;
+			}
+			
+			if (expected.isEmpty()) {
+				assertTrue(s == segments.size() || tick < segments.getTick(s));
+				previous = new int[0];
+				continue;
+			}
+			
+			assertTrue(segments.getTick(s) <= tick && tick < segments.getEndTick(s));
+			int[] covering = segments.covering(s);
+			assertEquals(expected.size(), segments.coverCount(s));
+			
+			for (int j = 0; j < covering.length; j++) {
+				assertEquals(expected.get(j).intValue(), covering[j]);
+				assertEquals(covering[j], segments.cover(s, j));
+			}
+			
+			// a new segment only starts when the covering ranges change
+			if (segments.getTick(s) == tick) {
+				assertFalse(Arrays.equals(previous, covering));
+			}
+			
+			previous = covering;
+		}
+		
+		assertEquals(segments.size(), s);
+	}
+	
+	@Test public void segmentSparse() {
+		segment(randomRanges(7, 100, 5000), 5020);
+	}
+	
+	@Test public void segmentDense() {
+		segment(randomRanges(8, 500, 200), 220);
+	}
+	
+	@Test public void segmentDuplicates() {
+		TickRange r = new TickRange(10, 20, true);
+		TickRangeSegments segments = TickRanges.segment(Arrays.asList(r, r, r));
+		assertEquals(1, segments.size());
+		assertEquals(r, segments.get(0));
+		assertArrayEquals(new int[] {0, 1, 2}, segments.covering(0));
+	}
+	
+	@Test public void segmentEmpty() {
+		assertEquals(0, TickRanges.segment(new ArrayList<TickRange>()).size());
+	}
+	
+	@Test public void segmentMatchesSplitUnion() {
+		Random random = new Random(9);
+		
+		for (int i = 0; i < 2000; i++) {
+			TickRange a = new TickRange(random.nextInt(20), 1 + random.nextInt(10));
+			TickRange b = new TickRange(random.nextInt(20), 1 + random.nextInt(10));
+			TickRangeSegments segments = TickRanges.segment(Arrays.asList(a, b));
+			TickRange[] expected = a.splitUnion(b);
+			assertEquals(expected.length, segments.size());
+			
+			for (int s = 0; s < expected.length; s++) {
+				assertEquals(expected[s], segments.get(s));
+			}
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void segmentEmptyRange() {
+		TickRangeProvider empty = new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return 20;
+			}
+			
+			@Override
+			public long getEndTick() {
+				return 20;
+			}
+			
+			@Override
+			public long getTickLength() {
+				return 0;
+			}
+		};
+		
+		TickRanges.segment(Arrays.asList(new TickRange(10, 20, true), empty));
+	}
+}
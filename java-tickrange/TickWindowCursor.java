@@ -0,0 +1,282 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cursor that tracks which ranges are active in a window of ticks that
+ * only moves forward, such as <code>[now, now + lookahead)</code> during
+ * playback, without checking every range each time the window moves.
+ * <p>
+ * The ranges are held in order of start tick with a pointer to the first
+ * one that has not started yet, and the active ranges are held in a
+ * min-heap ordered by end tick. When the window advances, ranges are
+ * removed from the top of the heap until the earliest end is inside the
+ * window, and the pointer moves past every range that now starts before
+ * the end of the window. Each range enters and exits at most once, so
+ * advancing through a whole sequence takes O(n log n) time in total, and
+ * advancing does not create any objects.
+ * <p>
+ * A range is active while it intersects the window, as determined by
+ * {@link TickRange#intersects(TickRangeProvider)}. A range that starts
+ * and ends between one window and the next is never active, so it is
+ * not reported at all.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @author Tim Mullin
+ * 
+ * @param <T> The type of range the cursor moves over
+ */
+public final class TickWindowCursor<T extends TickRangeProvider> {
+	
+	/**
+	 * Receives the ranges that become active or inactive as the window
+	 * advances.
+	 * 
+	 * @param <T> The type of range
+	 */
+	public interface Listener<T> {
+		/**
+		 * Called when a range starts to intersect the window.
+		 * 
+		 * @param r The range that became active
+		 */
+		void entered(T r);
+		
+		/**
+		 * Called when a range no longer intersects the window.
+		 * 
+		 * @param r The range that became inactive
+		 */
+		void exited(T r);
+	}
+	
+	/**
+	 * The ranges in order of start tick
+	 */
+	private final List<T> ranges;
+	
+	/**
+	 * The start ticks of the ranges
+	 */
+	private final long[] starts;
+	
+	/**
+	 * The end ticks of the ranges
+	 */
+	private final long[] ends;
+	
+	/**
+	 * The indices of the active ranges as a min-heap on end tick
+	 */
+	private final int[] heap;
+	
+	/**
+	 * The number of active ranges
+	 */
+	private int active;
+	
+	/**
+	 * The index of the first range that has not become active or been
+	 * skipped
+	 */
+	private int next;
+	
+	/**
+	 * The start of the current window
+	 */
+	private long windowStart;
+	
+	/**
+	 * The end of the current window
+	 */
+	private long windowEnd;
+	
+	/**
+	 * Creates a cursor over ranges that are sorted by start tick, with an
+	 * empty window at tick zero so that no range is active.
+	 * 
+	 * @param sorted The ranges, in ascending order of start tick
+	 * @throws IllegalArgumentException If the ranges are not sorted by
+	 * 		start tick
+	 */
+	public TickWindowCursor(Iterable<? extends T> sorted) {
+		List<T> list = new ArrayList<T>();
+		
+		for (T r : sorted) {
+			if (!list.isEmpty() &&
+					r.getTick() < list.get(list.size() - 1).getTick()) {
+				throw new IllegalArgumentException(
+					"ranges must be sorted by start tick");
+			}
+			
+			list.add(r);
+		}
+		
+		int size = list.size();
+		this.ranges = list;
+		this.starts = new long[size];
+		this.ends   = new long[size];
+		this.heap   = new int[size];
+		
+		for (int i = 0; i < size; i++) {
+			starts[i] = list.get(i).getTick();
+			ends[i]   = list.get(i).getEndTick();
+		}
+	}
+	
+	/**
+	 * Moves the window forward, reporting every range that stops
+	 * intersecting the window and then every range that starts to.
+	 * 
+	 * @param start The first tick of the new window
+	 * @param end One past the last tick of the new window
+	 * @param listener Receives the ranges that exit and enter the window,
+	 * 		or null if they do not need to be reported
+	 * @throws IllegalArgumentException If the window is empty or either
+	 * 		end of it would move backwards
+	 */
+	public void advance(long start, long end, Listener<? super T> listener) {
+		if (end <= start) {
+			throw new IllegalArgumentException("length must be > 0");
+		}
+		
+		if (start < windowStart || end < windowEnd) {
+			throw new IllegalArgumentException("window must not move backwards");
+		}
+		
+		windowStart = start;
+		windowEnd   = end;
+		
+		while (active > 0 && ends[heap[0]] <= start) {
+			int i = heap[0];
+			heap[0] = heap[--active];
+			siftDown(0);
+			
+			if (null != listener) {
+				listener.exited(ranges.get(i));
+			}
+		}
+		
+		for (; next < starts.length && starts[next] < end; next++) {
+			// skipped over entirely since the last window
+			if (ends[next] <= start) {
+				continue;
+			}
+			
+			heap[active] = next;
+			siftUp(active++);
+			
+			if (null != listener) {
+				listener.entered(ranges.get(next));
+			}
+		}
+	}
+	
+	/**
+	 * Moves the window forward to the supplied range.
+	 * 
+	 * @param window The new window
+	 * @param listener Receives the ranges that exit and enter the window,
+	 * 		or null if they do not need to be reported
+	 * @see #advance(long, long, Listener)
+	 */
+	public void advance(TickRangeProvider window, Listener<? super T> listener) {
+		advance(window.getTick(), window.getEndTick(), listener);
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges that intersect the current window
+	 */
+	public int activeCount() {
+		return active;
+	}
+	
+	/**
+	 * Gets one of the active ranges. The active ranges are in no
+	 * particular order, except that the first one ends no later than any
+	 * of the others.
+	 * 
+	 * @param i The index of the active range, from 0 to
+	 * 		<code>activeCount() - 1</code>
+	 * @return The active range
+	 */
+	public T active(int i) {
+		if (i < 0 || i >= active) {
+			throw new IndexOutOfBoundsException(
+				"index: " + i + ", active: " + active);
+		}
+		
+		return ranges.get(heap[i]);
+	}
+	
+	/**
+	 * 
+	 * @return The first tick of the current window
+	 */
+	public long getWindowStart() {
+		return windowStart;
+	}
+	
+	/**
+	 * 
+	 * @return One past the last tick of the current window
+	 */
+	public long getWindowEnd() {
+		return windowEnd;
+	}
+	
+	/**
+	 * Moves the entry at a heap index up until its parent ends no later.
+	 */
+	private void siftUp(int k) {
+		int i = heap[k];
+		long end = ends[i];
+		
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			
+			if (ends[heap[parent]] <= end) {
+				break;
+			}
+			
+			heap[k] = heap[parent];
+			k = parent;
+		}
+		
+		heap[k] = i;
+	}
+	
+	/**
+	 * Moves the entry at a heap index down until its children end no
+	 * earlier.
+	 */
+	private void siftDown(int k) {
+		if (k >= active) {
+			return;
+		}
+		
+		int i = heap[k];
+		long end = ends[i];
+		int half = active >>> 1;
+		
+		while (k < half) {
+			int child = 2 * k + 1;
+			
+			if (child + 1 < active && ends[heap[child + 1]] < ends[heap[child]]) {
+				child++;
+			}
+			
+			if (end <= ends[heap[child]]) {
+				break;
+			}
+			
+			heap[k] = heap[child];
+			k = child;
+		}
+		
+		heap[k] = i;
+	}
+}
@@ -0,0 +1,160 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickWindowCursorTest {
+	/**
+	 * A listener that records the ranges that enter and exit.
+	 */
+	private static class Recorder
+			implements TickWindowCursor.Listener<TickRange> {
+		final List<TickRange> entered = new ArrayList<TickRange>();
+		final List<TickRange> exited = new ArrayList<TickRange>();
+		
+		@Override
+		public void entered(TickRange r) {
+			entered.add(r);
+		}
+		
+		@Override
+		public void exited(TickRange r) {
+			exited.add(r);
+		}
+	}
+	
+	/**
+	 * Helper that creates a list of ranges from pairs of start and end
+	 * ticks.
+	 * 
+	 * @param ticks Pairs of start and end ticks
+	 * @return The list of ranges
+	 */
+	private static List<TickRange> ranges(long... ticks) {
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.add(new TickRange(ticks[i], ticks[i + 1], true));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that collects the active ranges of a cursor.
+	 * 
+	 * @param cursor The cursor
+	 * @return The active ranges
+	 */
+	private static Set<TickRange> active(TickWindowCursor<TickRange> cursor) {
+		Set<TickRange> ret = new HashSet<TickRange>();
+		
+		for (int i = 0; i < cursor.activeCount(); i++) {
+			ret.add(cursor.active(i));
+		}
+		
+		return ret;
+	}
+	
+	@Test public void entersAndExits() {
+		TickWindowCursor<TickRange> cursor = new TickWindowCursor<TickRange>(
+			ranges(0, 100, 50, 150, 100, 200, 300, 400));
+		Recorder recorder = new Recorder();
+		
+		cursor.advance(0, 60, recorder);
+		assertEquals(ranges(0, 100, 50, 150), recorder.entered);
+		assertTrue(recorder.exited.isEmpty());
+		
+		cursor.advance(100, 160, recorder);
+		assertEquals(ranges(0, 100, 50, 150, 100, 200), recorder.entered);
+		assertEquals(ranges(0, 100), recorder.exited);
+		assertEquals(
+			new HashSet<TickRange>(ranges(50, 150, 100, 200)), active(cursor));
+		assertEquals(new TickRange(50, 150, true), cursor.active(0));
+	}
+	
+	@Test public void skipsRangesBetweenWindows() {
+		TickWindowCursor<TickRange> cursor = new TickWindowCursor<TickRange>(
+			ranges(10, 20, 30, 40, 500, 600));
+		Recorder recorder = new Recorder();
+		cursor.advance(0, 5, recorder);
+		cursor.advance(100, 550, recorder);
+		assertEquals(ranges(500, 600), recorder.entered);
+		assertTrue(recorder.exited.isEmpty());
+	}
+	
+	@Test public void matchesIntersects() {
+		Random random = new Random(1);
+		List<TickRange> ranges = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < 2000; i++) {
+			ranges.add(new TickRange(
+				random.nextInt(100000), 1 + random.nextInt(2000)));
+		}
+		
+		Collections.sort(ranges);
+		TickWindowCursor<TickRange> cursor = new TickWindowCursor<TickRange>(ranges);
+		Set<TickRange> previous = new HashSet<TickRange>();
+		long now = 0;
+		
+		while (now < 110000) {
+			TickRange window = new TickRange(now, 480);
+			Recorder recorder = new Recorder();
+			cursor.advance(window, recorder);
+			
+			Set<TickRange> expected = new HashSet<TickRange>();
+			
+			for (TickRange r : ranges) {
+				if (window.intersects(r)) {
+					expected.add(r);
+				}
+			}
+			
+			assertEquals(expected, active(cursor));
+			
+			Set<TickRange> exited = new HashSet<TickRange>(previous);
+			exited.removeAll(expected);
+			assertEquals(exited, new HashSet<TickRange>(recorder.exited));
+			assertEquals(exited.size(), recorder.exited.size());
+			
+			Set<TickRange> entered = new HashSet<TickRange>(expected);
+			entered.removeAll(previous);
+			assertEquals(entered, new HashSet<TickRange>(recorder.entered));
+			assertEquals(entered.size(), recorder.entered.size());
+			
+			for (int i = 1; i < cursor.activeCount(); i++) {
+				assertTrue(cursor.active(0).end <= cursor.active(i).end);
+			}
+			
+			previous = expected;
+			now += random.nextInt(300);
+		}
+	}
+	
+	@Test public void nullListener() {
+		TickWindowCursor<TickRange> cursor = new TickWindowCursor<TickRange>(
+			ranges(0, 100, 50, 150));
+		cursor.advance(60, 120, null);
+		assertEquals(2, cursor.activeCount());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void backwards() {
+		TickWindowCursor<TickRange> cursor = new TickWindowCursor<TickRange>(
+			ranges(0, 100));
+		cursor.advance(50, 60, null);
+		cursor.advance(40, 60, null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unsorted() {
+		new TickWindowCursor<TickRange>(ranges(50, 100, 0, 100));
+	}
+}
@@ -0,0 +1,30 @@
+package net.tmullin.ipather;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the benchmark jar. Accepts the usual JMH command line
+ * options but always enables the GC profiler, so every run reports the
+ * allocation rate and bytes allocated per operation alongside the
+ * timings.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class BenchmarkMain {
+	
+	private BenchmarkMain() {
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,139 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the size and decode throughput of {@link CompressedTickRanges}
+ * on note-like data: start ticks near a 480 PPQ grid with a little
+ * humanization and lengths of a few sixteenth notes. The decode, scan
+ * and encode scores are per range, so they report ranges per second.
+ * encodeFootprint() reports the size of the encoding as the secondary
+ * results <code>encodedBytes</code> and <code>serializedBytes</code>,
+ * the latter including the index, for 2^20 ranges that take 16 bytes
+ * each uncompressed.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressedTickRangesBenchmark {
+	
+	private static final int COUNT = 1 << 20;
+	
+	/**
+	 * The number of ticks between the start of one chord and the next
+	 */
+	@Param({"120", "480"})
+	public int spacing;
+	
+	private List<TickRange> notes;
+	private PackedTickRangeList packed;
+	private CompressedTickRanges compressed;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		notes = new ArrayList<TickRange>(COUNT);
+		long tick = 0;
+		
+		for (int i = 0; i < COUNT; i++) {
+			// about one chord of three notes per step
+			if (0 == random.nextInt(3)) {
+				tick += spacing;
+			}
+			
+			long start = Math.max(0, tick + random.nextInt(21) - 10);
+			notes.add(new TickRange(start, 120 * (1 + random.nextInt(8)) - random.nextInt(20)));
+		}
+		
+		packed = new PackedTickRangeList(notes);
+		packed.sort();
+		compressed = CompressedTickRanges.encode(notes);
+	}
+	
+	/**
+	 * The size of the encoded ranges, reported by JMH next to the score of
+	 * encodeFootprint()
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Footprint {
+		
+		/**
+		 * The bytes of encoded ranges
+		 */
+		public long encodedBytes;
+		
+		/**
+		 * The bytes written by toByteArray(), which adds the index
+		 */
+		public long serializedBytes;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public void decode(Blackhole bh) {
+		CompressedTickRanges.Cursor cursor = compressed.cursor();
+		
+		while (cursor.next()) {
+			bh.consume(cursor.getEndTick());
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public void scanPacked(Blackhole bh) {
+		for (int i = 0; i < COUNT; i++) {
+			bh.consume(packed.getEndTick(i));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public CompressedTickRanges encode() {
+		return CompressedTickRanges.encode(notes);
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public CompressedTickRanges encodeFootprint(Footprint footprint) {
+		CompressedTickRanges ret = CompressedTickRanges.encode(notes);
+		footprint.encodedBytes    = ret.encodedSize();
+		footprint.serializedBytes = ret.toByteArray().length;
+		return ret;
+	}
+	
+	@Benchmark
+	public long seek() {
+		CompressedTickRanges.Cursor cursor = compressed.seek(
+			notes.get(COUNT / 2).start);
+		cursor.next();
+		return cursor.getEndTick();
+	}
+}
@@ -0,0 +1,91 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares quantizing a sorted batch of recorded notes in place with
+ * {@link Quantizer} against creating a new {@link TickRange} for every
+ * quantized note and sorting the results again.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuantizerBenchmark {
+	
+	@Param({"50000"})
+	public int count;
+	
+	private final Quantizer quantizer = new Quantizer(
+		120, 0.8, 0.33, true, Quantizer.EmptyRangePolicy.EXTEND_TO_GRID);
+	
+	private List<TickRange> notes;
+	private PackedTickRangeList packed;
+	private long[] starts;
+	private long[] ends;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		notes = new ArrayList<TickRange>(count);
+		
+		for (int i = 0; i < count; i++) {
+			// humanized sixteenths at 480 PPQ
+			long start = Math.max(0, i * 120L + random.nextInt(41) - 20);
+			notes.add(new TickRange(start, 30 + random.nextInt(200)));
+		}
+		
+		Collections.sort(notes);
+		packed = new PackedTickRangeList(notes);
+		starts = new long[count];
+		ends = new long[count];
+	}
+	
+	@Benchmark
+	public int packed() {
+		System.arraycopy(packed.startArray(), 0, starts, 0, count);
+		System.arraycopy(packed.endArray(), 0, ends, 0, count);
+		return quantizer.quantize(starts, ends, 0, count);
+	}
+	
+	@Benchmark
+	public List<TickRange> objectsAndSort() {
+		List<TickRange> ret = new ArrayList<TickRange>(count);
+		
+		for (TickRange r : notes) {
+			long start = quantizer.quantize(r.start);
+			long end = quantizer.quantize(r.end);
+			
+			if (end <= start) {
+				end = quantizer.nextGridPoint(start);
+			}
+			
+			ret.add(new TickRange(start, end, true));
+		}
+		
+		Collections.sort(ret);
+		return ret;
+	}
+}
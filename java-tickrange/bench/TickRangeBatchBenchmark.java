@@ -0,0 +1,81 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares building ranges from messy input with {@link TickRangeBatch}
+ * against calling the {@link TickRange} constructor for each one and
+ * catching the exception for the bad ones.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickRangeBatchBenchmark {
+	
+	private static final int COUNT = 100000;
+	
+	/**
+	 * The percentage of ranges that are not valid
+	 */
+	@Param({"0", "1", "10"})
+	public int badPercent;
+	
+	private long[] starts;
+	private long[] ends;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		starts = new long[COUNT];
+		ends = new long[COUNT];
+		
+		for (int i = 0; i < COUNT; i++) {
+			starts[i] = random.nextInt(1000000);
+			ends[i] = (random.nextInt(100) < badPercent)
+				? starts[i] - random.nextInt(10)
+				: starts[i] + 1 + random.nextInt(1000);
+		}
+	}
+	
+	@Benchmark
+	public TickRangeBatch batch() {
+		return TickRangeBatch.fromEnds(starts, ends, TickRangeBatch.Mode.STRICT);
+	}
+	
+	@Benchmark
+	public List<TickRange> constructorAndCatch() {
+		List<TickRange> ret = new ArrayList<TickRange>(COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			try {
+				ret.add(new TickRange(starts[i], ends[i], true));
+			} catch (IllegalArgumentException e) {
+				// skipped
+			}
+		}
+		
+		return ret;
+	}
+}
@@ -0,0 +1,234 @@
+package net.tmullin.ipather;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks every public {@link TickRange} operation against each of the
+ * eleven permutations of two ranges listed in TickRangeTest. Each
+ * permutation is run with the second range passed both as a TickRange
+ * and as a plain {@link TickRangeProvider}, so the allocation done by
+ * {@link TickRange#fromProvider(TickRangeProvider)} shows up in the GC
+ * profiler output.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickRangeBenchmark {
+	/* The possible permutations of two ranges, numbered the same way as
+	 * in TickRangeTest.
+	 * 
+	 * ---------	1
+	 *   -----
+	 *   
+	 * ---------    2
+	 *   -------
+	 * 
+	 *   -------    3
+	 * ---------
+	 *   
+	 * ---------    4
+	 * ------
+	 *   
+	 * ---------    5
+	 * -----------
+	 * 
+	 * ---------	6
+	 *   ---------
+	 * 
+	 * ---------	7
+	 * ---------
+	 * 
+	 * ---------	8
+	 *            ------
+	 * 
+	 *   -----		9
+	 * ---------
+	 * 
+	 *  ---------	10
+	 * ---------
+	 * 
+	 *       -----	11
+	 * ----
+	 */
+	
+	/**
+	 * The start and end ticks of both ranges for each permutation, using
+	 * the same values as TickRangeTest
+	 */
+	private static final long[][] PERMUTATIONS = {
+		null,
+		{123, 456, 150, 400},
+		{123, 456, 150, 456},
+		{150, 456, 123, 456},
+		{123, 456, 123, 400},
+		{123, 400, 123, 456},
+		{123, 400, 150, 456},
+		{123, 456, 123, 456},
+		{123, 150, 400, 456},
+		{150, 400, 123, 456},
+		{150, 456, 123, 400},
+		{400, 456, 123, 150},
+	};
+	
+	/**
+	 * A TickRangeProvider that is not a TickRange, like a note in a
+	 * sequence would be.
+	 */
+	static final class Note implements TickRangeProvider {
+		private final long tick;
+		private final long length;
+		
+		Note(long tick, long length) {
+			this.tick   = tick;
+			this.length = length;
+		}
+		
+		@Override
+		public long getTick() {
+			return tick;
+		}
+		
+		@Override
+		public long getTickLength() {
+			return length;
+		}
+		
+		@Override
+		public long getEndTick() {
+			return tick + length;
+		}
+	}
+	
+	@Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"})
+	public int permutation;
+	
+	@Param({"TickRange", "Provider"})
+	public String argument;
+	
+	private long start1, end1, start2, end2;
+	private TickRange range;
+	private TickRangeProvider other;
+	private long[] bounds;
+	
+	@Setup
+	public void setUp() {
+		long[] ticks = PERMUTATIONS[permutation];
+		start1 = ticks[0];
+		end1   = ticks[1];
+		start2 = ticks[2];
+		end2   = ticks[3];
+		range  = new TickRange(start1, end1, true);
+		other  = "TickRange".equals(argument)
+			? new TickRange(start2, end2, true)
+			: new Note(start2, end2 - start2);
+		bounds = new long[TickRange.SPLIT_UNION_LENGTH];
+	}
+	
+	@Benchmark
+	public TickRange constructEnd() {
+		return new TickRange(start1, end1, true);
+	}
+	
+	@Benchmark
+	public TickRange constructLength() {
+		return new TickRange(start1, end1 - start1);
+	}
+	
+	@Benchmark
+	public TickRange fromProvider() {
+		return TickRange.fromProvider(other);
+	}
+	
+	@Benchmark
+	public long getTickLength() {
+		return range.getTickLength();
+	}
+	
+	@Benchmark
+	public boolean equalsProvider() {
+		return range.equals(other);
+	}
+	
+	@Benchmark
+	public int hashCodeRange() {
+		return range.hashCode();
+	}
+	
+	@Benchmark
+	public String toStringRange() {
+		return range.toString();
+	}
+	
+	@Benchmark
+	public int compareTick() {
+		return range.compareTick(other);
+	}
+	
+	@Benchmark
+	public int compareEndTick() {
+		return range.compareEndTick(other);
+	}
+	
+	@Benchmark
+	public int compareTo() {
+		return range.compareTo(other);
+	}
+	
+	@Benchmark
+	public int comparator() {
+		return TickRange.COMPARATOR.compare(range, other);
+	}
+	
+	@Benchmark
+	public boolean contains() {
+		return range.contains(other);
+	}
+	
+	@Benchmark
+	public boolean intersects() {
+		return range.intersects(other);
+	}
+	
+	@Benchmark
+	public TickRange intersect() {
+		return range.intersect(other);
+	}
+	
+	@Benchmark
+	public TickRange union() {
+		return range.union(other);
+	}
+	
+	@Benchmark
+	public TickRange[] splitUnion() {
+		return range.splitUnion(other);
+	}
+	
+	@Benchmark
+	public int splitUnionBuffer() {
+		return range.splitUnion(other, bounds, 0);
+	}
+	
+	@Benchmark
+	public int splitUnionPrimitive() {
+		return TickRange.splitUnion(start1, end1, start2, end2, bounds, 0);
+	}
+}
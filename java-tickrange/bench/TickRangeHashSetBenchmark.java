@@ -0,0 +1,132 @@
+package net.tmullin.ipather;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares removing duplicate notes with a {@link HashSet} of
+ * {@link TickRange}s against a {@link TickRangeHashSet}, on notes that
+ * start and end on a grid. The number of distinct hash codes each one
+ * sees is printed when each trial is set up, to show how many of the
+ * grid ranges collide under {@link TickRange#hashCode()}. The scores
+ * are per note.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickRangeHashSetBenchmark {
+	
+	private static final int COUNT = 1 << 14;
+	
+	/**
+	 * The number of ticks between grid points
+	 */
+	@Param({"120", "128"})
+	public int grid;
+	
+	private TickRange[] notes;
+	private Set<TickRange> hashSet;
+	private TickRangeHashSet tickRangeHashSet;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		notes = new TickRange[COUNT];
+		
+		for (int i = 0; i < COUNT; i++) {
+			// about half of the notes are duplicates
+			notes[i] = new TickRange(
+				(long) random.nextInt(COUNT / 32) * grid,
+				(long) (1 + random.nextInt(16)) * grid);
+		}
+		
+		hashSet = dedupeHashSet();
+		tickRangeHashSet = dedupeTickRangeHashSet();
+		
+		Set<Integer> tickRangeHashes = new HashSet<Integer>();
+		Set<Integer> mixedHashes = new HashSet<Integer>();
+		
+		for (TickRange r : hashSet) {
+			tickRangeHashes.add(r.hashCode());
+			mixedHashes.add((int) TickRangeHashMap.hash(r.start, r.end));
+		}
+		
+		System.out.printf(
+			"%n%d distinct ranges, %d TickRange hash codes, %d mixed hash codes%n",
+			hashSet.size(), tickRangeHashes.size(), mixedHashes.size());
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public Set<TickRange> dedupeHashSet() {
+		Set<TickRange> ret = new HashSet<TickRange>();
+		
+		for (TickRange r : notes) {
+			ret.add(r);
+		}
+		
+		return ret;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public TickRangeHashSet dedupeTickRangeHashSet() {
+		TickRangeHashSet ret = new TickRangeHashSet();
+		
+		for (TickRange r : notes) {
+			ret.add(r.start, r.end);
+		}
+		
+		return ret;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public int containsHashSet() {
+		int ret = 0;
+		
+		for (TickRange r : notes) {
+			if (hashSet.contains(r)) {
+				ret++;
+			}
+		}
+		
+		return ret;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public int containsTickRangeHashSet() {
+		int ret = 0;
+		
+		for (TickRange r : notes) {
+			if (tickRangeHashSet.contains(r.start, r.end)) {
+				ret++;
+			}
+		}
+		
+		return ret;
+	}
+}
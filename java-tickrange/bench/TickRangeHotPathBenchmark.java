@@ -0,0 +1,281 @@
+package net.tmullin.ipather;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link TickRange#intersects(TickRangeProvider)},
+ * {@link TickRange#intersect(TickRangeProvider)} and
+ * {@link TickRange#union(TickRangeProvider)} against copies of their
+ * earlier branchy implementations, for each of the eleven permutations
+ * of two ranges listed in TickRangeTest.
+ * <p>
+ * Each invocation passes the same second range four times. With
+ * <code>callSite</code> set to <code>TickRange</code> or
+ * <code>Provider</code> all four are the same class, so the calls
+ * through {@link TickRangeProvider} stay monomorphic. With
+ * <code>Megamorphic</code> they are four different classes, which stops
+ * the JIT from inlining those calls. The scores are per call.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickRangeHotPathBenchmark {
+	
+	/**
+	 * The start and end ticks of both ranges for each permutation, using
+	 * the same values as TickRangeTest
+	 */
+	private static final long[][] PERMUTATIONS = {
+		null,
+		{123, 456, 150, 400},
+		{123, 456, 150, 456},
+		{150, 456, 123, 456},
+		{123, 456, 123, 400},
+		{123, 400, 123, 456},
+		{123, 400, 150, 456},
+		{123, 456, 123, 456},
+		{123, 150, 400, 456},
+		{150, 400, 123, 456},
+		{150, 456, 123, 400},
+		{400, 456, 123, 150},
+	};
+	
+	private static final int CALLS = 4;
+	
+	/**
+	 * A TickRangeProvider that stores its end tick instead of its length
+	 */
+	static final class EndNote implements TickRangeProvider {
+		private final long tick;
+		private final long endTick;
+		
+		EndNote(long tick, long endTick) {
+			this.tick    = tick;
+			this.endTick = endTick;
+		}
+		
+		@Override
+		public long getTick() {
+			return tick;
+		}
+		
+		@Override
+		public long getTickLength() {
+			return endTick - tick;
+		}
+		
+		@Override
+		public long getEndTick() {
+			return endTick;
+		}
+	}
+	
+	/**
+	 * A TickRangeProvider that keeps its ticks in an array
+	 */
+	static final class ArrayNote implements TickRangeProvider {
+		private final long[] ticks;
+		
+		ArrayNote(long tick, long endTick) {
+			this.ticks = new long[] {tick, endTick};
+		}
+		
+		@Override
+		public long getTick() {
+			return ticks[0];
+		}
+		
+		@Override
+		public long getTickLength() {
+			return ticks[1] - ticks[0];
+		}
+		
+		@Override
+		public long getEndTick() {
+			return ticks[1];
+		}
+	}
+	
+	@Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"})
+	public int permutation;
+	
+	@Param({"TickRange", "Provider", "Megamorphic"})
+	public String callSite;
+	
+	private TickRange range;
+	private TickRangeProvider[] others;
+	
+	@Setup
+	public void setUp() {
+		long[] ticks = PERMUTATIONS[permutation];
+		long start2 = ticks[2];
+		long end2   = ticks[3];
+		range  = new TickRange(ticks[0], ticks[1], true);
+		others = new TickRangeProvider[CALLS];
+		
+		for (int i = 0; i < CALLS; i++) {
+			if ("TickRange".equals(callSite)) {
+				others[i] = new TickRange(start2, end2, true);
+			} else if ("Provider".equals(callSite)) {
+				others[i] = new TickRangeBenchmark.Note(start2, end2 - start2);
+			} else {
+				switch (i) {
+					case 0:  others[i] = new TickRange(start2, end2, true); break;
+					case 1:  others[i] = new TickRangeBenchmark.Note(start2, end2 - start2); break;
+					case 2:  others[i] = new EndNote(start2, end2); break;
+					default: others[i] = new ArrayNote(start2, end2); break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The implementation of {@link TickRange#intersects(TickRangeProvider)}
+	 * before it was made branch-free
+	 */
+	static boolean legacyIntersects(TickRange self, TickRangeProvider r) {
+		if (self.start <= r.getTick()) {
+			if (r.getTick() < self.end) {
+				return true;
+			}
+			
+			return false;
+		} else {
+			if (self.start < r.getEndTick()) {
+				return true;
+			}
+			
+			return false;
+		}
+	}
+	
+	/**
+	 * The implementation of {@link TickRange#intersect(TickRangeProvider)}
+	 * before it read each tick only once
+	 */
+	static TickRange legacyIntersect(TickRange self, TickRangeProvider r) {
+		long start = self.start;
+		long end   = self.end;
+		
+		if (start <= r.getTick() && r.getEndTick() <= end) {
+			return TickRange.fromProvider(r);
+		}
+		
+		if (r.getTick() <= start && end <= r.getEndTick())
+			return self;
+		
+		if (start < r.getTick() && end < r.getEndTick() && r.getTick() < end)
+			return new TickRange(r.getTick(), end, true);
+		
+		if (r.getTick() < start && r.getEndTick() < end && start < r.getEndTick())
+			return new TickRange(start, r.getEndTick(), true);
+		
+		return null;
+	}
+	
+	/**
+	 * The implementation of {@link TickRange#union(TickRangeProvider)}
+	 * before it stopped converting its argument with fromProvider()
+	 */
+	static TickRange legacyUnion(TickRange self, TickRangeProvider trp) {
+		TickRange r = TickRange.fromProvider(trp);
+		
+		if (self.contains(r)) {
+			return self;
+		}
+		
+		if (r.contains(self)) {
+			return r;
+		}
+		
+		if (self.start <= r.start) {
+			if (self.end <= r.start) {
+				return null;
+			}
+			
+			if (r.end <= self.end) {
+				return self;
+			}
+			
+			return new TickRange(self.start, r.end, true);
+		} else {
+			if (r.end <= self.start) {
+				return null;
+			}
+			
+			if (self.end <= r.end) {
+				return r;
+			}
+			
+			return new TickRange(r.start, self.end, true);
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(CALLS)
+	public void intersects(Blackhole bh) {
+		for (TickRangeProvider other : others) {
+			bh.consume(range.intersects(other));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(CALLS)
+	public void intersectsLegacy(Blackhole bh) {
+		for (TickRangeProvider other : others) {
+			bh.consume(legacyIntersects(range, other));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(CALLS)
+	public void intersect(Blackhole bh) {
+		for (TickRangeProvider other : others) {
+			bh.consume(range.intersect(other));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(CALLS)
+	public void intersectLegacy(Blackhole bh) {
+		for (TickRangeProvider other : others) {
+			bh.consume(legacyIntersect(range, other));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(CALLS)
+	public void union(Blackhole bh) {
+		for (TickRangeProvider other : others) {
+			bh.consume(range.union(other));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(CALLS)
+	public void unionLegacy(Blackhole bh) {
+		for (TickRangeProvider other : others) {
+			bh.consume(legacyUnion(range, other));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package net.tmullin.ipather;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares creating a {@link TickRange} for every note against getting
+ * it from a {@link TickRangeInterner}, on notes that start and end on a
+ * grid. The scores of construct() and intern() are the cost of each
+ * lookup, and the GC profiler's allocation per operation shows the
+ * garbage that interning avoids.
+ * <p>
+ * The footprint benchmarks hold one range for every note, once created
+ * and once interned, and report the heap those ranges retain as the
+ * secondary results <code>distinctRanges</code> and
+ * <code>retainedBytes</code>. The size of a range is measured with the
+ * thread's allocation counter rather than assumed, so the numbers follow
+ * the JVM's object layout.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickRangeInternerBenchmark {
+	
+	private static final int COUNT = 1 << 16;
+	
+	/**
+	 * The capacity of the interner. The notes use about 4000 distinct
+	 * ranges, so the smaller interner has to keep evicting.
+	 */
+	@Param({"1024", "16384"})
+	public int capacity;
+	
+	private long[] starts;
+	private long[] ends;
+	private TickRangeInterner interner;
+	
+	/**
+	 * The heap retained by the ranges for the notes, reported by JMH next
+	 * to the score of each footprint benchmark
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Footprint {
+		
+		/**
+		 * The number of distinct range objects
+		 */
+		public long distinctRanges;
+		
+		/**
+		 * The bytes taken by the distinct range objects
+		 */
+		public long retainedBytes;
+		
+		private long rangeBytes;
+		
+		@Setup(Level.Trial)
+		public void setUp() {
+			com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			TickRange[] held = new TickRange[COUNT];
+			long before = threads.getCurrentThreadAllocatedBytes();
+			
+			for (int i = 0; i < COUNT; i++) {
+				held[i] = new TickRange(i, i + 1, true);
+			}
+			
+			long after = threads.getCurrentThreadAllocatedBytes();
+			rangeBytes = Math.round((after - before) / (double) held.length);
+		}
+		
+		void record(TickRange[] ranges) {
+			Set<TickRange> distinct = Collections.newSetFromMap(new IdentityHashMap<TickRange, Boolean>());
+			Collections.addAll(distinct, ranges);
+			distinctRanges = distinct.size();
+			retainedBytes  = distinctRanges * rangeBytes;
+		}
+	}
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		starts = new long[COUNT];
+		ends = new long[COUNT];
+		
+		for (int i = 0; i < COUNT; i++) {
+			starts[i] = (long) random.nextInt(256) * 120;
+			ends[i] = starts[i] + (long) (1 + random.nextInt(16)) * 120;
+		}
+		
+		interner = new TickRangeInterner(capacity);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public TickRange[] construct() {
+		TickRange[] ret = new TickRange[COUNT];
+		
+		for (int i = 0; i < COUNT; i++) {
+			ret[i] = new TickRange(starts[i], ends[i], true);
+		}
+		
+		return ret;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public TickRange[] intern() {
+		TickRange[] ret = new TickRange[COUNT];
+		
+		for (int i = 0; i < COUNT; i++) {
+			ret[i] = interner.intern(starts[i], ends[i]);
+		}
+		
+		return ret;
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public TickRange[] constructFootprint(Footprint footprint) {
+		TickRange[] ret = construct();
+		footprint.record(ret);
+		return ret;
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	public TickRange[] internFootprint(Footprint footprint) {
+		// a new interner, so every distinct range is created by this run
+		TickRangeInterner fresh = new TickRangeInterner(capacity);
+		TickRange[] ret = new TickRange[COUNT];
+		
+		for (int i = 0; i < COUNT; i++) {
+			ret[i] = fresh.intern(starts[i], ends[i]);
+		}
+		
+		footprint.record(ret);
+		return ret;
+	}
+}
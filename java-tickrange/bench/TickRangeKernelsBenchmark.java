@@ -0,0 +1,126 @@
+package net.tmullin.ipather;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares filtering ranges against a query range with the
+ * {@link TickRangeKernels}, both the Vector API implementation and the
+ * scalar fallback, against calling
+ * {@link TickRange#intersects(TickRangeProvider)} and
+ * {@link TickRange#contains(TickRangeProvider)} on each range. The
+ * vector implementation is only in the jar when it is built with
+ * <code>mvn -P jmh,vector package</code>.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class TickRangeKernelsBenchmark {
+	
+	private static final int COUNT = 1 << 20;
+	
+	/**
+	 * The length of the query range. The ranges start anywhere in the
+	 * first million ticks, so about 0.2% of them intersect the short
+	 * query and about half intersect the long one.
+	 */
+	@Param({"1000", "500000"})
+	public int queryLength;
+	
+	private TickRange[] ranges;
+	private long[] starts;
+	private long[] ends;
+	private long[] mask;
+	private TickRange query;
+	private TickRangeKernels.Impl scalar;
+	private TickRangeKernels.Impl vector;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		ranges = new TickRange[COUNT];
+		starts = new long[COUNT];
+		ends = new long[COUNT];
+		mask = new long[COUNT / 64];
+		
+		for (int i = 0; i < COUNT; i++) {
+			ranges[i] = new TickRange(random.nextInt(1000000), 1 + random.nextInt(1000));
+			starts[i] = ranges[i].start;
+			ends[i] = ranges[i].end;
+		}
+		
+		query = new TickRange(250000, queryLength);
+		scalar = TickRangeKernels.SCALAR;
+		vector = TickRangeKernels.loadVector();
+		
+		if (scalar == vector) {
+			throw new IllegalStateException(
+				"the vector kernels are not available, build with -P jmh,vector");
+		}
+	}
+	
+	@Benchmark
+	public int intersectsLoop() {
+		int count = 0;
+		
+		for (int i = 0; i < COUNT; i++) {
+			if (ranges[i].intersects(query)) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	@Benchmark
+	public int intersectsMaskScalar() {
+		return scalar.intersectsMask(starts, ends, COUNT, query.start, query.end, mask);
+	}
+	
+	@Benchmark
+	public int intersectsMaskVector() {
+		return vector.intersectsMask(starts, ends, COUNT, query.start, query.end, mask);
+	}
+	
+	@Benchmark
+	public int containsLoop() {
+		int count = 0;
+		
+		for (int i = 0; i < COUNT; i++) {
+			if (ranges[i].contains(query)) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	@Benchmark
+	public int containsCountScalar() {
+		return scalar.containsCount(starts, ends, COUNT, query.start, query.end);
+	}
+	
+	@Benchmark
+	public int containsCountVector() {
+		return vector.containsCount(starts, ends, COUNT, query.start, query.end);
+	}
+}
@@ -0,0 +1,106 @@
+package net.tmullin.ipather;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link TickRangeMap} with writers adding and
+ * removing notes while readers run playback-style overlapping queries,
+ * all on the same map. The map starts with a fixed number of notes and
+ * each writer removes a random note for every note it adds, so the size
+ * stays roughly constant.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class TickRangeMapBenchmark {
+	
+	@Param({"100000"})
+	public int count;
+	
+	private TickRangeMap<Integer> map;
+	private long span;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		map = new TickRangeMap<Integer>();
+		span = count * 60L;
+		
+		while (map.size() < count) {
+			map.put(note(random.nextLong()), 0);
+		}
+	}
+	
+	/**
+	 * Creates a note-like range from a random value, starting on a 120
+	 * tick grid and lasting one to eight grid steps.
+	 */
+	private TickRange note(long bits) {
+		long start = Math.floorMod(bits, span / 120) * 120;
+		return new TickRange(start, 120 * (1 + ((bits >>> 40) & 7)));
+	}
+	
+	private Integer write() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		map.put(note(random.nextLong()), 1);
+		return map.remove(note(random.nextLong()));
+	}
+	
+	private List<Map.Entry<TickRange, Integer>> read() {
+		long tick = ThreadLocalRandom.current().nextLong(span);
+		return map.overlapping(new TickRange(tick, 480));
+	}
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public Integer mixedWrite() {
+		return write();
+	}
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public List<Map.Entry<TickRange, Integer>> mixedRead() {
+		return read();
+	}
+	
+	@Benchmark
+	@Group("writeHeavy")
+	@GroupThreads(3)
+	public Integer writeHeavyWrite() {
+		return write();
+	}
+	
+	@Benchmark
+	@Group("writeHeavy")
+	@GroupThreads(1)
+	public List<Map.Entry<TickRange, Integer>> writeHeavyRead() {
+		return read();
+	}
+}
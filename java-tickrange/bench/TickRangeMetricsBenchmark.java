@@ -0,0 +1,276 @@
+package net.tmullin.ipather;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Shows what the {@link TickRangeMetrics} hooks cost. Each operation is
+ * run three ways: through a copy of TickRange's code without the hooks,
+ * through TickRange with metrics off, and through TickRange in a JVM
+ * started with {@link TickRangeCounters} installed. The first two should
+ * be the same, since with metrics off the JIT removes the hooks.
+ * <p>
+ * The three parameters are permutations 1, 6 and 8 of TickRangeTest. The
+ * other range is passed as a plain {@link TickRangeProvider}, so
+ * fromProvider() has to allocate and intersect() never returns its
+ * argument. The intersectRange benchmarks pass the other range as a
+ * TickRange instead, so that intersect() returns it in permutation 1.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickRangeMetricsBenchmark {
+	
+	/**
+	 * The start and end ticks of both ranges for permutations 1, 6 and 8,
+	 * where the second range lies inside the first, overlaps its end and
+	 * lies after it
+	 */
+	private static final long[][] PERMUTATIONS = {
+		{123, 456, 150, 400},
+		{123, 400, 150, 456},
+		{123, 150, 400, 456},
+	};
+	
+	@Param({"0", "1", "2"})
+	public int permutation;
+	
+	private long start1, end1, start2, end2;
+	private TickRange range;
+	private TickRangeProvider other;
+	private TickRange otherRange;
+	private long[] bounds;
+	
+	@Setup
+	public void setUp() {
+		long[] ticks = PERMUTATIONS[permutation];
+		start1 = ticks[0];
+		end1   = ticks[1];
+		start2 = ticks[2];
+		end2   = ticks[3];
+		range  = new TickRange(start1, end1, true);
+		other  = new TickRangeBenchmark.Note(start2, end2 - start2);
+		otherRange = new TickRange(start2, end2, true);
+		bounds = new long[TickRange.SPLIT_UNION_LENGTH];
+	}
+	
+	/**
+	 * {@link TickRange#fromProvider(TickRangeProvider)} without the hook
+	 */
+	static TickRange plainFromProvider(TickRangeProvider trp) {
+		return (trp instanceof TickRange)
+		? (TickRange) trp
+		: new TickRange(trp.getTick(), trp.getTickLength());
+	}
+	
+	/**
+	 * {@link TickRange#intersect(TickRangeProvider)} without the hook
+	 */
+	static TickRange plainIntersect(TickRange self, TickRangeProvider r) {
+		long rStart = r.getTick();
+		long rEnd   = r.getEndTick();
+		
+		if (rStart < 0 || rEnd <= rStart) {
+			throw new IllegalArgumentException("not a valid range");
+		}
+		
+		long lo     = Math.max(self.start, rStart);
+		long hi     = Math.min(self.end, rEnd);
+		
+		if (hi <= lo) {
+			return null;
+		}
+		
+		if (lo == rStart && hi == rEnd) {
+			return (r instanceof TickRange) ? (TickRange) r : new TickRange(lo, hi, true);
+		}
+		
+		if (lo == self.start && hi == self.end) {
+			return self;
+		}
+		
+		return new TickRange(lo, hi, true);
+	}
+	
+	/**
+	 * {@link TickRange#union(TickRangeProvider)} without the hook
+	 */
+	static TickRange plainUnion(TickRange self, TickRangeProvider trp) {
+		long rStart = trp.getTick();
+		long rEnd   = trp.getEndTick();
+		
+		if (rStart < 0 || rEnd <= rStart) {
+			throw new IllegalArgumentException("not a valid range");
+		}
+		
+		if (Math.min(self.end, rEnd) <= Math.max(self.start, rStart)) {
+			return null;
+		}
+		
+		long lo = Math.min(self.start, rStart);
+		long hi = Math.max(self.end, rEnd);
+		
+		if (lo == self.start && hi == self.end) {
+			return self;
+		}
+		
+		if (lo == rStart && hi == rEnd && trp instanceof TickRange) {
+			return (TickRange) trp;
+		}
+		
+		return new TickRange(lo, hi, true);
+	}
+	
+	/**
+	 * {@link TickRange#splitUnion(long, long, long, long, long[], int)}
+	 * without the hook
+	 */
+	static int plainSplitUnion(
+			long start1, long end1, long start2, long end2,
+			long[] out, int offset) {
+		if (offset < 0 || out.length - offset < TickRange.SPLIT_UNION_LENGTH) {
+			throw new IllegalArgumentException(
+				"out must have room for " + TickRange.SPLIT_UNION_LENGTH + " values");
+		}
+		
+		if (start1 == start2 && end1 == end2) {
+			out[offset]     = start1;
+			out[offset + 1] = end1;
+			return 1;
+		}
+		
+		if (start1 <= start2 ? end1 <= start2 : end2 <= start1) {
+			if (start1 < start2) {
+				out[offset]     = start1;
+				out[offset + 1] = end1;
+				out[offset + 2] = start2;
+				out[offset + 3] = end2;
+			} else {
+				out[offset]     = start2;
+				out[offset + 1] = end2;
+				out[offset + 2] = start1;
+				out[offset + 3] = end1;
+			}
+			
+			return 2;
+		}
+		
+		long lowStart  = Math.min(start1, start2);
+		long highStart = Math.max(start1, start2);
+		long lowEnd    = Math.min(end1, end2);
+		long highEnd   = Math.max(end1, end2);
+		int i = offset;
+		
+		if (lowStart != highStart) {
+			out[i++] = lowStart;
+			out[i++] = highStart;
+		}
+		
+		out[i++] = highStart;
+		out[i++] = lowEnd;
+		
+		if (lowEnd != highEnd) {
+			out[i++] = lowEnd;
+			out[i++] = highEnd;
+		}
+		
+		return (i - offset) / 2;
+	}
+	
+	@Benchmark
+	public TickRange fromProviderPlain() {
+		return plainFromProvider(other);
+	}
+	
+	@Benchmark
+	public TickRange fromProviderOff() {
+		return TickRange.fromProvider(other);
+	}
+	
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dnet.tmullin.ipather.metrics=counters")
+	public TickRange fromProviderCounters() {
+		return TickRange.fromProvider(other);
+	}
+	
+	@Benchmark
+	public TickRange intersectPlain() {
+		return plainIntersect(range, other);
+	}
+	
+	@Benchmark
+	public TickRange intersectOff() {
+		return range.intersect(other);
+	}
+	
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dnet.tmullin.ipather.metrics=counters")
+	public TickRange intersectCounters() {
+		return range.intersect(other);
+	}
+	
+	@Benchmark
+	public TickRange intersectRangePlain() {
+		return plainIntersect(range, otherRange);
+	}
+	
+	@Benchmark
+	public TickRange intersectRangeOff() {
+		return range.intersect(otherRange);
+	}
+	
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dnet.tmullin.ipather.metrics=counters")
+	public TickRange intersectRangeCounters() {
+		return range.intersect(otherRange);
+	}
+	
+	@Benchmark
+	public TickRange unionPlain() {
+		return plainUnion(range, other);
+	}
+	
+	@Benchmark
+	public TickRange unionOff() {
+		return range.union(other);
+	}
+	
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dnet.tmullin.ipather.metrics=counters")
+	public TickRange unionCounters() {
+		return range.union(other);
+	}
+	
+	@Benchmark
+	public int splitUnionPlain() {
+		return plainSplitUnion(start1, end1, start2, end2, bounds, 0);
+	}
+	
+	@Benchmark
+	public int splitUnionOff() {
+		return TickRange.splitUnion(start1, end1, start2, end2, bounds, 0);
+	}
+	
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dnet.tmullin.ipather.metrics=counters")
+	public int splitUnionCounters() {
+		return TickRange.splitUnion(start1, end1, start2, end2, bounds, 0);
+	}
+}
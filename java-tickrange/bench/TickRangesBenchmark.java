@@ -0,0 +1,75 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the operations in {@link TickRanges} over millions of
+ * overlapping ranges. The coalesce benchmarks are run with pools of
+ * different sizes to show how the parallel version scales compared to
+ * the sequential {@link TickRangeSet#of(Iterable)}.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickRangesBenchmark {
+	
+	@Param({"4000000"})
+	public int count;
+	
+	@Param({"1", "2", "4", "8"})
+	public int parallelism;
+	
+	private List<TickRange> ranges;
+	private ForkJoinPool pool;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		ranges = new ArrayList<TickRange>(count);
+		
+		for (int i = 0; i < count; i++) {
+			ranges.add(new TickRange(random.nextInt(count * 20), 1 + random.nextInt(30)));
+		}
+		
+		pool = new ForkJoinPool(parallelism);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+	
+	@Benchmark
+	public TickRangeSet coalesceSequential() {
+		return TickRangeSet.of(ranges);
+	}
+	
+	@Benchmark
+	public TickRangeSet coalesceParallel() {
+		return TickRanges.coalesce(ranges, pool);
+	}
+}
@@ -0,0 +1,110 @@
+package net.tmullin.ipather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares playing through a sequence with a {@link TickWindowCursor}
+ * against checking every note with
+ * {@link TickRange#intersects(TickRangeProvider)} each time the window
+ * moves. Each benchmark advances a one beat lookahead window through the
+ * whole sequence a sixteenth note at a time.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickWindowCursorBenchmark {
+	
+	private static final int STEP = 120;
+	private static final int LOOKAHEAD = 480;
+	
+	@Param({"1000", "10000"})
+	public int count;
+	
+	private List<TickRange> notes;
+	private long length;
+	
+	/**
+	 * Counts the notes that enter the window, so the work isn't optimized
+	 * away
+	 */
+	private final TickWindowCursor.Listener<TickRange> counter =
+		new TickWindowCursor.Listener<TickRange>() {
+			@Override
+			public void entered(TickRange r) {
+				entered++;
+			}
+			
+			@Override
+			public void exited(TickRange r) {
+			}
+		};
+	
+	private long entered;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		notes = new ArrayList<TickRange>(count);
+		length = count * 40L;
+		
+		for (int i = 0; i < count; i++) {
+			notes.add(new TickRange(
+				random.nextInt((int) length), 30 + random.nextInt(900)));
+		}
+		
+		Collections.sort(notes);
+	}
+	
+	@Benchmark
+	public long cursor() {
+		TickWindowCursor<TickRange> cursor =
+			new TickWindowCursor<TickRange>(notes);
+		entered = 0;
+		
+		for (long now = 0; now < length; now += STEP) {
+			cursor.advance(now, now + LOOKAHEAD, counter);
+		}
+		
+		return entered;
+	}
+	
+	@Benchmark
+	public long rescan() {
+		long ret = 0;
+		
+		for (long now = 0; now < length; now += STEP) {
+			TickRange window = new TickRange(now, LOOKAHEAD);
+			
+			for (TickRange r : notes) {
+				if (window.intersects(r)) {
+					ret++;
+				}
+			}
+		}
+		
+		return ret;
+	}
+}
@@ -0,0 +1,750 @@
+package net.tmullin.ipather;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.function.LongConsumer;
+
+/**
+ * A growable store of tick ranges kept off the Java heap in a
+ * {@link MemorySegment}, for collections of ranges too large to keep as
+ * objects or as arrays the garbage collector has to trace and copy. Each
+ * range is a record of two longs, the start tick followed by the end
+ * tick, so a store of n ranges takes 16n bytes.
+ * <p>
+ * The memory belongs to the {@link Arena} passed to the constructor and
+ * is freed when the arena is closed, along with the memory of any
+ * segments left behind when the store grew. Once the arena is closed
+ * every method that reads or writes a range throws
+ * {@link IllegalStateException}. Only the thread that owns a confined
+ * arena may use the store, and the store is not thread safe even when
+ * the arena is shared.
+ * <p>
+ * Ranges are exposed as {@link TickRangeProvider}s through
+ * {@link #view(long)} and {@link #cursor()} so they can be passed to
+ * existing code without copying them onto the heap. Ranges appended to
+ * the store are validated the same way as by the {@link TickRange}
+ * constructor. Indices are longs since a store is not limited to
+ * {@link Integer#MAX_VALUE} ranges.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+public final class TickRangeSegmentStore {
+	
+	/**
+	 * The capacity used when no initial capacity is given
+	 */
+	private static final long DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * The size of one record in bytes
+	 */
+	private static final long RECORD_SIZE = 2 * Long.BYTES;
+	
+	/**
+	 * Partitions at or below this size are sorted by insertion sort
+	 */
+	private static final long INSERTION_SORT_THRESHOLD = 32;
+	
+	/**
+	 * The layout of one tick in a record
+	 */
+	private static final ValueLayout.OfLong TICK = ValueLayout.JAVA_LONG;
+	
+	/**
+	 * The arena the segments are allocated from
+	 */
+	private final Arena arena;
+	
+	/**
+	 * The segment holding the records
+	 */
+	private MemorySegment segment;
+	
+	/**
+	 * The number of ranges in the store
+	 */
+	private long size;
+	
+	/**
+	 * The length of the longest range appended since the store was
+	 * created or cleared, which bounds how far before a tick the overlap
+	 * scans have to look
+	 */
+	private long maxLength;
+	
+	/**
+	 * Whether the ranges are known to be in the order produced by
+	 * {@link #sort()}
+	 */
+	private boolean sorted = true;
+	
+	/**
+	 * Creates a new empty store that allocates its memory from the
+	 * supplied arena.
+	 * 
+	 * @param arena The arena that owns the memory of the store
+	 */
+	public TickRangeSegmentStore(Arena arena) {
+		this(arena, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new empty store that allocates its memory from the
+	 * supplied arena, with room for the specified number of ranges before
+	 * it needs to grow.
+	 * 
+	 * @param arena The arena that owns the memory of the store
+	 * @param capacity The initial capacity, which must be > 0
+	 */
+	public TickRangeSegmentStore(Arena arena, long capacity) {
+		if (null == arena) {
+			throw new IllegalArgumentException("arena must not be null");
+		}
+		
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be > 0");
+		}
+		
+		this.arena   = arena;
+		this.segment = allocate(capacity);
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges in the store
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * 
+	 * @return Whether the store has no ranges
+	 */
+	public boolean isEmpty() {
+		return 0 == size;
+	}
+	
+	/**
+	 * 
+	 * @return The number of ranges the store can hold before it needs to
+	 * 		grow
+	 */
+	public long capacity() {
+		return segment.byteSize() / RECORD_SIZE;
+	}
+	
+	/**
+	 * Grows the store if needed so that it can hold at least the
+	 * specified number of ranges. Growing allocates a new segment from the
+	 * arena and copies the records into it. The old segment is not freed
+	 * until the arena is closed, so growing by doubling uses at most
+	 * about twice the memory of the final segment.
+	 * 
+	 * @param capacity The minimum capacity
+	 */
+	public void ensureCapacity(long capacity) {
+		long current = capacity();
+		
+		if (capacity <= current) {
+			return;
+		}
+		
+		long newCapacity = Math.max(capacity, current <= Long.MAX_VALUE / (2 * RECORD_SIZE)
+			? current * 2
+			: capacity);
+		MemorySegment grown = allocate(newCapacity);
+		MemorySegment.copy(segment, 0, grown, 0, size * RECORD_SIZE);
+		segment = grown;
+	}
+	
+	/**
+	 * Removes all ranges from the store without freeing any memory.
+	 */
+	public void clear() {
+		size      = 0;
+		maxLength = 0;
+		sorted    = true;
+	}
+	
+	/**
+	 * Appends a range to the end of the store.
+	 * 
+	 * @param start The start tick
+	 * @param end The end tick
+	 */
+	public void append(long start, long end) {
+		if (start < 0) {
+			throw new IllegalArgumentException("start must be >= 0");
+		}
+		
+		if (end <= start) {
+			throw new IllegalArgumentException("length must be > 0");
+		}
+		
+		ensureCapacity(size + 1);
+		
+		if (sorted && 0 < size) {
+			long prevStart = start(size - 1);
+			sorted = prevStart < start || (prevStart == start && end(size - 1) <= end);
+		}
+		
+		long offset = size * RECORD_SIZE;
+		segment.set(TICK, offset, start);
+		segment.set(TICK, offset + Long.BYTES, end);
+		maxLength = Math.max(maxLength, end - start);
+		size++;
+	}
+	
+	/**
+	 * Appends a range to the end of the store.
+	 * 
+	 * @param r The range to append
+	 */
+	public void append(TickRangeProvider r) {
+		append(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * Appends a collection of ranges to the end of the store.
+	 * 
+	 * @param ranges The ranges to append
+	 */
+	public void appendAll(Iterable<? extends TickRangeProvider> ranges) {
+		for (TickRangeProvider r : ranges) {
+			append(r.getTick(), r.getEndTick());
+		}
+	}
+	
+	/**
+	 * 
+	 * @param index The index of the range
+	 * @return The start tick of the range at the index
+	 */
+	public long getTick(long index) {
+		checkIndex(index);
+		return start(index);
+	}
+	
+	/**
+	 * 
+	 * @param index The index of the range
+	 * @return The end tick of the range at the index
+	 */
+	public long getEndTick(long index) {
+		checkIndex(index);
+		return end(index);
+	}
+	
+	/**
+	 * Copies the range at an index onto the heap as a new TickRange.
+	 * 
+	 * @param index The index of the range
+	 * @return The range at the index
+	 */
+	public TickRange get(long index) {
+		checkIndex(index);
+		return new TickRange(start(index), end(index), true);
+	}
+	
+	/**
+	 * Returns a read-only view of the range at an index. The view reads
+	 * through to the store, so it will see the range that is at the index
+	 * after the store is sorted, and it throws
+	 * {@link IllegalStateException} once the arena is closed.
+	 * 
+	 * @param index The index of the range
+	 * @return A view of the range at the index
+	 */
+	public TickRangeProvider view(final long index) {
+		checkIndex(index);
+		
+		return new TickRangeProvider() {
+			@Override
+			public long getTick() {
+				return start(index);
+			}
+			
+			@Override
+			public long getEndTick() {
+				return end(index);
+			}
+			
+			@Override
+			public long getTickLength() {
+				return end(index) - start(index);
+			}
+			
+			@Override
+			public String toString() {
+				return String.format("[%s, %s)", getTick(), getEndTick());
+			}
+		};
+	}
+	
+	/**
+	 * 
+	 * @return A cursor positioned before the first range in the store
+	 */
+	public Cursor cursor() {
+		return new Cursor(0);
+	}
+	
+	/**
+	 * 
+	 * @param index The index of the first range the cursor will move to
+	 * @return A cursor positioned before the range at the index
+	 */
+	public Cursor cursor(long index) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + size);
+		}
+		
+		return new Cursor(index);
+	}
+	
+	/**
+	 * Sorts the store in place the same way as
+	 * {@link TickRange#compareTo(TickRangeProvider)}, first by start tick
+	 * then by end tick if the start ticks are equal. The sort is an
+	 * introsort that works directly on the segment and allocates nothing,
+	 * falling back to heapsort if the partitioning goes badly.
+	 */
+	public void sort() {
+		if (sorted) {
+			return;
+		}
+		
+		introSort(0, size, 2 * (64 - Long.numberOfLeadingZeros(size)));
+		sorted = true;
+	}
+	
+	/**
+	 * 
+	 * @return Whether the store is in the order produced by {@link #sort()}
+	 */
+	public boolean isSorted() {
+		return sorted;
+	}
+	
+	/**
+	 * Searches a sorted store for the specified range.
+	 * 
+	 * @param start The start tick to search for
+	 * @param end The end tick to search for
+	 * @return The index of the range if it is in the store, otherwise
+	 * 		<code>-(insertion point) - 1</code>
+	 * @throws IllegalStateException If the store is not sorted
+	 */
+	public long binarySearch(long start, long end) {
+		checkSorted();
+		long lo = 0;
+		long hi = size - 1;
+		
+		while (lo <= hi) {
+			long mid = (lo + hi) >>> 1;
+			long midStart = start(mid);
+			long midEnd   = end(mid);
+			
+			if (midStart < start || (midStart == start && midEnd < end)) {
+				lo = mid + 1;
+			} else if (midStart == start && midEnd == end) {
+				return mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		
+		return -(lo + 1);
+	}
+	
+	/**
+	 * Searches a sorted store for the specified range.
+	 * 
+	 * @param r The range to search for
+	 * @return The index of the range if it is in the store, otherwise
+	 * 		<code>-(insertion point) - 1</code>
+	 * @throws IllegalStateException If the store is not sorted
+	 * @see #binarySearch(long, long)
+	 */
+	public long binarySearch(TickRangeProvider r) {
+		return binarySearch(r.getTick(), r.getEndTick());
+	}
+	
+	/**
+	 * Finds the first range in a sorted store that starts at or after
+	 * the specified tick.
+	 * 
+	 * @param tick The tick to search for
+	 * @return The index of the first range starting at or after the tick,
+	 * 		or {@link #size()} if there is none
+	 * @throws IllegalStateException If the store is not sorted
+	 */
+	public long lowerBound(long tick) {
+		checkSorted();
+		long lo = 0;
+		long hi = size;
+		
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			
+			if (start(mid) < tick) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		
+		return lo;
+	}
+	
+	/**
+	 * Calls an action with the index of every range that intersects
+	 * [start, end), as determined by
+	 * {@link TickRange#intersects(TickRangeProvider)}, in index order.
+	 * When the store is sorted only the ranges starting within the longest
+	 * range length before <code>start</code> are scanned, otherwise every
+	 * range is.
+	 * 
+	 * @param start The start tick of the range to check
+	 * @param end The end tick of the range to check
+	 * @param action Called with the index of each intersecting range
+	 */
+	public void forEachOverlapping(long start, long end, LongConsumer action) {
+		long from = 0;
+		long to   = size;
+		
+		if (sorted) {
+			from = lowerBound(start - maxLength + 1);
+			to   = lowerBound(end);
+		}
+		
+		for (long i = from; i < to; i++) {
+			if (start(i) < end && start < end(i)) {
+				action.accept(i);
+			}
+		}
+	}
+	
+	/**
+	 * Calls an action with the index of every range that intersects the
+	 * supplied range.
+	 * 
+	 * @param r The range to check
+	 * @param action Called with the index of each intersecting range
+	 * @see #forEachOverlapping(long, long, LongConsumer)
+	 */
+	public void forEachOverlapping(TickRangeProvider r, LongConsumer action) {
+		forEachOverlapping(r.getTick(), r.getEndTick(), action);
+	}
+	
+	/**
+	 * Counts the ranges in the store that intersect the supplied range,
+	 * scanning the same ranges as
+	 * {@link #forEachOverlapping(long, long, LongConsumer)}.
+	 * 
+	 * @param r The range to check
+	 * @return The number of intersecting ranges
+	 */
+	public long countOverlapping(TickRangeProvider r) {
+		long start = r.getTick();
+		long end   = r.getEndTick();
+		long from  = 0;
+		long to    = size;
+		long count = 0;
+		
+		if (sorted) {
+			from = lowerBound(start - maxLength + 1);
+			to   = lowerBound(end);
+		}
+		
+		for (long i = from; i < to; i++) {
+			if (start(i) < end && start < end(i)) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		
+		for (long i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			
+			sb.append('[').append(start(i)).append(", ").append(end(i)).append(')');
+		}
+		
+		return sb.append(']').toString();
+	}
+	
+	/**
+	 * A reusable read-only view that moves through the ranges of the
+	 * store, so that a scan over millions of ranges can hand each one to
+	 * code expecting a {@link TickRangeProvider} without creating an
+	 * object per range. The ticks are read when the cursor moves, so the
+	 * cursor does not see changes made to the store after that.
+	 */
+	public final class Cursor implements TickRangeProvider {
+		private long index;
+		private long start;
+		private long end;
+		
+		private Cursor(long index) {
+			this.index = index - 1;
+		}
+		
+		/**
+		 * Moves to the next range in the store.
+		 * 
+		 * @return Whether there was another range to move to
+		 */
+		public boolean next() {
+			if (index + 1 >= size) {
+				index = size;
+				return false;
+			}
+			
+			index++;
+			start = start(index);
+			end   = end(index);
+			return true;
+		}
+		
+		/**
+		 * Moves to the range at an index.
+		 * 
+		 * @param index The index of the range
+		 */
+		public void moveTo(long index) {
+			checkIndex(index);
+			this.index = index;
+			start      = start(index);
+			end        = end(index);
+		}
+		
+		/**
+		 * 
+		 * @return The index of the range the cursor is on
+		 */
+		public long index() {
+			return index;
+		}
+		
+		@Override
+		public long getTick() {
+			return start;
+		}
+		
+		@Override
+		public long getEndTick() {
+			return end;
+		}
+		
+		@Override
+		public long getTickLength() {
+			return end - start;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("[%s, %s)", start, end);
+		}
+	}
+	
+	/**
+	 * Allocates a segment with room for a number of records.
+	 * 
+	 * @param capacity The number of records
+	 * @return The new segment
+	 */
+	private MemorySegment allocate(long capacity) {
+		if (capacity > Long.MAX_VALUE / RECORD_SIZE) {
+			throw new IllegalArgumentException("capacity too large: " + capacity);
+		}
+		
+		return arena.allocate(capacity * RECORD_SIZE, Long.BYTES);
+	}
+	
+	private void checkIndex(long index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+				"index: " + index + ", size: " + size);
+		}
+	}
+	
+	private void checkSorted() {
+		if (!sorted) {
+			throw new IllegalStateException("store must be sorted");
+		}
+	}
+	
+	private long start(long index) {
+		return segment.get(TICK, index * RECORD_SIZE);
+	}
+	
+	private long end(long index) {
+		return segment.get(TICK, index * RECORD_SIZE + Long.BYTES);
+	}
+	
+	/**
+	 * Compares the records at two indices, first by start tick then by
+	 * end tick.
+	 */
+	private int compare(long i, long j) {
+		long si = start(i);
+		long sj = start(j);
+		
+		if (si != sj) {
+			return si < sj ? -1 : 1;
+		}
+		
+		long ei = end(i);
+		long ej = end(j);
+		return (ei < ej ? -1 : (ei == ej ? 0 : 1));
+	}
+	
+	private void swap(long i, long j) {
+		long offI = i * RECORD_SIZE;
+		long offJ = j * RECORD_SIZE;
+		long s = segment.get(TICK, offI);
+		long e = segment.get(TICK, offI + Long.BYTES);
+		segment.set(TICK, offI, segment.get(TICK, offJ));
+		segment.set(TICK, offI + Long.BYTES, segment.get(TICK, offJ + Long.BYTES));
+		segment.set(TICK, offJ, s);
+		segment.set(TICK, offJ + Long.BYTES, e);
+	}
+	
+	/**
+	 * Sorts the records in [from, to) by quicksort, switching to heapsort
+	 * once <code>depth</code> levels of partitioning have been used up.
+	 * Recurses into the smaller partition and loops on the larger one so
+	 * the stack depth stays logarithmic.
+	 */
+	private void introSort(long from, long to, int depth) {
+		while (to - from > INSERTION_SORT_THRESHOLD) {
+			if (0 == depth--) {
+				heapSort(from, to);
+				return;
+			}
+			
+			// median of three moved to from, then Hoare partitioning
+			long mid = (from + to) >>> 1;
+			long last = to - 1;
+			
+			if (compare(mid, from) < 0) {
+				swap(mid, from);
+			}
+			
+			if (compare(last, from) < 0) {
+				swap(last, from);
+			}
+			
+			if (compare(last, mid) < 0) {
+				swap(last, mid);
+			}
+			
+			swap(from, mid);
+			long i = from;
+			long j = to;
+			
+			while (true) {
+				do {
+					i++;
+				} while (i < last && compare(i, from) < 0);
+				
+				do {
+					j--;
+				} while (compare(j, from) > 0);
+				
+				if (i >= j) {
+					break;
+				}
+				
+				swap(i, j);
+			}
+			
+			swap(from, j);
+			
+			if (j - from < to - j - 1) {
+				introSort(from, j, depth);
+				from = j + 1;
+			} else {
+				introSort(j + 1, to, depth);
+				to = j;
+			}
+		}
+		
+		insertionSort(from, to);
+	}
+	
+	private void insertionSort(long from, long to) {
+		for (long i = from + 1; i < to; i++) {
+			long keyStart = start(i);
+			long keyEnd   = end(i);
+			long j = i - 1;
+			
+			while (j >= from) {
+				long s = start(j);
+				long e = end(j);
+				
+				if (s < keyStart || (s == keyStart && e <= keyEnd)) {
+					break;
+				}
+				
+				segment.set(TICK, (j + 1) * RECORD_SIZE, s);
+				segment.set(TICK, (j + 1) * RECORD_SIZE + Long.BYTES, e);
+				j--;
+			}
+			
+			segment.set(TICK, (j + 1) * RECORD_SIZE, keyStart);
+			segment.set(TICK, (j + 1) * RECORD_SIZE + Long.BYTES, keyEnd);
+		}
+	}
+	
+	private void heapSort(long from, long to) {
+		long n = to - from;
+		
+		for (long i = n / 2 - 1; i >= 0; i--) {
+			siftDown(from, i, n);
+		}
+		
+		for (long k = n - 1; k > 0; k--) {
+			swap(from, from + k);
+			siftDown(from, 0, k);
+		}
+	}
+	
+	/**
+	 * Restores the max-heap property for the heap of <code>n</code>
+	 * records starting at <code>base</code>, starting at heap index
+	 * <code>i</code>.
+	 */
+	private void siftDown(long base, long i, long n) {
+		while (true) {
+			long child = 2 * i + 1;
+			
+			if (child >= n) {
+				return;
+			}
+			
+			if (child + 1 < n && compare(base + child, base + child + 1) < 0) {
+				child++;
+			}
+			
+			if (compare(base + i, base + child) >= 0) {
+				return;
+			}
+			
+			swap(base + i, base + child);
+			i = child;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package net.tmullin.ipather;
+
+import java.lang.foreign.Arena;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongConsumer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TickRangeSegmentStoreTest {
+	/**
+	 * Helper that creates a store from pairs of start and end ticks.
+	 * 
+	 * @param arena The arena to allocate the store from
+	 * @param ticks Pairs of start and end ticks
+	 * @return The store of ranges
+	 */
+	private static TickRangeSegmentStore store(Arena arena, long... ticks) {
+		TickRangeSegmentStore ret = new TickRangeSegmentStore(arena, 1);
+		
+		for (int i = 0; i < ticks.length; i += 2) {
+			ret.append(ticks[i], ticks[i + 1]);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper that creates random ranges.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to create
+	 * @return The ranges
+	 */
+	private static List<TickRange> random(long seed, int count) {
+		Random random = new Random(seed);
+		List<TickRange> ret = new ArrayList<TickRange>();
+		
+		for (int i = 0; i < count; i++) {
+			ret.add(new TickRange(random.nextInt(count + 1), 1 + random.nextInt(50)));
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper for sort tests. Sorts random ranges both in a store and as
+	 * TickRange objects and checks that the results match.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param count The number of ranges to sort
+	 */
+	private void sort(long seed, int count) {
+		List<TickRange> expected = random(seed, count);
+		
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = new TickRangeSegmentStore(arena);
+			store.appendAll(expected);
+			store.sort();
+			Collections.sort(expected);
+			
+			assertTrue(store.isSorted());
+			assertEquals(count, store.size());
+			
+			for (int i = 0; i < count; i++) {
+				assertEquals(expected.get(i), store.get(i));
+			}
+		}
+	}
+	
+	@Test public void sortSmall() {
+		sort(1, 10);
+	}
+	
+	@Test public void sortLarge() {
+		sort(2, 50000);
+	}
+	
+	@Test public void sortEmpty() {
+		sort(3, 0);
+	}
+	
+	@Test public void sortDuplicates() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = new TickRangeSegmentStore(arena);
+			
+			for (int i = 0; i < 5000; i++) {
+				store.append(i % 3, 5 - i % 2);
+			}
+			
+			store.sort();
+			
+			for (int i = 1; i < 5000; i++) {
+				assertTrue(store.get(i - 1).compareTo(store.get(i)) <= 0);
+			}
+		}
+	}
+	
+	@Test public void tracksOrder() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = store(arena, 123, 150, 123, 456);
+			assertTrue(store.isSorted());
+			
+			store.append(100, 200);
+			assertFalse(store.isSorted());
+		}
+	}
+	
+	@Test public void grows() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = new TickRangeSegmentStore(arena, 1);
+			
+			for (int i = 0; i < 100; i++) {
+				store.append(i, i + 1);
+			}
+			
+			assertEquals(100, store.size());
+			assertTrue(store.capacity() >= 100);
+			assertEquals(new TickRange(99, 100, true), store.get(99));
+			assertEquals(0, store.getTick(0));
+			assertEquals(1, store.getEndTick(0));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void appendNegativeStart() {
+		try (Arena arena = Arena.ofConfined()) {
+			store(arena, -1, 5);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void appendEmpty() {
+		try (Arena arena = Arena.ofConfined()) {
+			store(arena, 5, 5);
+		}
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void getPastSize() {
+		try (Arena arena = Arena.ofConfined()) {
+			store(arena, 1, 5).get(1);
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void closedArena() {
+		TickRangeSegmentStore store;
+		
+		try (Arena arena = Arena.ofConfined()) {
+			store = store(arena, 1, 5);
+		}
+		
+		store.getTick(0);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void searchUnsorted() {
+		try (Arena arena = Arena.ofConfined()) {
+			store(arena, 400, 456, 123, 150).binarySearch(123, 150);
+		}
+	}
+	
+	@Test public void binarySearch() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = store(arena, 123, 150, 123, 456, 150, 400, 400, 456);
+			assertEquals(1, store.binarySearch(123, 456));
+			assertEquals(3, store.binarySearch(new TickRange(400, 456, true)));
+			assertEquals(-3, store.binarySearch(123, 500));
+			assertEquals(-1, store.binarySearch(100, 500));
+			assertEquals(-5, store.binarySearch(500, 600));
+		}
+	}
+	
+	@Test public void lowerBound() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = store(arena, 123, 150, 123, 456, 150, 400, 400, 456);
+			assertEquals(0, store.lowerBound(123));
+			assertEquals(2, store.lowerBound(124));
+			assertEquals(3, store.lowerBound(400));
+			assertEquals(4, store.lowerBound(401));
+		}
+	}
+	
+	/**
+	 * Helper for overlap tests. Checks the overlap scans of a store
+	 * against checking every range with
+	 * {@link TickRange#intersects(TickRangeProvider)}.
+	 * 
+	 * @param seed The seed for the random number generator
+	 * @param sort Whether to sort the store before scanning
+	 */
+	private void overlapping(long seed, boolean sort) {
+		List<TickRange> ranges = random(seed, 2000);
+		Random random = new Random(seed);
+		
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = new TickRangeSegmentStore(arena);
+			store.appendAll(ranges);
+			
+			if (sort) {
+				store.sort();
+				Collections.sort(ranges);
+			}
+			
+			for (int q = 0; q < 200; q++) {
+				final TickRange query = new TickRange(random.nextInt(2100), 1 + random.nextInt(100));
+				final List<TickRange> expected = new ArrayList<TickRange>();
+				final List<TickRange> actual = new ArrayList<TickRange>();
+				
+				for (TickRange r : ranges) {
+					if (query.intersects(r)) {
+						expected.add(r);
+					}
+				}
+				
+				final TickRangeSegmentStore s = store;
+				store.forEachOverlapping(query, new LongConsumer() {
+					@Override
+					public void accept(long index) {
+						actual.add(s.get(index));
+					}
+				});
+				
+				assertEquals(expected, actual);
+				assertEquals(expected.size(), store.countOverlapping(query));
+			}
+		}
+	}
+	
+	@Test public void overlappingSorted() {
+		overlapping(4, true);
+	}
+	
+	@Test public void overlappingUnsorted() {
+		overlapping(5, false);
+	}
+	
+	@Test public void overlappingTouching() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = store(arena, 0, 100, 100, 200, 200, 300);
+			assertEquals(1, store.countOverlapping(new TickRange(100, 200, true)));
+			assertEquals(0, store.countOverlapping(new TickRange(300, 400, true)));
+		}
+	}
+	
+	@Test public void viewReadsThrough() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = store(arena, 400, 456, 123, 150);
+			TickRangeProvider view = store.view(0);
+			assertEquals(new TickRange(400, 456, true), view);
+			
+			store.sort();
+			assertEquals(123, view.getTick());
+			assertEquals(150, view.getEndTick());
+			assertEquals(27, view.getTickLength());
+		}
+	}
+	
+	@Test public void cursor() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = store(arena, 123, 150, 150, 400, 400, 456);
+			TickRangeSegmentStore.Cursor cursor = store.cursor();
+			List<TickRange> seen = new ArrayList<TickRange>();
+			
+			while (cursor.next()) {
+				seen.add(TickRange.fromProvider(cursor));
+			}
+			
+			assertEquals(3, seen.size());
+			assertEquals(new TickRange(150, 400, true), seen.get(1));
+			assertFalse(cursor.next());
+			
+			cursor.moveTo(2);
+			assertEquals(2, cursor.index());
+			assertEquals("[400, 456)", cursor.toString());
+			
+			cursor = store.cursor(1);
+			assertTrue(cursor.next());
+			assertEquals(150, cursor.getTick());
+		}
+	}
+	
+	@Test public void clear() {
+		try (Arena arena = Arena.ofConfined()) {
+			TickRangeSegmentStore store = store(arena, 400, 456, 123, 150);
+			store.clear();
+			assertTrue(store.isEmpty());
+			assertTrue(store.isSorted());
+			assertEquals("[]", store.toString());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package net.tmullin.ipather;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link TickRangeKernels} implemented with the incubating Vector
+ * API. Only compiled by the vector profile, and only loaded by name from
+ * TickRangeKernels, since linking it fails when the
+ * <code>jdk.incubator.vector</code> module is not available.
+ * <p>
+ * Each step compares one vector of start ticks and one of end ticks
+ * against the query range, and the lanes left over at the end are
+ * handled by the scalar loop.
+ * 
+ * @author Tim Mullin
+ * 
+ */
+final class VectorTickRangeKernels implements TickRangeKernels.Impl {
+	
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+	
+	@Override
+	public int intersectsMask(
+			long[] starts, long[] ends, int size,
+			long qStart, long qEnd, long[] maskOut) {
+		int lanes = SPECIES.length();
+		int bound = SPECIES.loopBound(size);
+		LongVector vqStart = LongVector.broadcast(SPECIES, qStart);
+		LongVector vqEnd   = LongVector.broadcast(SPECIES, qEnd);
+		int count = 0;
+		long word = 0;
+		int i = 0;
+		
+		// the lane count is a power of two no larger than 64, so each
+		// vector's mask lands within a single word
+		for (; i < bound; i += lanes) {
+			LongVector s = LongVector.fromArray(SPECIES, starts, i);
+			LongVector e = LongVector.fromArray(SPECIES, ends, i);
+			
+			// start <= qStart ? qStart < end : start < qEnd, with both
+			// sides evaluated and the condition selecting between them
+			VectorMask<Long> before = s.compare(VectorOperators.LE, vqStart);
+			VectorMask<Long> hit = before.and(vqStart.compare(VectorOperators.LT, e))
+				.or(before.not().and(s.compare(VectorOperators.LT, vqEnd)));
+			
+			word |= hit.toLong() << (i & 63);
+			
+			if (63 == ((i + lanes - 1) & 63)) {
+				maskOut[i >>> 6] = word;
+				count += Long.bitCount(word);
+				word = 0;
+			}
+		}
+		
+		for (; i < size; i++) {
+			long start = starts[i];
+			boolean hit = (start <= qStart) ? qStart < ends[i] : start < qEnd;
+			word |= (hit ? 1L : 0L) << (i & 63);
+			
+			if (63 == (i & 63)) {
+				maskOut[i >>> 6] = word;
+				count += Long.bitCount(word);
+				word = 0;
+			}
+		}
+		
+		if (0 != (size & 63)) {
+			maskOut[size >>> 6] = word;
+			count += Long.bitCount(word);
+		}
+		
+		return count;
+	}
+	
+	@Override
+	public int containsCount(
+			long[] starts, long[] ends, int size, long qStart, long qEnd) {
+		int lanes = SPECIES.length();
+		int bound = SPECIES.loopBound(size);
+		LongVector vqStart = LongVector.broadcast(SPECIES, qStart);
+		LongVector vqEnd   = LongVector.broadcast(SPECIES, qEnd);
+		int count = 0;
+		int i = 0;
+		
+		for (; i < bound; i += lanes) {
+			LongVector s = LongVector.fromArray(SPECIES, starts, i);
+			LongVector e = LongVector.fromArray(SPECIES, ends, i);
+			count += s.compare(VectorOperators.LE, vqStart)
+				.and(vqEnd.compare(VectorOperators.LE, e))
+				.trueCount();
+		}
+		
+		for (; i < size; i++) {
+			count += (starts[i] <= qStart && qEnd <= ends[i]) ? 1 : 0;
+		}
+		
+		return count;
+	}
+}
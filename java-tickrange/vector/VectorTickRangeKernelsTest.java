@@ -0,0 +1,19 @@
+package net.tmullin.ipather;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class VectorTickRangeKernelsTest {
+	@Test public void loaded() {
+		// the vector profile runs surefire with --add-modules jdk.incubator.vector
+		assertTrue(TickRangeKernels.loadVector() instanceof VectorTickRangeKernels);
+	}
+	
+	@Test public void valid() {
+		TickRangeKernelsTest.check(new VectorTickRangeKernels(), 3, true);
+	}
+	
+	@Test public void invalid() {
+		TickRangeKernelsTest.check(new VectorTickRangeKernels(), 4, false);
+	}
+}